@@ -0,0 +1,141 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many short battles between strategy scripts without a Tank Royale
+ * server, GUI or network, to compare strategies by win rate in minutes
+ * rather than hours. Each battle is a {@link SimBattle} with its own Python
+ * processes; battles run side by side on a fork-join pool.
+ *
+ *   java BattleSim [--battles N] [--rounds N] [--parallel N] [--max-turns N]
+ *                  [--seed N] [--turn-timeout-us N] [--turn-period-us N] [script.py ...]
+ *
+ * Each script is one bot (default: bot_logic.py twice). Each battle gets
+ * the seed plus its index, so a run is repeatable up to the timing of the
+ * replies. Without --parallel as many battles run at once as there are
+ * cores per bot. --turn-period-us paces the turns like a server (by default
+ * they run as fast as the bots answer). Transport, batching, delta ticks
+ * and pipelining follow BridgeConfig as for the real bot.
+ */
+public final class BattleSim {
+
+    private static final double ARENA_WIDTH = 800;
+    private static final double ARENA_HEIGHT = 600;
+
+    public static void main(String[] args) {
+        int battles = 10;
+        int rounds = 10;
+        int parallel = -1;
+        int maxTurns = 2000;
+        long seed = 1;
+        int turnTimeoutMicros = 30_000;
+        int turnPeriodMicros = 0;
+        List<File> scripts = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--battles":
+                        battles = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--rounds":
+                        rounds = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--parallel":
+                        parallel = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--max-turns":
+                        maxTurns = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--turn-timeout-us":
+                        turnTimeoutMicros = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--turn-period-us":
+                        turnPeriodMicros = Math.max(0, Integer.parseInt(args[++i]));
+                        break;
+                    default:
+                        scripts.add(new File(args[i]));
+                }
+            }
+        } catch (RuntimeException ex) {
+            scripts = null;
+        }
+        if (scripts == null || scripts.size() == 1) {
+            System.err.println("usage: java BattleSim [--battles N] [--rounds N] [--parallel N] [--max-turns N]"
+                    + " [--seed N] [--turn-timeout-us N] [--turn-period-us N] [script.py ...]");
+            System.exit(2);
+        }
+        if (scripts.isEmpty()) {
+            scripts.add(new File("bot_logic.py"));
+            scripts.add(new File("bot_logic.py"));
+        }
+        for (File f : scripts) {
+            if (!f.isFile()) {
+                System.err.println("No such script: " + f);
+                System.exit(2);
+            }
+        }
+        if (parallel < 0) {
+            parallel = Math.max(1, Runtime.getRuntime().availableProcessors() / scripts.size());
+        }
+        File[] bots = scripts.toArray(new File[0]);
+        System.exit(run(bots, battles, rounds, parallel, maxTurns, seed, turnTimeoutMicros, turnPeriodMicros)
+                ? 0 : 1);
+    }
+
+    /** Runs the battles and prints the summary; returns false if any battle failed. */
+    private static boolean run(File[] scripts, int battles, int rounds, int parallel, int maxTurns,
+                               long seed, int turnTimeoutMicros, int turnPeriodMicros) {
+        ForkJoinPool pool = new ForkJoinPool(parallel);
+        long t0 = System.nanoTime();
+        List<Future<SimBattle.Result>> futures = new ArrayList<>(battles);
+        for (int i = 0; i < battles; i++) {
+            long battleSeed = seed + i;
+            futures.add(pool.submit(() -> new SimBattle(scripts, rounds, maxTurns, ARENA_WIDTH, ARENA_HEIGHT,
+                    turnTimeoutMicros, turnPeriodMicros, battleSeed).run()));
+        }
+        SimBattle.Result total = new SimBattle.Result(scripts.length);
+        int failed = 0;
+        for (Future<SimBattle.Result> f : futures) {
+            try {
+                SimBattle.Result r = f.get();
+                for (int i = 0; i < scripts.length; i++) {
+                    total.wins[i] += r.wins[i];
+                }
+                total.draws += r.draws;
+                total.rounds += r.rounds;
+                total.turns += r.turns;
+                total.deadlineMisses += r.deadlineMisses;
+                total.failovers += r.failovers;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failed++;
+            } catch (Exception ex) {
+                BridgeLog.error("Battle failed: " + (ex.getCause() != null ? ex.getCause() : ex));
+                failed++;
+            }
+        }
+        pool.shutdown();
+        double seconds = (System.nanoTime() - t0) / 1e9;
+
+        System.out.printf(Locale.ROOT, "%d battles (%d failed), %d rounds, %d turns in %.1f s on %d threads%n",
+                battles, failed, total.rounds, total.turns, seconds, parallel);
+        System.out.printf(Locale.ROOT, "  %.1f rounds/s, %.0f turns/s, %d missed deadlines%s%n",
+                total.rounds / seconds, total.turns / seconds, total.deadlineMisses,
+                total.failovers > 0 ? ", " + total.failovers + " failovers" : "");
+        int rated = Math.max(1, total.rounds);
+        for (int i = 0; i < scripts.length; i++) {
+            System.out.printf(Locale.ROOT, "  bot %d %-24s %5d wins  %5.1f%%%n",
+                    i + 1, scripts[i].getName(), total.wins[i], 100.0 * total.wins[i] / rated);
+        }
+        System.out.printf(Locale.ROOT, "  %-30s %5d       %5.1f%%%n",
+                "draws", total.draws, 100.0 * total.draws / rated);
+        return failed == 0;
+    }
+}
@@ -0,0 +1,204 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the optional binary transport. Every frame is prefixed with its
+ * length as an unsigned 32-bit little-endian int, followed by the payload:
+ *
+ *   Java → Python : [tag:u8] [int32 fields…] [float64 fields…]   (see EventType)
+ *   Python → Java : [opcode:u8] [arg:float64]
+ *                   [CMD_CONTROL:u8] [control line, UTF-8]
+ *
+ * In batched mode all events of a turn travel in one frame and Python closes
+ * its reply for that turn with an end marker:
+ *
+ *   Java → Python : [BATCH_TAG:u8] [turn:int32] [count:u16] [event frames…]
+ *   Python → Java : [CMD_END_TURN:u8] [turn:int32]
+ *
+ * Both modes are only used after a line-JSON handshake in which Java offers
+ * them and the Python side acknowledges them:
+ *
+ *   Java → Python  : {"event":"hello","protocol":"binary","batch":true,"version":1}
+ *   Python → Java  : {"ack":"binary","batch":true,"version":1}
+ *
+ * Before any of this Python announces that its script has loaded:
+ *
+ *   Python → Java  : {"ready":true,"version":1}
+ *
+ * Java may also offer "delta":true, asking Python to accept TICK_DELTA
+ * events (see TickDelta) and keep a mirror of the tick state; Python
+ * answers with "delta":true if it does.
+ *
+ * Protocol "shm" offers the same frames through the rings of a shared
+ * memory file (see SharedMemoryChannel); its hello also carries "path" and
+ * "ringBytes". Python may answer "shm", "binary" or "json". Anything else
+ * (or no answer at all) keeps the bridge on unbatched line-JSON.
+ */
+final class BinaryProtocol {
+
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4;
+
+    // ── values of "protocol" in the handshake
+    static final String PROTOCOL_JSON = "json";
+    static final String PROTOCOL_BINARY = "binary";
+    static final String PROTOCOL_SHM = "shm";
+
+    // ── command opcodes (must match COMMAND_OPCODES in bridge_protocol.py)
+    static final int CMD_FIRE = 1;
+    static final int CMD_FORWARD = 2;
+    static final int CMD_BACK = 3;
+    static final int CMD_TURN_LEFT = 4;
+    static final int CMD_TURN_RIGHT = 5;
+    static final int CMD_TURN_GUN_LEFT = 6;
+    static final int CMD_TURN_GUN_RIGHT = 7;
+    static final int CMD_TURN_RADAR_LEFT = 8;
+    static final int CMD_TURN_RADAR_RIGHT = 9;
+    static final int CMD_RESCAN = 10;
+    /**
+     * Python → Java only: the payload is the UTF-8 text of a control line,
+     * a rule (see ReflexRules), a track switch (see EnemyTracker) or a
+     * controller (see Controllers).
+     */
+    static final int CMD_CONTROL = 11;
+    static final int CMD_END_TURN = 255;
+
+    static final int BATCH_TAG = 64;
+
+    /** Command names indexed by opcode, as accepted by CommandParser. */
+    static final String[] COMMAND_NAMES = {
+            null, "fire", "forward", "back", "turnLeft", "turnRight",
+            "turnGunLeft", "turnGunRight", "turnRadarLeft", "turnRadarRight", "rescan"
+    };
+
+    static final int COMMAND_PAYLOAD_BYTES = 1 + Double.BYTES;
+    static final int END_TURN_PAYLOAD_BYTES = 1 + Integer.BYTES;
+    static final int BATCH_HEADER_BYTES = HEADER_BYTES + 1 + Integer.BYTES + Short.BYTES;
+
+    /** Text form of the end marker used by batched line-JSON replies. */
+    static final String END_TURN_TEXT = "end ";
+
+    private BinaryProtocol() {
+    }
+
+    static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** @param shm the channel to offer with protocol "shm", otherwise null */
+    static String hello(String protocol, boolean batch, boolean delta, SharedMemoryChannel shm) {
+        StringBuilder sb = new StringBuilder(128)
+                .append("{\"event\":\"hello\",\"protocol\":\"").append(protocol)
+                .append("\",\"batch\":").append(batch);
+        if (delta) {
+            sb.append(",\"delta\":true");
+        }
+        sb
+                .append(",\"version\":").append(VERSION);
+        if (shm != null) {
+            sb.append(",\"path\":\"");
+            String path = shm.file().getAbsolutePath();
+            for (int i = 0; i < path.length(); i++) {
+                char c = path.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\');
+                }
+                sb.append(c);
+            }
+            sb.append("\",\"ringBytes\":").append(shm.ringBytes());
+        }
+        return sb.append('}').toString();
+    }
+
+    /** Size of the length-prefixed frame for {@code e}. */
+    static int frameBytes(BridgeEvent e) {
+        return HEADER_BYTES + e.type.payloadBytes(e);
+    }
+
+    /** Appends one length-prefixed event frame to {@code buf}. */
+    static void writeEvent(BridgeEvent e, ByteBuffer buf) {
+        EventType t = e.type;
+        buf.putInt(t.payloadBytes(e));
+        buf.put((byte) t.tag);
+        for (int i = 0; i < t.intFields.length; i++) {
+            buf.putInt(e.ints[i]);
+        }
+        if (t.sparse) {
+            buf.put((byte) e.mask);
+        }
+        for (int i = 0; i < t.doubleFields.length; i++) {
+            if (!t.sparse || (e.mask & 1 << i) != 0) {
+                buf.putDouble(e.doubles[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads one length-prefixed event frame written by {@link #writeEvent}
+     * into a new slot of {@code q}. Returns false, consuming the frame, if
+     * its tag is unknown.
+     */
+    static boolean readEvent(ByteBuffer buf, EventQueue q) {
+        int length = buf.getInt();
+        int end = buf.position() + length;
+        EventType t = EventType.fromTag(buf.get() & 0xFF);
+        if (t == null) {
+            buf.position(end);
+            return false;
+        }
+        BridgeEvent e = q.add(t);
+        for (int i = 0; i < t.intFields.length; i++) {
+            e.ints[i] = buf.getInt();
+        }
+        if (t.sparse) {
+            e.mask = buf.get() & 0xFF;
+        }
+        for (int i = 0; i < t.doubleFields.length; i++) {
+            if (!t.sparse || (e.mask & 1 << i) != 0) {
+                e.doubles[i] = buf.getDouble();
+            }
+        }
+        buf.position(end);
+        return true;
+    }
+
+    /** Writes the header of a batch frame holding {@code count} events. */
+    static void writeBatchHeader(int turn, int count, int frameBytes, ByteBuffer buf) {
+        buf.putInt(frameBytes - HEADER_BYTES);
+        buf.put((byte) BATCH_TAG);
+        buf.putInt(turn);
+        buf.putShort((short) count);
+    }
+
+    /** The protocol a handshake reply accepts: "shm", "binary" or "json". */
+    static String ackProtocol(String line) {
+        if (line.contains("\"ack\":\"" + PROTOCOL_SHM + "\"")) {
+            return PROTOCOL_SHM;
+        }
+        return line.contains("\"ack\":\"" + PROTOCOL_BINARY + "\"") ? PROTOCOL_BINARY : PROTOCOL_JSON;
+    }
+
+    /** Returns true if the handshake reply accepts batched turns. */
+    static boolean isBatchAck(String line) {
+        return isAck(line) && line.contains("\"batch\":true");
+    }
+
+    /** Returns true if the handshake reply accepts delta-encoded ticks. */
+    static boolean isDeltaAck(String line) {
+        return isAck(line) && line.contains("\"delta\":true");
+    }
+
+    /** Returns true if the line is Python's {"ready":true,...} announcement. */
+    static boolean isReady(String line) {
+        return line.startsWith("{") && line.contains("\"ready\":true");
+    }
+
+    /** Returns true if the line is a handshake reply of any kind. */
+    static boolean isAck(String line) {
+        return line.startsWith("{") && line.contains("\"ack\"");
+    }
+
+    static String commandName(int opcode) {
+        return opcode > 0 && opcode < COMMAND_NAMES.length ? COMMAND_NAMES[opcode] : null;
+    }
+}
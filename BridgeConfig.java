@@ -0,0 +1,290 @@
+/**
+ * Runtime settings for the Python bridge. Each value is read from a system
+ * property such as {@code -Dbridge.transport=binary}, then from the matching
+ * environment variable ({@code BRIDGE_TRANSPORT}), then falls back to the
+ * built-in default.
+ */
+final class BridgeConfig {
+
+    private BridgeConfig() {
+    }
+
+    /**
+     * Wire format to offer the Python side: "json" (default), "binary", or
+     * "shm" for binary frames through a shared-memory file.
+     */
+    static String transport() {
+        return get("bridge.transport", "json");
+    }
+
+    /** Send each turn's events as one batch closed by an end-of-turn reply. */
+    static boolean batch() {
+        return getBoolean("bridge.batch", false);
+    }
+
+    /**
+     * Pipelined turns: send each turn's events and go on without waiting,
+     * applying Python's reply one turn later.
+     */
+    static boolean pipeline() {
+        return getBoolean("bridge.pipeline", false);
+    }
+
+    /** How many turns a batched reply may lag behind before it is dropped. */
+    static int maxReplyLagTurns() {
+        return (int) getLong("bridge.maxReplyLagTurns", 1);
+    }
+
+    /**
+     * Fixed per-turn reply deadline in microseconds; 0 (the default) derives
+     * it from the server's turn timeout instead.
+     */
+    static long turnDeadlineMicros() {
+        return getLong("bridge.turnDeadlineUs", 0);
+    }
+
+    /** Share of the server's turn timeout that Python may use per turn. */
+    static double turnDeadlineFraction() {
+        return getDouble("bridge.turnDeadlineFraction", 0.8);
+    }
+
+    /** Time kept back from the turn for applying commands and calling go(). */
+    static long turnReserveMicros() {
+        return getLong("bridge.turnReserveUs", 1000);
+    }
+
+    /** Unbatched mode: quiet time after the last command before moving on. */
+    static long replyQuietMicros() {
+        return getLong("bridge.replyQuietUs", 200);
+    }
+
+    /**
+     * Most events kept queued for Python; older droppable and state events
+     * beyond it are dropped, critical ones never are (see EventQueue).
+     */
+    static int eventQueueLimit() {
+        return (int) getLong("bridge.eventQueueLimit", 64);
+    }
+
+    /** Send ticks as deltas against the last one sent, with periodic keyframes. */
+    static boolean tickDelta() {
+        return getBoolean("bridge.tickDelta", false);
+    }
+
+    /** Delta ticks: a full tick is sent at least this often, in turns. */
+    static int tickKeyframeTurns() {
+        return (int) getLong("bridge.tickKeyframeTurns", 30);
+    }
+
+    /** Delta ticks: changes no larger than this are not sent. */
+    static double tickDeltaEpsilon() {
+        return getDouble("bridge.tickDeltaEpsilon", 1e-3);
+    }
+
+    /**
+     * How several commands for the same actuator in one turn are combined:
+     * "last" (the default), "first" or "sum" (see CommandSlots).
+     */
+    static String commandMerge() {
+        return get("bridge.commandMerge", "last");
+    }
+
+    /** Scans of each enemy that EnemyTracker keeps. */
+    static int enemyHistory() {
+        return (int) getLong("bridge.enemyHistory", 16);
+    }
+
+    /** Directory PythonBridgeBot records its events and commands to; empty (the default) for none. */
+    static String recordDir() {
+        return get("bridge.recordDir", "");
+    }
+
+    /** Size of each of the two shared-memory rings, in bytes. */
+    static int shmRingBytes() {
+        return (int) getLong("bridge.shmRingBytes", 64 * 1024);
+    }
+
+    /** Busy-spin iterations before a shared-memory wait starts parking. */
+    static int shmSpinTries() {
+        return (int) getLong("bridge.shmSpinTries", 10_000);
+    }
+
+    /** Park interval of a shared-memory wait once spinning gave up. */
+    static long shmParkMicros() {
+        return getLong("bridge.shmParkUs", 50);
+    }
+
+    /**
+     * "host:port" (or a port on loopback) of a running strategy server to
+     * connect to instead of starting Python; empty (the default) starts it.
+     */
+    static String strategyServer() {
+        return get("bridge.server", "");
+    }
+
+    /**
+     * Session name on the strategy server, under which it keeps the bot's
+     * copy of the script: %b stands for the bot's name (PythonBridgeBot-N),
+     * %p for this JVM's process id. The default, %b, lets a restarted bot
+     * resume; %b@%p keeps the sessions of concurrent JVMs apart.
+     */
+    static String session() {
+        return get("bridge.session", "%b");
+    }
+
+    /** Send Python its time budget and a load level every turn, and cover missed deadlines (TurnBudget). */
+    static boolean budget() {
+        return getBoolean("bridge.budget", false);
+    }
+
+    /** Round trips the load level's latency percentile is taken over. */
+    static int budgetWindow() {
+        return (int) getLong("bridge.budgetWindow", 32);
+    }
+
+    /** Share of the budget the latency percentile may reach before the level goes down. */
+    static double budgetDegradeAt() {
+        return getDouble("bridge.budgetDegradeAt", 0.75);
+    }
+
+    /** Share of the budget the latency percentile must stay under for the level to go back up. */
+    static double budgetRecoverAt() {
+        return getDouble("bridge.budgetRecoverAt", 0.4);
+    }
+
+    /** Commands filed, where nothing else is, when Python misses a deadline; ";"-separated. */
+    static String fallback() {
+        return get("bridge.fallback", "turnRadarRight 45");
+    }
+
+    /** Keep a second Python process started and handed the handshake, to take over if the first fails. */
+    static boolean standby() {
+        return getBoolean("bridge.standby", false);
+    }
+
+    /**
+     * Batched mode with a standby: deadlines missed in a row after which
+     * Python counts as hung and the standby takes over; 0 only fails over
+     * when the process exits.
+     */
+    static int failoverMisses() {
+        return (int) getLong("bridge.failoverMisses", 10);
+    }
+
+    /**
+     * Launcher: server to connect to without asking, which also skips the
+     * window; falls back to SERVER_URL, as set by Robocode Tank Royale's
+     * booter, and null if neither is set.
+     */
+    static String serverUrl() {
+        String url = get("bridge.serverUrl", System.getenv("SERVER_URL"));
+        return url == null || url.isBlank() ? null : url.trim();
+    }
+
+    /** Launcher: secret for {@link #serverUrl()}; falls back to SERVER_SECRET. */
+    static String serverSecret() {
+        return get("bridge.serverSecret", System.getenv("SERVER_SECRET"));
+    }
+
+    /** Launcher: number of bots to run in this JVM (more than 1 enables host mode). */
+    static int hostBots() {
+        return (int) getLong("bridge.hostBots", 1);
+    }
+
+    /** Launcher host mode: number of shared Python processes the bots are spread over. */
+    static int hostWorkers() {
+        return (int) getLong("bridge.hostWorkers", 1);
+    }
+
+    /** File the metrics are appended to every interval (.csv or JSON lines); empty for none. */
+    static String metricsFile() {
+        return get("bridge.metricsFile", "");
+    }
+
+    static long metricsIntervalMs() {
+        return getLong("bridge.metricsIntervalMs", 1000);
+    }
+
+    /** Publish the metrics through JMX. */
+    static boolean metricsJmx() {
+        return getBoolean("bridge.metricsJmx", true);
+    }
+
+    /** Most detailed log level written: ERROR, WARN, INFO (default), DEBUG or TRACE. */
+    static String logLevel() {
+        return get("bridge.logLevel", "INFO");
+    }
+
+    /** Log file, rotated when full; empty (the default) logs to the console. */
+    static String logFile() {
+        return get("bridge.logFile", "");
+    }
+
+    static long logMaxBytes() {
+        return getLong("bridge.logMaxBytes", 10L * 1024 * 1024);
+    }
+
+    /** Number of rotated log files kept next to the current one. */
+    static int logFiles() {
+        return (int) getLong("bridge.logFiles", 5);
+    }
+
+    /** Messages the log ring can hold before new ones are dropped. */
+    static int logRingSlots() {
+        return (int) getLong("bridge.logRingSlots", 4096);
+    }
+
+    /** How long to wait for Python's ready line after starting it. */
+    static long startupTimeoutMs() {
+        return getLong("bridge.startupTimeoutMs", 5000);
+    }
+
+    /** How long to wait for Python to answer the transport handshake. */
+    static long handshakeTimeoutMs() {
+        return getLong("bridge.handshakeTimeoutMs", 2000);
+    }
+
+    static String get(String key, String def) {
+        String value = System.getProperty(key);
+        if (value == null || value.isEmpty()) {
+            value = System.getenv(envName(key));
+        }
+        return value == null || value.isEmpty() ? def : value.trim();
+    }
+
+    static long getLong(String key, long def) {
+        try {
+            return Long.parseLong(get(key, Long.toString(def)));
+        } catch (NumberFormatException ex) {
+            return def;
+        }
+    }
+
+    static double getDouble(String key, double def) {
+        try {
+            return Double.parseDouble(get(key, Double.toString(def)));
+        } catch (NumberFormatException ex) {
+            return def;
+        }
+    }
+
+    static boolean getBoolean(String key, boolean def) {
+        return Boolean.parseBoolean(get(key, Boolean.toString(def)));
+    }
+
+    /** bridge.handshakeTimeoutMs → BRIDGE_HANDSHAKE_TIMEOUT_MS */
+    private static String envName(String key) {
+        StringBuilder sb = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '.') {
+                sb.append('_');
+            } else if (Character.isUpperCase(c)) {
+                sb.append('_').append(c);
+            } else {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * A single event queued for the Python strategy. The values are stored in
+ * the order given by the {@link EventType} layout so that either transport
+ * can encode them without knowing which game event produced them.
+ *
+ * Instances are slots owned by an {@link EventQueue} and are reused for
+ * events of any type, so the arrays are sized for the largest layout and
+ * only the first {@code type.intFields.length} / {@code type.doubleFields.length}
+ * entries are meaningful.
+ */
+final class BridgeEvent {
+    static final int MAX_INTS;
+    static final int MAX_DOUBLES;
+
+    static {
+        int ints = 0;
+        int doubles = 0;
+        for (EventType t : EventType.values()) {
+            ints = Math.max(ints, t.intFields.length);
+            doubles = Math.max(doubles, t.doubleFields.length);
+        }
+        MAX_INTS = ints;
+        MAX_DOUBLES = doubles;
+    }
+
+    EventType type;
+    final int[] ints = new int[MAX_INTS];
+    final double[] doubles = new double[MAX_DOUBLES];
+    /** Sparse types only: bit i set if doubles[i] is present. */
+    int mask;
+
+    BridgeEvent reset(EventType type) {
+        this.type = type;
+        this.mask = 0;
+        return this;
+    }
+}
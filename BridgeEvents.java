@@ -0,0 +1,88 @@
+/**
+ * Builders for the events sent to Python, shared by the bots and
+ * {@link SimBattle} so that a field is filled the same way wherever the
+ * event comes from. Each fills a reused slot of the queue in
+ * {@link EventType} order from plain values, so callers pass what the Bot
+ * API (or the simulator) reports rather than its event objects.
+ */
+final class BridgeEvents {
+
+    private BridgeEvents() {
+    }
+
+    static void connected(EventQueue q, int round) {
+        q.add(EventType.CONNECTED).ints[0] = round;
+    }
+
+    static void scanned(EventQueue q, int botId, double energy, double x, double y, double direction,
+                        double speed) {
+        BridgeEvent ev = q.add(EventType.SCANNED);
+        ev.ints[0] = botId;
+        double[] d = ev.doubles;
+        d[0] = energy;
+        d[1] = x;
+        d[2] = y;
+        d[3] = direction;
+        d[4] = speed;
+    }
+
+    static void hitByBullet(EventQueue q, double damage, double bulletDirection) {
+        double[] d = q.add(EventType.HIT_BY_BULLET).doubles;
+        d[0] = damage;
+        d[1] = bulletDirection;
+    }
+
+    static void bulletHitBot(EventQueue q, int victimId, double damage) {
+        BridgeEvent ev = q.add(EventType.BULLET_HIT_BOT);
+        ev.ints[0] = victimId;
+        ev.doubles[0] = damage;
+    }
+
+    static void bulletHitWall(EventQueue q) {
+        q.add(EventType.BULLET_HIT_WALL);
+    }
+
+    /** The bot's own state at {@code turn}, after movement. */
+    static void tick(EventQueue q, int turn, double energy, double x, double y, double direction,
+                     double gunDirection, double radarDirection, double gunHeat, double speed) {
+        BridgeEvent ev = q.add(EventType.TICK);
+        ev.ints[0] = turn;
+        double[] d = ev.doubles;
+        d[0] = energy;
+        d[1] = x;
+        d[2] = y;
+        d[3] = direction;
+        d[4] = gunDirection;
+        d[5] = radarDirection;
+        d[6] = gunHeat;
+        d[7] = speed;
+    }
+
+    static void wonRound(EventQueue q, int turn) {
+        q.add(EventType.WON_ROUND).ints[0] = turn;
+    }
+
+    static void skippedTurn(EventQueue q, int turn) {
+        q.add(EventType.SKIPPED_TURN).ints[0] = turn;
+    }
+
+    static void custom(EventQueue q) {
+        q.add(EventType.CUSTOM);
+    }
+
+    static void hitWall(EventQueue q) {
+        q.add(EventType.HIT_WALL);
+    }
+
+    static void opponentDeath(EventQueue q, int victimId) {
+        q.add(EventType.OPPONENT_DEATH).ints[0] = victimId;
+    }
+
+    static void roundEnded(EventQueue q) {
+        q.add(EventType.ROUND_ENDED);
+    }
+
+    static void death(EventQueue q) {
+        q.add(EventType.DEATH);
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous, level-gated log for the bridge. Any thread may log; the
+ * message is copied into a slot of a preallocated ring and a background
+ * thread formats and writes it, so logging on the turn path costs a level
+ * check and a copy but no console or file I/O. If the ring is full the
+ * message is dropped and counted rather than blocking the caller.
+ *
+ * Output goes to the console, or with {@code bridge.logFile} to that file,
+ * rotated to .1, .2, … once it reaches {@code bridge.logMaxBytes}. Errors
+ * and warnings always reach stderr as well. Messages longer than a slot
+ * ({@value #SLOT_BYTES} bytes) are truncated.
+ */
+final class BridgeLog {
+
+    enum Level { ERROR, WARN, INFO, DEBUG, TRACE }
+
+    private static final int SLOT_BYTES = 512;
+    private static final long IDLE_PARK_NANOS = 2_000_000L;
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final Level LEVEL = parseLevel(BridgeConfig.logLevel());
+    private static final BridgeLog INSTANCE = new BridgeLog(BridgeConfig.logRingSlots());
+
+    private final int mask;
+    private final byte[][] text;
+    private final int[] lengths;
+    private final Level[] levels;
+    private final long[] times;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long consumed;
+
+    private BridgeLog(int slots) {
+        int size = Integer.highestOneBit(Math.max(16, slots) - 1) << 1;
+        mask = size - 1;
+        text = new byte[size][SLOT_BYTES];
+        lengths = new int[size];
+        levels = new Level[size];
+        times = new long[size];
+        published = new AtomicLongArray(size);
+        Thread writer = new Thread(this::writeLoop, "bridge-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "bridge-log-flush"));
+    }
+
+    static boolean isEnabled(Level level) {
+        return level.compareTo(LEVEL) <= 0;
+    }
+
+    static void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    static void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    static void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    static void log(Level level, String message) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        BridgeLog log = INSTANCE;
+        long seq = log.claim();
+        if (seq < 0) {
+            return;
+        }
+        int i = (int) seq & log.mask;
+        log.lengths[i] = putChars(log.text[i], 0, message);
+        log.publish(seq, i, level);
+    }
+
+    /** Logs {@code prefix} followed by raw bytes without building a String. */
+    static void log(Level level, byte[] prefix, byte[] buf, int off, int len) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        BridgeLog log = INSTANCE;
+        long seq = log.claim();
+        if (seq < 0) {
+            return;
+        }
+        int i = (int) seq & log.mask;
+        byte[] slot = log.text[i];
+        int n = Math.min(prefix.length, SLOT_BYTES);
+        System.arraycopy(prefix, 0, slot, 0, n);
+        int m = Math.min(len, SLOT_BYTES - n);
+        System.arraycopy(buf, off, slot, n, m);
+        n += m;
+        // drop the line break that the traffic already ends with
+        while (n > 0 && (slot[n - 1] == '\n' || slot[n - 1] == '\r')) {
+            n--;
+        }
+        log.lengths[i] = n;
+        log.publish(seq, i, level);
+    }
+
+    /** Messages lost because the ring was full. */
+    static long droppedMessages() {
+        return INSTANCE.dropped.get();
+    }
+
+    // ── producers ────────────────────────────────────────────────────
+    /** Claims the next slot, or returns -1 (and counts a drop) if the ring is full. */
+    private long claim() {
+        while (true) {
+            long seq = claimed.get();
+            if (seq - consumed > mask) {
+                dropped.incrementAndGet();
+                return -1;
+            }
+            if (claimed.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    private void publish(long seq, int i, Level level) {
+        levels[i] = level;
+        times[i] = System.currentTimeMillis();
+        published.set(i, seq + 1);
+    }
+
+    /** Encodes {@code s} as UTF-8 into {@code dst}, truncating at the slot size. */
+    private static int putChars(byte[] dst, int pos, String s) {
+        for (int k = 0; k < s.length(); k++) {
+            char c = s.charAt(k);
+            if (c < 0x80) {
+                if (pos + 1 > SLOT_BYTES) {
+                    break;
+                }
+                dst[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                if (pos + 2 > SLOT_BYTES) {
+                    break;
+                }
+                dst[pos++] = (byte) (0xC0 | c >> 6);
+                dst[pos++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                if (pos + 3 > SLOT_BYTES) {
+                    break;
+                }
+                dst[pos++] = (byte) (0xE0 | c >> 12);
+                dst[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                dst[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return pos;
+    }
+
+    // ── writer thread ────────────────────────────────────────────────
+    private void writeLoop() {
+        String file = BridgeConfig.logFile();
+        Sink sink = file.isEmpty() ? new Sink(null, 0, 0)
+                : new Sink(new File(file), BridgeConfig.logMaxBytes(), BridgeConfig.logFiles());
+        long reportedDrops = 0;
+        while (true) {
+            boolean wrote = false;
+            try {
+                while (drainOne(sink)) {
+                    wrote = true;
+                }
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    sink.write(Level.WARN, System.currentTimeMillis(),
+                            ascii("log ring full, " + (drops - reportedDrops) + " messages dropped"));
+                    reportedDrops = drops;
+                    wrote = true;
+                }
+                if (wrote) {
+                    sink.flush();
+                }
+            } catch (IOException ex) {
+                System.err.println("Writing the bridge log failed: " + ex.getMessage());
+                sink = new Sink(null, 0, 0);
+            }
+            if (!wrote) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private boolean drainOne(Sink sink) throws IOException {
+        long seq = consumed;
+        int i = (int) seq & mask;
+        if (published.get(i) != seq + 1) {
+            return false;
+        }
+        sink.write(levels[i], times[i], text[i], lengths[i]);
+        consumed = seq + 1;
+        return true;
+    }
+
+    /** Waits briefly for the writer to catch up; used on JVM exit. */
+    private void flush() {
+        long deadline = System.nanoTime() + 500_000_000L;
+        while (consumed < claimed.get() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000L);
+        }
+    }
+
+    /** The console or a rotating file; only used by the writer thread. */
+    private static final class Sink {
+        private final File file;
+        private final long maxBytes;
+        private final int keep;
+        private OutputStream out;
+        private long size;
+        private final byte[] line = new byte[SLOT_BYTES + 32];
+
+        Sink(File file, long maxBytes, int keep) {
+            this.file = file;
+            this.maxBytes = maxBytes;
+            this.keep = keep;
+            out = file == null ? System.out : null;
+        }
+
+        void write(Level level, long time, byte[] msg) throws IOException {
+            write(level, time, msg, msg.length);
+        }
+
+        void write(Level level, long time, byte[] msg, int len) throws IOException {
+            if (file != null && (out == null || (maxBytes > 0 && size >= maxBytes))) {
+                rotate();
+            }
+            String head = TIME.format(Instant.ofEpochMilli(time)) + ' ' + level + ' ';
+            int n = putChars(line, 0, head);
+            System.arraycopy(msg, 0, line, n, len);
+            n += len;
+            line[n++] = '\n';
+            boolean problem = level.compareTo(Level.WARN) <= 0;
+            if (file == null && problem) {
+                System.out.flush();
+            } else {
+                out.write(line, 0, n);
+                size += n;
+            }
+            if (problem) {
+                System.err.write(line, 0, n);
+            }
+        }
+
+        void flush() throws IOException {
+            out.flush();
+            System.err.flush();
+        }
+
+        private void rotate() throws IOException {
+            if (out != null) {
+                out.close();
+                for (int k = keep - 1; k >= 1; k--) {
+                    File from = new File(file.getPath() + "." + k);
+                    if (from.isFile()) {
+                        File to = new File(file.getPath() + "." + (k + 1));
+                        to.delete();
+                        from.renameTo(to);
+                    }
+                }
+                if (keep > 0) {
+                    File first = new File(file.getPath() + ".1");
+                    first.delete();
+                    file.renameTo(first);
+                } else {
+                    file.delete();
+                }
+            }
+            out = new BufferedOutputStream(new FileOutputStream(file, out == null && file.isFile()), 1 << 16);
+            size = file.length();
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return Level.INFO;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Where each turn's budget goes, for one bot: how long encoding the events,
+ * Python's round trip, parsing and dispatching the commands took, how many
+ * events and bytes a turn carried and how deep the event queue was, plus
+ * counters for deadline misses, skipped turns, discarded replies, turns whose
+ * events were held back, events coalesced or dropped from the queue, commands
+ * dropped or merged per actuator, reflex rules fired, commands issued by
+ * Java-side controllers or filed in for a missed deadline, the load level
+ * Python was last told, and how often and how fast Python was replaced.
+ *
+ * The bot thread records everything except command parsing, which the
+ * reader thread records; both only touch primitive fields and
+ * {@link Histogram}s. {@link MetricsExporter} turns the recordings into one
+ * row per interval for the metrics file and for JMX.
+ */
+final class BridgeMetrics implements BridgeMetricsMXBean {
+
+    private static final double NANOS_PER_MICRO = 1_000.0;
+
+    final String name;
+
+    // ── nanoseconds
+    final Histogram encode = new Histogram();
+    final Histogram roundTrip = new Histogram();
+    final Histogram parse = new Histogram();
+    final Histogram dispatch = new Histogram();
+    final Histogram failover = new Histogram();
+    // ── per turn
+    final Histogram eventsPerTurn = new Histogram();
+    final Histogram bytesPerTurn = new Histogram();
+    final Histogram queueDepth = new Histogram();
+
+    private long turns;
+    private long deadlineMisses;
+    private long skippedTurns;
+    private long commands;
+    private long discardedReplies;
+    private long heldTurns;
+    private long coalescedEvents;
+    private long droppedEvents;
+    private long reflexes;
+    private long controlled;
+    private long failovers;
+    private long fallbacks;
+    private int budgetLevel;
+    private long droppedCommands;
+    private long mergedCommands;
+    private int turnEvents;
+    private long turnBytes;
+
+    // ── exporter side: the last interval
+    private final Histogram.Snapshot snap = new Histogram.Snapshot();
+    private volatile Map<String, Double> lastInterval = Collections.emptyMap();
+
+    BridgeMetrics(String name) {
+        this.name = name;
+    }
+
+    // ── recording ────────────────────────────────────────────────────
+    /** Bot thread: {@code events} events were encoded into {@code bytes} bytes. */
+    void sent(int events, int bytes, long encodeNanos) {
+        turnEvents += events;
+        turnBytes += bytes;
+        encode.record(encodeNanos);
+    }
+
+    /** Bot thread: closes the current turn's per-turn figures. */
+    void endTurn() {
+        turns++;
+        eventsPerTurn.record(turnEvents);
+        bytesPerTurn.record(turnBytes);
+        turnEvents = 0;
+        turnBytes = 0;
+    }
+
+    /** Reader thread: one command was read back from Python. */
+    void commandParsed(long nanos) {
+        commands++;
+        parse.record(nanos);
+    }
+
+    void deadlineMissed() {
+        deadlineMisses++;
+    }
+
+    void skippedTurn() {
+        skippedTurns++;
+    }
+
+    void replyDiscarded() {
+        discardedReplies++;
+    }
+
+    /** Bot thread: this turn's events were kept queued for a later one. */
+    void heldTurn() {
+        heldTurns++;
+    }
+
+    /** Bot thread: queued events that EventQueue coalesced or dropped before a send. */
+    void eventsCoalesced(int coalesced, int dropped) {
+        coalescedEvents += coalesced;
+        droppedEvents += dropped;
+    }
+
+    /** Bot thread: commands of one turn that CommandSlots dropped or merged. */
+    void commandsCoalesced(int dropped, int merged) {
+        droppedCommands += dropped;
+        mergedCommands += merged;
+    }
+
+    /** Bot thread: {@code n} reflex rules fired for one event. */
+    void reflexesFired(int n) {
+        reflexes += n;
+    }
+
+    /** Bot thread: {@code n} commands the controllers issued this turn. */
+    void controllerCommands(int n) {
+        controlled += n;
+    }
+
+    /** Bot thread: {@code n} fallback commands filed for a missed deadline. */
+    void fallbackCommands(int n) {
+        fallbacks += n;
+    }
+
+    /** Bot thread: the load level sent to Python this turn. */
+    void budgetLevel(int level) {
+        budgetLevel = level;
+    }
+
+    /** Bot thread: a dead or hung Python was replaced, taking {@code nanos}. */
+    void failover(long nanos) {
+        failovers++;
+        failover.record(nanos);
+    }
+
+    // ── exporting ────────────────────────────────────────────────────
+    /** Exporter thread: summarises the interval since the previous call. */
+    Map<String, Double> takeInterval() {
+        Map<String, Double> row = new LinkedHashMap<>();
+        row.put("turns", (double) turns);
+        row.put("deadlineMisses", (double) deadlineMisses);
+        row.put("skippedTurns", (double) skippedTurns);
+        row.put("commands", (double) commands);
+        row.put("discardedReplies", (double) discardedReplies);
+        row.put("heldTurns", (double) heldTurns);
+        row.put("coalescedEvents", (double) coalescedEvents);
+        row.put("droppedEvents", (double) droppedEvents);
+        row.put("droppedCommands", (double) droppedCommands);
+        row.put("mergedCommands", (double) mergedCommands);
+        row.put("reflexes", (double) reflexes);
+        row.put("controllerCommands", (double) controlled);
+        row.put("failovers", (double) failovers);
+        row.put("fallbackCommands", (double) fallbacks);
+        row.put("budgetLevel", (double) budgetLevel);
+        putNanos(row, "encode", encode);
+        putNanos(row, "roundTrip", roundTrip);
+        putNanos(row, "parse", parse);
+        putNanos(row, "dispatch", dispatch);
+        putNanos(row, "failover", failover);
+        putValues(row, "eventsPerTurn", eventsPerTurn);
+        putValues(row, "bytesPerTurn", bytesPerTurn);
+        putValues(row, "queueDepth", queueDepth);
+        lastInterval = Collections.unmodifiableMap(row);
+        return row;
+    }
+
+    private void putNanos(Map<String, Double> row, String key, Histogram h) {
+        h.snapshot(snap);
+        row.put(key + "Count", (double) snap.count);
+        row.put(key + "MeanUs", snap.mean / NANOS_PER_MICRO);
+        row.put(key + "P50Us", snap.p50 / NANOS_PER_MICRO);
+        row.put(key + "P99Us", snap.p99 / NANOS_PER_MICRO);
+        row.put(key + "MaxUs", snap.max / NANOS_PER_MICRO);
+    }
+
+    private void putValues(Map<String, Double> row, String key, Histogram h) {
+        h.snapshot(snap);
+        row.put(key + "Mean", snap.mean);
+        row.put(key + "P99", (double) snap.p99);
+        row.put(key + "Max", (double) snap.max);
+    }
+
+    // ── JMX ──────────────────────────────────────────────────────────
+    @Override
+    public long getTurns() {
+        return turns;
+    }
+
+    @Override
+    public long getDeadlineMisses() {
+        return deadlineMisses;
+    }
+
+    @Override
+    public long getSkippedTurns() {
+        return skippedTurns;
+    }
+
+    @Override
+    public long getCommands() {
+        return commands;
+    }
+
+    @Override
+    public long getDiscardedReplies() {
+        return discardedReplies;
+    }
+
+    @Override
+    public long getHeldTurns() {
+        return heldTurns;
+    }
+
+    @Override
+    public long getCoalescedEvents() {
+        return coalescedEvents;
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    @Override
+    public long getDroppedCommands() {
+        return droppedCommands;
+    }
+
+    @Override
+    public long getMergedCommands() {
+        return mergedCommands;
+    }
+
+    @Override
+    public long getReflexes() {
+        return reflexes;
+    }
+
+    @Override
+    public long getControllerCommands() {
+        return controlled;
+    }
+
+    @Override
+    public long getFailovers() {
+        return failovers;
+    }
+
+    @Override
+    public long getFallbackCommands() {
+        return fallbacks;
+    }
+
+    @Override
+    public int getBudgetLevel() {
+        return budgetLevel;
+    }
+
+    @Override
+    public double getRoundTripP50Micros() {
+        return last("roundTripP50Us");
+    }
+
+    @Override
+    public double getRoundTripP99Micros() {
+        return last("roundTripP99Us");
+    }
+
+    @Override
+    public double getEncodeP99Micros() {
+        return last("encodeP99Us");
+    }
+
+    @Override
+    public double getParseP99Micros() {
+        return last("parseP99Us");
+    }
+
+    @Override
+    public double getDispatchP99Micros() {
+        return last("dispatchP99Us");
+    }
+
+    @Override
+    public double getEventsPerTurnMean() {
+        return last("eventsPerTurnMean");
+    }
+
+    @Override
+    public double getBytesPerTurnMean() {
+        return last("bytesPerTurnMean");
+    }
+
+    @Override
+    public long getQueueDepthMax() {
+        return (long) last("queueDepthMax");
+    }
+
+    @Override
+    public Map<String, Double> getLastInterval() {
+        return lastInterval;
+    }
+
+    private double last(String key) {
+        Double v = lastInterval.get(key);
+        return v == null ? 0 : v;
+    }
+}
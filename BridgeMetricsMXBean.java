@@ -0,0 +1,57 @@
+import java.util.Map;
+
+/**
+ * JMX view of one bot's {@link BridgeMetrics}. Counters are totals since the
+ * bot started; percentiles and means describe the last export interval.
+ */
+public interface BridgeMetricsMXBean {
+
+    long getTurns();
+
+    long getDeadlineMisses();
+
+    long getSkippedTurns();
+
+    long getCommands();
+
+    long getDiscardedReplies();
+
+    long getHeldTurns();
+
+    long getCoalescedEvents();
+
+    long getDroppedEvents();
+
+    long getDroppedCommands();
+
+    long getMergedCommands();
+
+    long getReflexes();
+
+    long getControllerCommands();
+
+    long getFailovers();
+
+    long getFallbackCommands();
+
+    int getBudgetLevel();
+
+    double getRoundTripP50Micros();
+
+    double getRoundTripP99Micros();
+
+    double getEncodeP99Micros();
+
+    double getParseP99Micros();
+
+    double getDispatchP99Micros();
+
+    double getEventsPerTurnMean();
+
+    double getBytesPerTurnMean();
+
+    long getQueueDepthMax();
+
+    /** Every figure of the last interval, as written to the metrics file. */
+    Map<String, Double> getLastInterval();
+}
@@ -0,0 +1,136 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Append-only log of what a bot sent to Python and got back, for offline
+ * replay with {@link BridgeReplay}. After an 8-byte header ({@link #MAGIC},
+ * {@link #VERSION}) the file is a sequence of little-endian records
+ *
+ *   [kind:u8] [micros:u32] [payload]
+ *
+ * where micros counts from the start of the round and the payload is
+ *
+ *   ROUND   : [round:int32]
+ *   EVENT   : one length-prefixed event frame as in BinaryProtocol
+ *   TURN    : [turn:int32]  the events before it were sent for this turn
+ *   COMMAND : [opcode:u8] [power:f64] [distance:f64] [angle:f64]
+ *
+ * Commands belong to the turn before them. Events are recorded as they are
+ * sent, after the queue has coalesced them but before any delta encoding,
+ * so a recording does not depend on the transport it was made with. Turns
+ * whose events were held back leave no TURN record.
+ *
+ * Records go into a heap buffer that is written out when it fills up and at
+ * the end of every round, so recording costs the bot thread a few stores
+ * per event.
+ */
+final class BridgeRecorder {
+
+    static final int MAGIC = 0x43455242; // "BREC"
+    static final int VERSION = 2;
+
+    static final int ROUND = 1;
+    static final int EVENT = 2;
+    static final int TURN = 3;
+    static final int COMMAND = 4;
+
+    private static final int RECORD_HEADER_BYTES = 1 + Integer.BYTES;
+    private static final int MAX_RECORD_BYTES = RECORD_HEADER_BYTES + BinaryProtocol.HEADER_BYTES + 2
+            + Integer.BYTES * BridgeEvent.MAX_INTS + Double.BYTES * BridgeEvent.MAX_DOUBLES;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buf = BinaryProtocol.newBuffer(64 * 1024);
+    private long roundStartNanos = System.nanoTime();
+
+    private BridgeRecorder(File file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buf.putInt(MAGIC).putInt(VERSION);
+    }
+
+    /**
+     * Opens {@code <bridge.recordDir>/<name>-<time>.rec}, or returns null if
+     * recording is off or the file cannot be created.
+     */
+    static BridgeRecorder open(String name) {
+        String dir = BridgeConfig.recordDir();
+        if (dir.isEmpty()) {
+            return null;
+        }
+        File file = new File(dir, name + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".rec");
+        try {
+            file.getParentFile().mkdirs();
+            BridgeRecorder recorder = new BridgeRecorder(file);
+            BridgeLog.info("Recording to " + file);
+            return recorder;
+        } catch (IOException ex) {
+            BridgeLog.error("Cannot record to " + file + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    File file() {
+        return file;
+    }
+
+    void startRound(int round) {
+        roundStartNanos = System.nanoTime();
+        header(ROUND).putInt(round);
+    }
+
+    void event(BridgeEvent e) {
+        BinaryProtocol.writeEvent(e, header(EVENT));
+    }
+
+    /** Records every event still queued in {@code q}, leaving the queue as it is. */
+    void events(EventQueue q) {
+        for (int i = 0; i < q.size(); i++) {
+            event(q.get(i));
+        }
+    }
+
+    void turn(int turn) {
+        header(TURN).putInt(turn);
+    }
+
+    void command(int opcode, double power, double distance, double angle) {
+        header(COMMAND).put((byte) opcode).putDouble(power).putDouble(distance).putDouble(angle);
+    }
+
+    /** Writes out everything recorded so far. */
+    void flush() {
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } catch (IOException ex) {
+            BridgeLog.error("Writing " + file + " failed: " + ex.getMessage());
+        }
+        buf.clear();
+    }
+
+    void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // nothing left to lose
+        }
+    }
+
+    private ByteBuffer header(int kind) {
+        if (buf.remaining() < MAX_RECORD_BYTES) {
+            flush();
+        }
+        long micros = (System.nanoTime() - roundStartNanos) / 1_000;
+        return buf.put((byte) kind).putInt((int) Math.min(micros, 0xFFFF_FFFFL));
+    }
+}
@@ -0,0 +1,373 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Feeds a {@link BridgeRecorder} log to a strategy script as fast as the
+ * script answers, without a Tank Royale server or the Bot API. Every turn's
+ * events are sent as they were recorded and the replies are compared with
+ * the commands the live bot received, so a deterministic strategy can be
+ * regression-tested in seconds and any strategy can be timed.
+ *
+ * Commands are compared as one stream per round: a turn only counts as
+ * different if its replies depart from the recorded stream. Without batches
+ * a reply can straddle two turns depending on timing, live or here, and
+ * that alone does not make a strategy's output different.
+ *
+ *   java BridgeReplay <recording.rec> [script.py] [--round N] [--repeat N]
+ *                     [--transport json|binary|shm] [--unbatched] [--check]
+ *
+ * The script defaults to bot_logic.py. Turns are sent as binary batches
+ * unless told otherwise; unbatched replies are only complete after the
+ * quiet period (bridge.replyQuietUs), which then dominates the timings.
+ * With --check the exit status is 1 if any turn's commands differ.
+ */
+public final class BridgeReplay {
+
+    private static final long TURN_TIMEOUT_NANOS = 5_000_000_000L;
+    private static final double ARG_TOLERANCE = 1e-6;
+    private static final int MISMATCHES_SHOWN = 5;
+
+    /** One recorded turn: where its events are and which commands came back. */
+    private static final class Turn {
+        int round;
+        int number;
+        int eventsFrom;
+        int eventsTo;
+        long micros;
+        int firstCommand;
+        int commandCount;
+        long lastCommandMicros = -1;
+    }
+
+    private final ByteBuffer log;
+    private final List<Turn> turns = new ArrayList<>();
+    private int[] ops = new int[256];
+    private double[] args = new double[256 * 3];
+    private int commandTotal;
+
+    // ── replay state
+    private final EventQueue queue = new EventQueue();
+    private int[] gotOps = new int[16];
+    private double[] gotArgs = new double[16 * 3];
+    private int gotCount;
+    /** Position in the recorded commands that the next reply is compared with. */
+    private int cursor;
+    private int mismatched;
+
+    private BridgeReplay(ByteBuffer log) throws IOException {
+        this.log = log;
+        index();
+    }
+
+    public static void main(String[] args) {
+        String recording = null;
+        String script = "bot_logic.py";
+        int round = -1;
+        int repeat = 1;
+        String transport = BinaryProtocol.PROTOCOL_BINARY;
+        boolean batch = true;
+        boolean check = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--round":
+                        round = Integer.parseInt(args[++i]);
+                        break;
+                    case "--repeat":
+                        repeat = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--transport":
+                        transport = args[++i];
+                        break;
+                    case "--unbatched":
+                        batch = false;
+                        break;
+                    case "--check":
+                        check = true;
+                        break;
+                    default:
+                        if (recording == null) {
+                            recording = args[i];
+                        } else {
+                            script = args[i];
+                        }
+                }
+            }
+        } catch (RuntimeException ex) {
+            recording = null;
+        }
+        if (recording == null) {
+            System.err.println("usage: java BridgeReplay <recording.rec> [script.py] [--round N] [--repeat N]"
+                    + " [--transport json|binary|shm] [--unbatched] [--check]");
+            System.exit(2);
+        }
+        try {
+            ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(new File(recording).toPath()))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int mismatched = new BridgeReplay(log).run(new File(script), round, repeat, transport, batch);
+            System.exit(check && mismatched > 0 ? 1 : 0);
+        } catch (IOException ex) {
+            System.err.println("Replay failed: " + ex.getMessage());
+            System.exit(2);
+        }
+    }
+
+    // ── reading the log ──────────────────────────────────────────────
+    private void index() throws IOException {
+        if (log.remaining() < 8 || log.getInt() != BridgeRecorder.MAGIC) {
+            throw new IOException("not a bridge recording");
+        }
+        if (log.getInt() != BridgeRecorder.VERSION) {
+            throw new IOException("unsupported recording version");
+        }
+        int round = 0;
+        int eventsFrom = log.position();
+        Turn last = null;
+        // commands before a round's first turn answer nothing that is replayed, so they are left out
+        while (log.remaining() >= 5) {
+            int at = log.position();
+            int kind = log.get();
+            long micros = log.getInt() & 0xFFFF_FFFFL;
+            switch (kind) {
+                case BridgeRecorder.ROUND:
+                    round = log.getInt();
+                    eventsFrom = log.position();
+                    last = null;
+                    break;
+                case BridgeRecorder.EVENT:
+                    log.position(log.position() + Integer.BYTES + log.getInt(log.position()));
+                    break;
+                case BridgeRecorder.TURN:
+                    last = new Turn();
+                    last.round = round;
+                    last.number = log.getInt();
+                    last.eventsFrom = eventsFrom;
+                    last.eventsTo = at;
+                    last.micros = micros;
+                    last.firstCommand = commandTotal;
+                    turns.add(last);
+                    eventsFrom = log.position();
+                    break;
+                case BridgeRecorder.COMMAND:
+                    int opcode = log.get() & 0xFF;
+                    double power = log.getDouble();
+                    double distance = log.getDouble();
+                    double angle = log.getDouble();
+                    if (last != null) {
+                        addCommand(opcode, power, distance, angle);
+                        last.commandCount++;
+                        last.lastCommandMicros = micros;
+                    }
+                    break;
+                default:
+                    throw new IOException("corrupt record at byte " + at);
+            }
+        }
+    }
+
+    private void addCommand(int opcode, double power, double distance, double angle) {
+        if (commandTotal == ops.length) {
+            ops = Arrays.copyOf(ops, commandTotal * 2);
+            args = Arrays.copyOf(args, commandTotal * 2 * 3);
+        }
+        ops[commandTotal] = opcode;
+        args[commandTotal * 3] = power;
+        args[commandTotal * 3 + 1] = distance;
+        args[commandTotal * 3 + 2] = angle;
+        commandTotal++;
+    }
+
+    /** Queues the events recorded for {@code t}; records other than events are skipped. */
+    private void queueEvents(Turn t) {
+        log.position(t.eventsFrom);
+        while (log.position() < t.eventsTo) {
+            int kind = log.get();
+            log.getInt();
+            switch (kind) {
+                case BridgeRecorder.EVENT:
+                    BinaryProtocol.readEvent(log, queue);
+                    break;
+                case BridgeRecorder.COMMAND:
+                    log.position(log.position() + 1 + 3 * Double.BYTES);
+                    break;
+                default:
+                    log.position(log.position() + Integer.BYTES);
+            }
+        }
+    }
+
+    // ── replaying ────────────────────────────────────────────────────
+    private int run(File script, int onlyRound, int repeat, String transport, boolean batch) throws IOException {
+        Process process = new ProcessBuilder("python", "-u", script.getAbsolutePath()).start();
+        try {
+            PythonLink link = new PythonLink(process, false);
+            link.setQuietPeriodMicros(BridgeConfig.replyQuietMicros());
+            link.setMaxReplyLag(0);
+            // rules and controllers are taken but not run: the recording holds only Python's own commands
+            link.setReflexes(new ReflexRules());
+            link.setControllers(new Controllers());
+            link.awaitReady(BridgeConfig.startupTimeoutMs());
+            if ((!BinaryProtocol.PROTOCOL_JSON.equals(transport) || batch)
+                    && !link.negotiate(transport, batch, BridgeConfig.handshakeTimeoutMs())) {
+                BridgeLog.warn("The script did not accept " + transport + (batch ? " batches" : "")
+                        + ", replaying over " + link.transport() + (link.isBatched() ? " batches" : ""));
+            }
+            link.startReader();
+            return replay(link, onlyRound, repeat);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private int replay(PythonLink link, int onlyRound, int repeat) throws IOException {
+        PythonLink.CommandHandler handler = this::received;
+        Histogram roundTrip = new Histogram();
+        long liveMicros = 0;
+        int liveTurns = 0;
+        int replayed = 0;
+        int rounds = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < repeat; r++) {
+            Turn first = null;
+            Turn prev = null;
+            for (int i = 0; i < turns.size(); i++) {
+                Turn t = turns.get(i);
+                if (onlyRound >= 0 && t.round != onlyRound) {
+                    continue;
+                }
+                if (first == null || t.round != first.round) {
+                    if (first != null) {
+                        endRound(first, prev);
+                    }
+                    first = t;
+                    cursor = t.firstCommand;
+                    rounds++;
+                    link.newRound();
+                }
+                queueEvents(t);
+                gotCount = 0;
+                long t0 = System.nanoTime();
+                if (link.isBatched()) {
+                    link.sendBatch(t.number, queue);
+                    link.awaitCommands(handler, t0 + TURN_TIMEOUT_NANOS);
+                } else if (!queue.isEmpty()) {
+                    while (!queue.isEmpty()) {
+                        link.send(queue.poll());
+                    }
+                    link.awaitCommands(handler, t0 + TURN_TIMEOUT_NANOS);
+                } else {
+                    link.pollCommands(handler);
+                }
+                roundTrip.record(System.nanoTime() - t0);
+                replayed++;
+                if (t.lastCommandMicros >= 0) {
+                    liveMicros += t.lastCommandMicros - t.micros;
+                    liveTurns++;
+                }
+                compareTurn(t, roundEnd(i));
+                prev = t;
+                if (link.isClosed()) {
+                    throw new IOException("the script exited during round " + t.round + " turn " + t.number);
+                }
+            }
+            if (first != null) {
+                endRound(first, prev);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Histogram.Snapshot s = roundTrip.snapshot(new Histogram.Snapshot());
+        System.out.println(String.format(Locale.ROOT,
+                "Replayed %d rounds, %d turns in %.2f s: %.0f turns/s over %s%s",
+                rounds, replayed, seconds, replayed / seconds, link.transport(), link.isBatched() ? " batches" : ""));
+        System.out.println(String.format(Locale.ROOT,
+                "Round trip per turn: mean %.0f us, p50 %d us, p99 %d us, max %d us (live reply: mean %.0f us)",
+                s.mean / 1e3, s.p50 / 1_000, s.p99 / 1_000, s.max / 1_000,
+                liveTurns == 0 ? 0.0 : liveMicros / (double) liveTurns));
+        System.out.println(mismatched == 0 ? "Commands: all turns matched the recording"
+                : "Commands: " + mismatched + " turns departed from the recording");
+        return mismatched;
+    }
+
+    /** Index just past the recorded commands of the round that turn {@code i} belongs to. */
+    private int roundEnd(int i) {
+        int round = turns.get(i).round;
+        while (i + 1 < turns.size() && turns.get(i + 1).round == round) {
+            i++;
+        }
+        Turn last = turns.get(i);
+        return last.firstCommand + last.commandCount;
+    }
+
+    /** Compares this turn's replies with the recorded stream at the current position. */
+    private void compareTurn(Turn t, int roundEnd) {
+        boolean same = true;
+        for (int i = 0; i < gotCount && same; i++) {
+            same = cursor + i < roundEnd && sameCommand(i, cursor + i);
+        }
+        if (!same) {
+            report("Round " + t.round + " turn " + t.number + ": recorded "
+                    + describe(ops, args, t.firstCommand, t.commandCount) + ", replayed "
+                    + describe(gotOps, gotArgs, 0, gotCount));
+        }
+        cursor += gotCount;
+    }
+
+    private void endRound(Turn first, Turn last) {
+        int recorded = last.firstCommand + last.commandCount - first.firstCommand;
+        int got = cursor - first.firstCommand;
+        if (got != recorded) {
+            report("Round " + first.round + ": recorded " + recorded + " commands, replayed " + got);
+        }
+    }
+
+    private void report(String difference) {
+        if (mismatched++ < MISMATCHES_SHOWN) {
+            System.out.println(difference);
+        }
+    }
+
+    private void received(int opcode, double power, double distance, double angle) {
+        if (gotCount == gotOps.length) {
+            gotOps = Arrays.copyOf(gotOps, gotCount * 2);
+            gotArgs = Arrays.copyOf(gotArgs, gotCount * 2 * 3);
+        }
+        gotOps[gotCount] = opcode;
+        gotArgs[gotCount * 3] = power;
+        gotArgs[gotCount * 3 + 1] = distance;
+        gotArgs[gotCount * 3 + 2] = angle;
+        gotCount++;
+    }
+
+    private boolean sameCommand(int got, int recorded) {
+        if (gotOps[got] != ops[recorded]) {
+            return false;
+        }
+        for (int k = 0; k < 3; k++) {
+            if (Math.abs(gotArgs[got * 3 + k] - args[recorded * 3 + k]) > ARG_TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describe(int[] ops, double[] args, int from, int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = from; i < from + count; i++) {
+            if (i > from) {
+                sb.append(", ");
+            }
+            String name = BinaryProtocol.commandName(ops[i]);
+            sb.append(name == null ? "#" + ops[i] : name).append(' ')
+                    .append(ops[i] == BinaryProtocol.CMD_FIRE ? args[i * 3] : ops[i] == BinaryProtocol.CMD_FORWARD
+                            || ops[i] == BinaryProtocol.CMD_BACK ? args[i * 3 + 1] : args[i * 3 + 2]);
+        }
+        return sb.append(']').toString();
+    }
+}
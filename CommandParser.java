@@ -0,0 +1,415 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass parser for the text commands Python writes on the line-JSON
+ * transport. It reads straight from the bytes of a line, resolves the
+ * command name to its {@link BinaryProtocol} opcode by comparing bytes and
+ * parses the numbers in place, so a well-formed command allocates nothing.
+ *
+ * Both forms are accepted:
+ *   forward 150
+ *   {"cmd":"forward","distance":150}
+ *
+ * In the text form the single argument is used as power, distance and angle
+ * alike. In the JSON form keys other than cmd/power/distance/angle are
+ * skipped whatever their value, so strings may contain commas and objects or
+ * arrays may nest. Numbers may also be given as strings ("150"). Anything but
+ * whitespace after the argument or the closing brace fails the line.
+ */
+final class CommandParser {
+
+    // ── failure reasons (constants so that failing allocates nothing either)
+    static final String EMPTY = "empty command";
+    static final String UNKNOWN = "unknown command";
+    static final String NO_CMD = "missing \"cmd\"";
+    static final String MALFORMED = "malformed JSON";
+    static final String BAD_NUMBER = "bad number";
+    static final String TRAILING = "unexpected text after the command";
+
+    private static final int KEY_OTHER = 0;
+    private static final int KEY_CMD = 1;
+    private static final int KEY_POWER = 2;
+    private static final int KEY_DISTANCE = 3;
+    private static final int KEY_ANGLE = 4;
+
+    private static final byte[][] KEYS = {
+            null, ascii("cmd"), ascii("power"), ascii("distance"), ascii("angle")
+    };
+
+    /** Exactly representable powers of ten for the fast number path. */
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final byte[][] names;
+    private final int[] opcodes;
+
+    // ── result of the last parse
+    int opcode;
+    double power;
+    double distance;
+    double angle;
+    /** Why the last parse failed, or null if it succeeded. */
+    String error;
+
+    private byte[] b;
+    private int pos;
+    private int end;
+    private double number;
+
+    CommandParser() {
+        int n = 0;
+        for (String name : BinaryProtocol.COMMAND_NAMES) {
+            if (name != null) {
+                n++;
+            }
+        }
+        names = new byte[n + 1][];
+        opcodes = new int[n + 1];
+        int i = 0;
+        for (int op = 0; op < BinaryProtocol.COMMAND_NAMES.length; op++) {
+            if (BinaryProtocol.COMMAND_NAMES[op] != null) {
+                names[i] = ascii(BinaryProtocol.COMMAND_NAMES[op]);
+                opcodes[i++] = op;
+            }
+        }
+        names[i] = ascii(BinaryProtocol.END_TURN_TEXT.trim());
+        opcodes[i] = BinaryProtocol.CMD_END_TURN;
+    }
+
+    /**
+     * Parses the command in {@code buf[off, off + len)}. On success the
+     * opcode and arguments are left in the public fields; on failure
+     * {@link #error} says why.
+     */
+    boolean parse(byte[] buf, int off, int len) {
+        b = buf;
+        pos = off;
+        end = off + len;
+        opcode = -1;
+        power = 0;
+        distance = 0;
+        angle = 0;
+        error = null;
+
+        skipWhitespace();
+        if (pos >= end) {
+            return fail(EMPTY);
+        }
+        return b[pos] == '{' ? parseJson() : parseText();
+    }
+
+    private boolean parseText() {
+        int start = pos;
+        while (pos < end && !isWhitespace(b[pos])) {
+            pos++;
+        }
+        opcode = lookup(start, pos);
+        if (opcode < 0) {
+            return fail(UNKNOWN);
+        }
+        skipWhitespace();
+        if (pos < end) {
+            if (!parseNumber() || (pos < end && !isWhitespace(b[pos]))) {
+                return fail(BAD_NUMBER);
+            }
+            power = number;
+            distance = number;
+            angle = number;
+            skipWhitespace();
+        }
+        return pos >= end || fail(TRAILING);
+    }
+
+    private boolean parseJson() {
+        pos++; // '{'
+        boolean sawCmd = false;
+        skipWhitespace();
+        if (pos < end && b[pos] == '}') {
+            return fail(NO_CMD);
+        }
+        while (true) {
+            skipWhitespace();
+            if (pos >= end || b[pos] != '"') {
+                return fail(MALFORMED);
+            }
+            int keyStart = pos + 1;
+            if (!skipString()) {
+                return fail(MALFORMED);
+            }
+            int key = key(keyStart, pos - 1);
+            skipWhitespace();
+            if (pos >= end || b[pos] != ':') {
+                return fail(MALFORMED);
+            }
+            pos++;
+            skipWhitespace();
+            if (pos >= end) {
+                return fail(MALFORMED);
+            }
+            switch (key) {
+                case KEY_CMD:
+                    if (b[pos] != '"') {
+                        return fail(MALFORMED);
+                    }
+                    int nameStart = pos + 1;
+                    if (!skipString()) {
+                        return fail(MALFORMED);
+                    }
+                    opcode = lookup(nameStart, pos - 1);
+                    sawCmd = true;
+                    break;
+                case KEY_POWER:
+                case KEY_DISTANCE:
+                case KEY_ANGLE:
+                    if (!parseJsonNumber()) {
+                        return fail(BAD_NUMBER);
+                    }
+                    if (key == KEY_POWER) {
+                        power = number;
+                    } else if (key == KEY_DISTANCE) {
+                        distance = number;
+                    } else {
+                        angle = number;
+                    }
+                    break;
+                default:
+                    if (!skipValue()) {
+                        return fail(MALFORMED);
+                    }
+                    break;
+            }
+            skipWhitespace();
+            if (pos >= end) {
+                return fail(MALFORMED);
+            }
+            if (b[pos] == ',') {
+                pos++;
+            } else if (b[pos] == '}') {
+                pos++;
+                break;
+            } else {
+                return fail(MALFORMED);
+            }
+        }
+        if (!sawCmd) {
+            return fail(NO_CMD);
+        }
+        if (opcode < 0) {
+            return fail(UNKNOWN);
+        }
+        skipWhitespace();
+        return pos >= end || fail(TRAILING);
+    }
+
+    /** A JSON number, or a string holding one (the old parser accepted both). */
+    private boolean parseJsonNumber() {
+        if (b[pos] != '"') {
+            return parseNumber();
+        }
+        pos++;
+        skipWhitespace();
+        if (!parseNumber()) {
+            return false;
+        }
+        skipWhitespace();
+        if (pos >= end || b[pos] != '"') {
+            return false;
+        }
+        pos++;
+        return true;
+    }
+
+    /**
+     * Parses a decimal number at pos into {@link #number}. Up to 18
+     * significant digits with a small exponent are converted exactly with one
+     * multiplication or division; anything else falls back to
+     * {@link Double#parseDouble}.
+     */
+    private boolean parseNumber() {
+        int start = pos;
+        boolean negative = false;
+        if (pos < end && (b[pos] == '-' || b[pos] == '+')) {
+            negative = b[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        while (pos < end && isDigit(b[pos])) {
+            any = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (b[pos] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+            pos++;
+        }
+        if (pos < end && b[pos] == '.') {
+            pos++;
+            while (pos < end && isDigit(b[pos])) {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b[pos] - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                }
+                pos++;
+            }
+        }
+        if (!any) {
+            pos = start;
+            return false;
+        }
+        if (pos < end && (b[pos] == 'e' || b[pos] == 'E')) {
+            pos++;
+            boolean expNegative = false;
+            if (pos < end && (b[pos] == '-' || b[pos] == '+')) {
+                expNegative = b[pos] == '-';
+                pos++;
+            }
+            if (pos >= end || !isDigit(b[pos])) {
+                pos = start;
+                return false;
+            }
+            int e = 0;
+            while (pos < end && isDigit(b[pos])) {
+                if (e < 10_000) {
+                    e = e * 10 + (b[pos] - '0');
+                }
+                pos++;
+            }
+            exponent += expNegative ? -e : e;
+        }
+
+        double value;
+        if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+            value = exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+        } else {
+            try {
+                value = Math.abs(Double.parseDouble(
+                        new String(b, start, pos - start, StandardCharsets.US_ASCII)));
+            } catch (NumberFormatException ex) {
+                pos = start;
+                return false;
+            }
+        }
+        number = negative ? -value : value;
+        return true;
+    }
+
+    /** Skips a string starting at the opening quote; pos ends after the closing quote. */
+    private boolean skipString() {
+        pos++;
+        while (pos < end) {
+            byte c = b[pos++];
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Skips any JSON value: string, number, literal, object or array. */
+    private boolean skipValue() {
+        byte c = b[pos];
+        if (c == '"') {
+            return skipString();
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (pos < end) {
+                c = b[pos];
+                if (c == '"') {
+                    if (!skipString()) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                pos++;
+                if (depth == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        int start = pos;
+        while (pos < end && b[pos] != ',' && b[pos] != '}' && !isWhitespace(b[pos])) {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private int lookup(int from, int to) {
+        int len = to - from;
+        for (int i = 0; i < names.length; i++) {
+            if (equals(names[i], from, len)) {
+                return opcodes[i];
+            }
+        }
+        return -1;
+    }
+
+    private int key(int from, int to) {
+        int len = to - from;
+        for (int k = KEY_CMD; k < KEYS.length; k++) {
+            if (equals(KEYS[k], from, len)) {
+                return k;
+            }
+        }
+        return KEY_OTHER;
+    }
+
+    private boolean equals(byte[] name, int from, int len) {
+        if (name.length != len) {
+            return false;
+        }
+        for (int j = 0; j < len; j++) {
+            if (b[from + j] != name[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace(b[pos])) {
+            pos++;
+        }
+    }
+
+    private boolean fail(String reason) {
+        error = reason;
+        return false;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Single-producer/single-consumer ring of parsed commands, used to hand
+ * commands from the thread reading Python's output to the bot thread.
+ * Slots are primitive arrays, so handing over a command neither locks nor
+ * allocates. The producer publishes a slot by writing the volatile tail, the
+ * consumer releases it by writing the volatile head.
+ */
+final class CommandRing {
+    private final int mask;
+    private final int[] opcodes;
+    private final double[] powers;
+    private final double[] distances;
+    private final double[] angles;
+    private volatile long head;
+    private volatile long tail;
+
+    // ── consumer side: the slot taken by the last successful poll()
+    int opcode;
+    double power;
+    double distance;
+    double angle;
+
+    /** @param capacity number of slots, rounded up to a power of two */
+    CommandRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        opcodes = new int[size];
+        powers = new double[size];
+        distances = new double[size];
+        angles = new double[size];
+    }
+
+    /** Producer: appends a command, or returns false if the ring is full. */
+    boolean offer(int opcode, double power, double distance, double angle) {
+        long t = tail;
+        if (t - head > mask) {
+            return false;
+        }
+        int i = (int) t & mask;
+        opcodes[i] = opcode;
+        powers[i] = power;
+        distances[i] = distance;
+        angles[i] = angle;
+        tail = t + 1;
+        return true;
+    }
+
+    /** Consumer: takes the oldest command into the public fields. */
+    boolean poll() {
+        long h = head;
+        if (h == tail) {
+            return false;
+        }
+        int i = (int) h & mask;
+        opcode = opcodes[i];
+        power = powers[i];
+        distance = distances[i];
+        angle = angles[i];
+        head = h + 1;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * One turn's commands, folded into a slot per actuator before they reach
+ * the Bot API. Python often sends several commands for the same actuator in
+ * one turn (a forward and then a back, "turnGunLeft 360" twice); applied one
+ * by one, each set* call would silently overwrite the one before. Here they
+ * are merged as the policy says and {@link #apply} issues at most one
+ * command per actuator, once per turn:
+ *
+ *   LAST  the last command for an actuator wins (what the set* calls did)
+ *   FIRST the first one wins and later ones are dropped
+ *   SUM   distances and angles add up, fire takes the highest power
+ *
+ * The slots are body movement (forward/back as one signed distance), body
+ * turn, gun turn and radar turn (left positive), fire and rescan. Only
+ * primitive fields are touched, so collecting a turn allocates nothing.
+ */
+final class CommandSlots implements PythonLink.CommandHandler {
+
+    enum Merge {
+        LAST, FIRST, SUM;
+
+        /** The policy named by {@code name}, or LAST if there is none by that name. */
+        static Merge parse(String name) {
+            for (Merge m : values()) {
+                if (m.name().equalsIgnoreCase(name)) {
+                    return m;
+                }
+            }
+            BridgeLog.warn("Unknown command merge policy '" + name + "', using last");
+            return LAST;
+        }
+    }
+
+    private static final int MOVE = 0;
+    private static final int TURN = 1;
+    private static final int GUN = 2;
+    private static final int RADAR = 3;
+    private static final int FIRE = 4;
+    private static final int RESCAN = 5;
+    private static final int SLOTS = 6;
+
+    private final Merge merge;
+    private final double[] values = new double[SLOTS];
+    private final int[] counts = new int[SLOTS];
+    private int dropped;
+    private int merged;
+
+    CommandSlots(Merge merge) {
+        this.merge = merge;
+    }
+
+    /** Files a command under its actuator; nothing reaches the bot until {@link #apply}. */
+    @Override
+    public void onCommand(int opcode, double power, double distance, double angle) {
+        switch (opcode) {
+            case BinaryProtocol.CMD_FIRE:
+                put(FIRE, power);
+                break;
+            case BinaryProtocol.CMD_FORWARD:
+                put(MOVE, distance);
+                break;
+            case BinaryProtocol.CMD_BACK:
+                put(MOVE, -distance);
+                break;
+            case BinaryProtocol.CMD_TURN_LEFT:
+                put(TURN, angle);
+                break;
+            case BinaryProtocol.CMD_TURN_RIGHT:
+                put(TURN, -angle);
+                break;
+            case BinaryProtocol.CMD_TURN_GUN_LEFT:
+                put(GUN, angle);
+                break;
+            case BinaryProtocol.CMD_TURN_GUN_RIGHT:
+                put(GUN, -angle);
+                break;
+            case BinaryProtocol.CMD_TURN_RADAR_LEFT:
+                put(RADAR, angle);
+                break;
+            case BinaryProtocol.CMD_TURN_RADAR_RIGHT:
+                put(RADAR, -angle);
+                break;
+            case BinaryProtocol.CMD_RESCAN:
+                put(RESCAN, 0);
+                break;
+            default:
+                BridgeLog.warn("Unknown command opcode from Python: " + opcode);
+                dropped++;
+                break;
+        }
+    }
+
+    /**
+     * Files a command only if its actuator has none yet this turn, e.g. a
+     * default for when Python is late. Returns true if it was filed.
+     */
+    boolean fillIn(int opcode, double power, double distance, double angle) {
+        int slot = slotOf(opcode);
+        if (slot < 0 || counts[slot] > 0) {
+            return false;
+        }
+        onCommand(opcode, power, distance, angle);
+        return true;
+    }
+
+    /** Commands of the current turn that were discarded in favour of another one. */
+    int dropped() {
+        return dropped;
+    }
+
+    /** Commands of the current turn that were combined with another one. */
+    int merged() {
+        return merged;
+    }
+
+    /**
+     * Issues one command per actuator that received any this turn to
+     * {@code target} and starts the next turn with empty slots.
+     */
+    void apply(PythonLink.CommandHandler target) {
+        if (counts[MOVE] > 0) {
+            double d = values[MOVE];
+            target.onCommand(d >= 0 ? BinaryProtocol.CMD_FORWARD : BinaryProtocol.CMD_BACK, 0, Math.abs(d), 0);
+        }
+        if (counts[TURN] > 0) {
+            turn(target, values[TURN], BinaryProtocol.CMD_TURN_LEFT, BinaryProtocol.CMD_TURN_RIGHT);
+        }
+        if (counts[GUN] > 0) {
+            turn(target, values[GUN], BinaryProtocol.CMD_TURN_GUN_LEFT, BinaryProtocol.CMD_TURN_GUN_RIGHT);
+        }
+        if (counts[RADAR] > 0) {
+            turn(target, values[RADAR], BinaryProtocol.CMD_TURN_RADAR_LEFT, BinaryProtocol.CMD_TURN_RADAR_RIGHT);
+        }
+        if (counts[FIRE] > 0) {
+            target.onCommand(BinaryProtocol.CMD_FIRE, values[FIRE], 0, 0);
+        }
+        if (counts[RESCAN] > 0) {
+            target.onCommand(BinaryProtocol.CMD_RESCAN, 0, 0, 0);
+        }
+        for (int i = 0; i < SLOTS; i++) {
+            counts[i] = 0;
+        }
+        dropped = 0;
+        merged = 0;
+    }
+
+    private void put(int slot, double v) {
+        if (counts[slot]++ == 0) {
+            values[slot] = v;
+            return;
+        }
+        switch (merge) {
+            case LAST:
+                values[slot] = v;
+                dropped++;
+                break;
+            case FIRST:
+                dropped++;
+                break;
+            default:
+                values[slot] = slot == FIRE ? Math.max(values[slot], v) : values[slot] + v;
+                merged++;
+                break;
+        }
+    }
+
+    private static int slotOf(int opcode) {
+        switch (opcode) {
+            case BinaryProtocol.CMD_FIRE:
+                return FIRE;
+            case BinaryProtocol.CMD_FORWARD:
+            case BinaryProtocol.CMD_BACK:
+                return MOVE;
+            case BinaryProtocol.CMD_TURN_LEFT:
+            case BinaryProtocol.CMD_TURN_RIGHT:
+                return TURN;
+            case BinaryProtocol.CMD_TURN_GUN_LEFT:
+            case BinaryProtocol.CMD_TURN_GUN_RIGHT:
+                return GUN;
+            case BinaryProtocol.CMD_TURN_RADAR_LEFT:
+            case BinaryProtocol.CMD_TURN_RADAR_RIGHT:
+                return RADAR;
+            case BinaryProtocol.CMD_RESCAN:
+                return RESCAN;
+            default:
+                return -1;
+        }
+    }
+
+    private static void turn(PythonLink.CommandHandler target, double angle, int left, int right) {
+        target.onCommand(angle >= 0 ? left : right, 0, 0, Math.abs(angle));
+    }
+}
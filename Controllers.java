@@ -0,0 +1,281 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Behaviours that last many turns, which Python starts with one control
+ * line and the Java side then carries out every turn, so that Python does
+ * not have to re-send the same turn and move commands each tick:
+ *
+ *   goTo <x> <y>                drive to the point and stop there
+ *   lockRadar <botId>           keep the radar on a bot, spinning while it is lost
+ *   aim <botId> <power> [mode]  keep the gun on where a bullet of that power
+ *                               meets the bot, and fire it whenever the gun is
+ *                               cool and on target (power 0: aim only)
+ *   goTo off, lockRadar off, aim off   cancels one
+ *
+ * The aiming modes are {@code head} (at the bot as last scanned),
+ * {@code linear} (it keeps its speed and direction, the default) and
+ * {@code circular} (it keeps its turn rate as well); both predictions
+ * start from the bot's latest scan in the {@link EnemyTracker}, ignore
+ * walls and assume the bullet leaves next turn. A goTo is done once the bot
+ * is within {@value #ARRIVED} units of the point and is dropped at the end
+ * of each round; the other two run until cancelled. A point the bot cannot
+ * reach, e.g. too close to a wall, is driven at until Python cancels it.
+ *
+ * Lines are parsed on the reader thread and published through atomic
+ * references; {@link #update} runs on the bot thread once per turn, files
+ * its commands into the handler given to it (the bot's CommandSlots) before
+ * Python's reply for the turn, so Python's own commands win where both set
+ * the same actuator, and allocates nothing.
+ */
+final class Controllers {
+
+    static final String GO_TO = "goTo";
+    static final String LOCK_RADAR = "lockRadar";
+    static final String AIM = "aim";
+    private static final byte[][] PREFIXES = {
+            ascii(GO_TO + " "), ascii(LOCK_RADAR + " "), ascii(AIM + " ")};
+
+    static final int HEAD = 0;
+    static final int LINEAR = 1;
+    static final int CIRCULAR = 2;
+    private static final String[] MODES = {"head", "linear", "circular"};
+
+    /** Distance from the point at which a goTo is done. */
+    static final double ARRIVED = 2;
+    /** Turns since the last scan after which a bot counts as lost. */
+    private static final int LOST_TURNS = 2;
+    /** How far the locked radar sweeps past the bot, so that it crosses it every turn. */
+    private static final double LOCK_MARGIN = 10;
+    /** Half the width of a bot, for how close to the bot the gun must point to fire. */
+    private static final double BOT_RADIUS = 18;
+    /** Bullet flight turns beyond which aiming gives up refining the intercept. */
+    private static final int MAX_FLIGHT_TURNS = 100;
+
+    private static final class Goal {
+        final double x;
+        final double y;
+
+        Goal(double x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static final class Target {
+        final int botId;
+        final double power;
+        final int mode;
+
+        Target(int botId, double power, int mode) {
+            this.botId = botId;
+            this.power = power;
+            this.mode = mode;
+        }
+    }
+
+    private final AtomicReference<Goal> goal = new AtomicReference<>();
+    private final AtomicReference<Target> lock = new AtomicReference<>();
+    private final AtomicReference<Target> aim = new AtomicReference<>();
+    // ── predicted enemy position, bot thread only
+    private double predictedX;
+    private double predictedY;
+
+    /** True if the line {@code b[off, off + len)} starts or stops a controller. */
+    static boolean isController(byte[] b, int off, int len) {
+        for (byte[] prefix : PREFIXES) {
+            if (startsWith(b, off, len, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isController(String text) {
+        return text.startsWith(GO_TO + " ") || text.startsWith(LOCK_RADAR + " ") || text.startsWith(AIM + " ");
+    }
+
+    /**
+     * Starts, replaces or cancels a controller as {@code text} says. Returns
+     * null on success, otherwise why the text was rejected.
+     */
+    String define(String text) {
+        String[] words = text.trim().split("\\s+");
+        String name = words[0];
+        if (words.length == 2 && words[1].equals("off")) {
+            switch (name) {
+                case GO_TO:
+                    goal.set(null);
+                    return null;
+                case LOCK_RADAR:
+                    lock.set(null);
+                    return null;
+                case AIM:
+                    aim.set(null);
+                    return null;
+                default:
+                    return "unknown controller " + name;
+            }
+        }
+        try {
+            switch (name) {
+                case GO_TO:
+                    if (words.length != 3) {
+                        return "expected: goTo <x> <y>";
+                    }
+                    goal.set(new Goal(Double.parseDouble(words[1]), Double.parseDouble(words[2])));
+                    return null;
+                case LOCK_RADAR:
+                    if (words.length != 2) {
+                        return "expected: lockRadar <botId>";
+                    }
+                    lock.set(new Target(Integer.parseInt(words[1]), 0, HEAD));
+                    return null;
+                case AIM:
+                    if (words.length < 3 || words.length > 4) {
+                        return "expected: aim <botId> <power> [head|linear|circular]";
+                    }
+                    int mode = words.length == 4 ? Arrays.asList(MODES).indexOf(words[3]) : LINEAR;
+                    if (mode < 0) {
+                        return "unknown aiming mode " + words[3];
+                    }
+                    aim.set(new Target(Integer.parseInt(words[1]), Double.parseDouble(words[2]), mode));
+                    return null;
+                default:
+                    return "unknown controller " + name;
+            }
+        } catch (NumberFormatException ex) {
+            return "bad number in " + text;
+        }
+    }
+
+    /** Cancels every controller, e.g. when a new Python process starts and will send its own. */
+    void clear() {
+        goal.set(null);
+        lock.set(null);
+        aim.set(null);
+    }
+
+    /** Drops the goTo, which means nothing in the next round. */
+    void endRound() {
+        goal.set(null);
+    }
+
+    /**
+     * Files this turn's commands of every running controller, for a bot at
+     * ({@code x}, {@code y}) in {@code turn}, and completes a goTo that has
+     * arrived. Returns the number of commands filed.
+     */
+    int update(int turn, double x, double y, double direction, double gunDirection, double radarDirection,
+               double gunHeat, EnemyTracker enemies, PythonLink.CommandHandler handler) {
+        int filed = 0;
+        Goal g = goal.get();
+        if (g != null) {
+            double distance = Math.hypot(g.x - x, g.y - y);
+            if (distance < ARRIVED) {
+                goal.compareAndSet(g, null);
+            } else {
+                double bearing = normalRelative(angle(x, y, g.x, g.y) - direction);
+                // drive backwards to points behind us instead of turning around
+                double move = distance * Math.cos(Math.toRadians(bearing));
+                double turnBy = Math.abs(bearing) > 90 ? normalRelative(bearing + 180) : bearing;
+                handler.onCommand(move >= 0 ? BinaryProtocol.CMD_FORWARD : BinaryProtocol.CMD_BACK,
+                        0, Math.abs(move), 0);
+                turn(handler, turnBy, BinaryProtocol.CMD_TURN_LEFT, BinaryProtocol.CMD_TURN_RIGHT);
+                filed += 2;
+            }
+        }
+
+        Target r = lock.get();
+        if (r != null) {
+            int e = enemies.indexOf(r.botId);
+            if (e < 0 || turn - enemies.turn(e, 0) > LOST_TURNS) {
+                handler.onCommand(BinaryProtocol.CMD_TURN_RADAR_LEFT, 0, 0, 360);
+            } else {
+                predict(enemies, e, LINEAR, turn + 1 - enemies.turn(e, 0), 0, x, y);
+                double offset = normalRelative(angle(x, y, predictedX, predictedY) - radarDirection);
+                turn(handler, offset + Math.copySign(LOCK_MARGIN, offset),
+                        BinaryProtocol.CMD_TURN_RADAR_LEFT, BinaryProtocol.CMD_TURN_RADAR_RIGHT);
+            }
+            filed++;
+        }
+
+        Target a = aim.get();
+        int e = a == null ? -1 : enemies.indexOf(a.botId);
+        if (e >= 0) {
+            int age = turn - enemies.turn(e, 0);
+            double bulletSpeed = 20 - 3 * Math.max(0.1, Math.min(3, a.power));
+            predict(enemies, e, a.mode, age + 1, bulletSpeed, x, y);
+            double distance = Math.hypot(predictedX - x, predictedY - y);
+            double offset = normalRelative(angle(x, y, predictedX, predictedY) - gunDirection);
+            turn(handler, offset, BinaryProtocol.CMD_TURN_GUN_LEFT, BinaryProtocol.CMD_TURN_GUN_RIGHT);
+            filed++;
+            double tolerance = Math.toDegrees(Math.atan2(BOT_RADIUS, Math.max(distance, BOT_RADIUS)));
+            if (a.power > 0 && gunHeat == 0 && age <= LOST_TURNS && Math.abs(offset) <= tolerance) {
+                handler.onCommand(BinaryProtocol.CMD_FIRE, a.power, a.power, a.power);
+                filed++;
+            }
+        }
+        return filed;
+    }
+
+    /**
+     * Moves enemy {@code e}'s latest scan {@code turns} turns on into
+     * predictedX/Y and then, if {@code bulletSpeed} is positive, on until a
+     * bullet fired from ({@code x}, {@code y}) at that moment reaches it.
+     */
+    private void predict(EnemyTracker enemies, int e, int mode, int turns, double bulletSpeed,
+                         double x, double y) {
+        double px = enemies.x(e, 0);
+        double py = enemies.y(e, 0);
+        double heading = enemies.direction(e, 0);
+        double speed = mode == HEAD ? 0 : enemies.speed(e, 0);
+        double turnRate = mode == CIRCULAR ? enemies.turnRate(e) : 0;
+        for (int t = 0; t < turns + MAX_FLIGHT_TURNS; t++) {
+            if (t >= turns && (bulletSpeed <= 0 || Math.hypot(px - x, py - y) <= (t - turns) * bulletSpeed)) {
+                break;
+            }
+            heading += turnRate;
+            px += Math.cos(Math.toRadians(heading)) * speed;
+            py += Math.sin(Math.toRadians(heading)) * speed;
+        }
+        predictedX = px;
+        predictedY = py;
+    }
+
+    private static void turn(PythonLink.CommandHandler handler, double angle, int left, int right) {
+        handler.onCommand(angle >= 0 ? left : right, 0, 0, Math.abs(angle));
+    }
+
+    /** Direction from (x0, y0) to (x1, y1), counter-clockwise from east. */
+    private static double angle(double x0, double y0, double x1, double y1) {
+        return Math.toDegrees(Math.atan2(y1 - y0, x1 - x0));
+    }
+
+    private static double normalRelative(double angle) {
+        angle %= 360;
+        if (angle > 180) {
+            angle -= 360;
+        } else if (angle <= -180) {
+            angle += 360;
+        }
+        return angle;
+    }
+
+    private static boolean startsWith(byte[] b, int off, int len, byte[] prefix) {
+        if (len < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[off + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
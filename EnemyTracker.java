@@ -0,0 +1,289 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * What the bot knows about each opponent, kept per bot id from its scans so
+ * that Python does not have to rebuild it from the raw stream. Every enemy
+ * has a ring of its last {@code history} scans (turn, position, direction,
+ * speed, energy) in flat primitive arrays, and each scan updates the
+ * derived figures at once:
+ *
+ *   bearing       from our body to the enemy, as Bot.bearingTo (-180..180, left positive)
+ *   distance      from us to the enemy
+ *   acceleration  change of speed per turn since the previous scan
+ *   turnRate      change of direction per turn since the previous scan
+ *   energyDrop    energy lost since the previous scan that our bullets do not
+ *                 explain; between 0.1 and 3 it is most likely a shot of that power
+ *
+ * Python subscribes with the control line {@code track on} (and leaves with
+ * {@code track off}); scans then reach it as ENEMY events carrying all of
+ * the above instead of SCANNED events. Bot thread only; nothing is
+ * allocated once every enemy has been seen.
+ */
+final class EnemyTracker {
+
+    static final String PREFIX = "track ";
+    private static final byte[] PREFIX_BYTES = PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private final int history;
+    private int[] ids = new int[0];
+    // ── ring of scans, enemy * history + sample
+    private int[] turns = new int[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private double[] directions = new double[0];
+    private double[] speeds = new double[0];
+    private double[] energies = new double[0];
+    /** Index of the latest sample of each enemy in its ring. */
+    private int[] latest = new int[0];
+    private int[] samples = new int[0];
+    // ── derived from the latest scan
+    private double[] bearings = new double[0];
+    private double[] distances = new double[0];
+    private double[] accelerations = new double[0];
+    private double[] turnRates = new double[0];
+    private double[] energyDrops = new double[0];
+    /** Energy change since the last scan that bullet hits account for. */
+    private double[] explained = new double[0];
+
+    /** @param history scans kept per enemy, at least two */
+    EnemyTracker(int history) {
+        this.history = Math.max(2, history);
+    }
+
+    /** True if the line {@code b[off, off + len)} is a track control line. */
+    static boolean isTrack(byte[] b, int off, int len) {
+        if (len < PREFIX_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < PREFIX_BYTES.length; i++) {
+            if (b[off + i] != PREFIX_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a scan of bot {@code botId} made at {@code turn} by a bot at
+     * ({@code myX}, {@code myY}) facing {@code myDirection}, and returns the
+     * enemy's index for the accessors and {@link #write}.
+     */
+    int scanned(int turn, int botId, double x, double y, double direction, double speed, double energy,
+                double myX, double myY, double myDirection) {
+        int e = indexOf(botId);
+        if (e < 0) {
+            e = add(botId);
+        }
+        int prev = e * history + latest[e];
+        boolean hasPrev = samples[e] > 0;
+        int s = e * history + (hasPrev ? (latest[e] + 1) % history : 0);
+        latest[e] = s - e * history;
+        samples[e] = Math.min(history, samples[e] + 1);
+        turns[s] = turn;
+        xs[s] = x;
+        ys[s] = y;
+        directions[s] = direction;
+        speeds[s] = speed;
+        energies[s] = energy;
+
+        double dx = x - myX;
+        double dy = y - myY;
+        distances[e] = Math.hypot(dx, dy);
+        bearings[e] = normalRelative(Math.toDegrees(Math.atan2(dy, dx)) - myDirection);
+        if (hasPrev) {
+            int dt = Math.max(1, turn - turns[prev]);
+            accelerations[e] = (speed - speeds[prev]) / dt;
+            turnRates[e] = normalRelative(direction - directions[prev]) / dt;
+            energyDrops[e] = energies[prev] - energy - explained[e];
+        } else {
+            accelerations[e] = 0;
+            turnRates[e] = 0;
+            energyDrops[e] = 0;
+        }
+        explained[e] = 0;
+        return e;
+    }
+
+    /** One of our bullets hit {@code botId} for {@code damage}. */
+    void bulletHit(int botId, double damage) {
+        int e = indexOf(botId);
+        if (e >= 0) {
+            explained[e] += damage;
+        }
+    }
+
+    /** A bullet of {@code botId} with {@code power} hit us, which gave it energy back. */
+    void hitBy(int botId, double power) {
+        int e = indexOf(botId);
+        if (e >= 0) {
+            explained[e] -= 3 * power;
+        }
+    }
+
+    /** Forgets {@code botId}, e.g. when it has died; its slot is reused. */
+    void remove(int botId) {
+        int e = indexOf(botId);
+        if (e >= 0) {
+            ids[e] = NONE;
+        }
+    }
+
+    /** Forgets every enemy, at the start of a round. */
+    void clear() {
+        Arrays.fill(ids, NONE);
+    }
+
+    /** Index of {@code botId}, or -1 if it has not been scanned. */
+    int indexOf(int botId) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == botId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Scans held for enemy {@code e}, at most {@code history}. */
+    int samples(int e) {
+        return samples[e];
+    }
+
+    // ── enemy e's scan from age scans ago (0 is the latest)
+    int turn(int e, int age) {
+        return turns[sample(e, age)];
+    }
+
+    double x(int e, int age) {
+        return xs[sample(e, age)];
+    }
+
+    double y(int e, int age) {
+        return ys[sample(e, age)];
+    }
+
+    double direction(int e, int age) {
+        return directions[sample(e, age)];
+    }
+
+    double speed(int e, int age) {
+        return speeds[sample(e, age)];
+    }
+
+    double energy(int e, int age) {
+        return energies[sample(e, age)];
+    }
+
+    // ── derived from enemy e's latest scan
+    double bearing(int e) {
+        return bearings[e];
+    }
+
+    double distance(int e) {
+        return distances[e];
+    }
+
+    double acceleration(int e) {
+        return accelerations[e];
+    }
+
+    double turnRate(int e) {
+        return turnRates[e];
+    }
+
+    double energyDrop(int e) {
+        return energyDrops[e];
+    }
+
+    /** Queues an ENEMY event with the latest scan of enemy {@code e}. */
+    void write(int e, EventQueue q) {
+        BridgeEvent ev = q.add(EventType.ENEMY);
+        ev.ints[0] = ids[e];
+        int s = sample(e, 0);
+        double[] d = ev.doubles;
+        d[0] = energies[s];
+        d[1] = xs[s];
+        d[2] = ys[s];
+        d[3] = directions[s];
+        d[4] = speeds[s];
+        d[5] = bearings[e];
+        d[6] = distances[e];
+        d[7] = accelerations[e];
+        d[8] = turnRates[e];
+        d[9] = energyDrops[e];
+    }
+
+    /**
+     * Queues the latest scan of every known enemy, as ENEMY events if
+     * {@code tracked} and as plain SCANNED events otherwise: what a Python
+     * process that has just taken over needs to catch up.
+     */
+    void writeAll(EventQueue q, boolean tracked) {
+        for (int e = 0; e < ids.length; e++) {
+            if (ids[e] == NONE || samples[e] == 0) {
+                continue;
+            }
+            if (tracked) {
+                write(e, q);
+                continue;
+            }
+            BridgeEvent ev = q.add(EventType.SCANNED);
+            ev.ints[0] = ids[e];
+            int s = sample(e, 0);
+            double[] d = ev.doubles;
+            d[0] = energies[s];
+            d[1] = xs[s];
+            d[2] = ys[s];
+            d[3] = directions[s];
+            d[4] = speeds[s];
+        }
+    }
+
+    private int sample(int e, int age) {
+        return e * history + (latest[e] - age + history) % history;
+    }
+
+    private int add(int botId) {
+        int e = indexOf(NONE);
+        if (e < 0) {
+            e = ids.length;
+            grow(Math.max(4, ids.length * 2));
+        }
+        ids[e] = botId;
+        samples[e] = 0;
+        latest[e] = 0;
+        explained[e] = 0;
+        return e;
+    }
+
+    private void grow(int enemies) {
+        int old = ids.length;
+        ids = Arrays.copyOf(ids, enemies);
+        Arrays.fill(ids, old, enemies, NONE);
+        turns = Arrays.copyOf(turns, enemies * history);
+        xs = Arrays.copyOf(xs, enemies * history);
+        ys = Arrays.copyOf(ys, enemies * history);
+        directions = Arrays.copyOf(directions, enemies * history);
+        speeds = Arrays.copyOf(speeds, enemies * history);
+        energies = Arrays.copyOf(energies, enemies * history);
+        latest = Arrays.copyOf(latest, enemies);
+        samples = Arrays.copyOf(samples, enemies);
+        bearings = Arrays.copyOf(bearings, enemies);
+        distances = Arrays.copyOf(distances, enemies);
+        accelerations = Arrays.copyOf(accelerations, enemies);
+        turnRates = Arrays.copyOf(turnRates, enemies);
+        energyDrops = Arrays.copyOf(energyDrops, enemies);
+        explained = Arrays.copyOf(explained, enemies);
+    }
+
+    private static double normalRelative(double angle) {
+        angle %= 360;
+        if (angle > 180) {
+            angle -= 360;
+        } else if (angle <= -180) {
+            angle += 360;
+        }
+        return angle;
+    }
+}
@@ -0,0 +1,172 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@link BridgeEvent}s as single-line JSON, e.g.
+ * {"event":"tick","turn":12,"energy":100.0,...}, straight into a reusable
+ * byte buffer. Numbers are formatted digit by digit without going through
+ * {@code Double.toString}, so once the buffer has reached its working size
+ * encoding an event allocates nothing.
+ *
+ * Doubles are written with at most {@link #FRACTION_DIGITS} decimals, which
+ * is far finer than anything the game reports. Values too large for the fast
+ * path fall back to {@code Double.toString}.
+ */
+final class EventJson {
+
+    static final int FRACTION_DIGITS = 6;
+    private static final long FRACTION_SCALE = 1_000_000L;
+    private static final double FAST_PATH_LIMIT = 1e12;
+
+    private static final byte[] BATCH_HEAD = ascii("{\"event\":\"batch\",\"turn\":");
+    private static final byte[] BATCH_EVENTS = ascii(",\"events\":[");
+    private static final byte[] BATCH_TAIL = ascii("]}");
+    private static final byte[] NAN = ascii("NaN");
+    private static final byte[] INFINITY = ascii("Infinity");
+
+    private byte[] buf;
+    private int len;
+    private final byte[] digits = new byte[20];
+
+    EventJson() {
+        this(512);
+    }
+
+    EventJson(int capacity) {
+        buf = new byte[capacity];
+    }
+
+    byte[] buffer() {
+        return buf;
+    }
+
+    int length() {
+        return len;
+    }
+
+    EventJson reset() {
+        len = 0;
+        return this;
+    }
+
+    /** Appends one event object, without a trailing newline. */
+    EventJson event(BridgeEvent e) {
+        EventType t = e.type;
+        bytes(t.jsonHead);
+        for (int i = 0; i < t.intFields.length; i++) {
+            bytes(t.jsonIntKeys[i]);
+            number(e.ints[i]);
+        }
+        for (int i = 0; i < t.doubleFields.length; i++) {
+            if (t.sparse && (e.mask & 1 << i) == 0) {
+                continue;
+            }
+            bytes(t.jsonDoubleKeys[i]);
+            number(e.doubles[i]);
+        }
+        return put('}');
+    }
+
+    /** Appends {"event":"batch","turn":N,"events":[ for a batch of events. */
+    EventJson batchStart(int turn) {
+        bytes(BATCH_HEAD);
+        number(turn);
+        return bytes(BATCH_EVENTS);
+    }
+
+    EventJson batchEnd() {
+        return bytes(BATCH_TAIL);
+    }
+
+    EventJson newline() {
+        return put('\n');
+    }
+
+    EventJson put(char c) {
+        ensure(1);
+        buf[len++] = (byte) c;
+        return this;
+    }
+
+    EventJson bytes(byte[] b) {
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, len, b.length);
+        len += b.length;
+        return this;
+    }
+
+    EventJson number(long v) {
+        if (v < 0) {
+            put('-');
+            if (v == Long.MIN_VALUE) {
+                return bytes(ascii("9223372036854775808"));
+            }
+            v = -v;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        ensure(n);
+        while (n > 0) {
+            buf[len++] = digits[--n];
+        }
+        return this;
+    }
+
+    EventJson number(double v) {
+        if (Double.isNaN(v)) {
+            return bytes(NAN);
+        }
+        if (Double.isInfinite(v)) {
+            if (v < 0) {
+                put('-');
+            }
+            return bytes(INFINITY);
+        }
+        if (v < 0 || (v == 0 && Double.doubleToRawLongBits(v) != 0)) {
+            put('-');
+            v = -v;
+        }
+        if (v >= FAST_PATH_LIMIT) {
+            return bytes(ascii(Double.toString(v)));
+        }
+        long scaled = Math.round(v * FRACTION_SCALE);
+        number(scaled / FRACTION_SCALE);
+        put('.');
+        long fraction = scaled % FRACTION_SCALE;
+        if (fraction == 0) {
+            return put('0');
+        }
+        int width = FRACTION_DIGITS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            width--;
+        }
+        ensure(width);
+        for (int i = width - 1; i >= 0; i--) {
+            buf[len + i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        len += width;
+        return this;
+    }
+
+    /** Decodes the buffer; allocates, so meant for logging and tests only. */
+    @Override
+    public String toString() {
+        return new String(buf, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            byte[] bigger = new byte[Math.max(buf.length * 2, len + extra)];
+            System.arraycopy(buf, 0, bigger, 0, len);
+            buf = bigger;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * FIFO of events waiting to be sent to Python. The slots are preallocated
+ * {@link BridgeEvent}s that are refilled in place, so queuing an event does
+ * not allocate once the ring has grown to the most events seen in one turn.
+ * An event returned by {@link #poll()} stays valid until the next
+ * {@link #add(EventType)}.
+ *
+ * When Python falls behind, events can stay queued for a few turns. Before
+ * they are sent, {@link #coalesce()} keeps only the newest of each kind of
+ * state event (the latest tick, the latest scan of each bot) and
+ * {@link #trim(int)} drops the oldest droppable events beyond a limit.
+ * Critical events are never removed, so the queue may exceed the limit
+ * when it holds nothing else.
+ */
+final class EventQueue {
+    private BridgeEvent[] ring;
+    private int head;
+    private int size;
+
+    EventQueue() {
+        this(32);
+    }
+
+    /** @param capacity initial number of slots, rounded up to a power of two */
+    EventQueue(int capacity) {
+        ring = new BridgeEvent[Integer.highestOneBit(Math.max(2, capacity - 1)) << 1];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new BridgeEvent();
+        }
+    }
+
+    /** Appends a slot for an event of {@code type}; the caller fills its fields. */
+    BridgeEvent add(EventType type) {
+        if (size == ring.length) {
+            grow();
+        }
+        BridgeEvent e = ring[(head + size) & (ring.length - 1)];
+        size++;
+        return e.reset(type);
+    }
+
+    BridgeEvent poll() {
+        if (size == 0) {
+            return null;
+        }
+        BridgeEvent e = ring[head];
+        head = (head + 1) & (ring.length - 1);
+        size--;
+        return e;
+    }
+
+    /** The {@code i}-th queued event, counting from the head. */
+    BridgeEvent get(int i) {
+        return ring[(head + i) & (ring.length - 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /** True if any queued event is {@link EventType.Priority#CRITICAL}. */
+    boolean hasCritical() {
+        for (int i = 0; i < size; i++) {
+            if (get(i).type.priority == EventType.Priority.CRITICAL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes every LATEST event that a newer one of the same type (and
+     * botId, where the type has one) supersedes. Returns how many were removed.
+     */
+    int coalesce() {
+        int removed = 0;
+        for (int i = size - 2; i >= 0; i--) {
+            BridgeEvent e = get(i);
+            if (e.type.priority == EventType.Priority.LATEST && superseded(e, i)) {
+                remove(i);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Drops the oldest events that are not critical until at most
+     * {@code limit} remain, droppable ones before state. Returns how many
+     * were dropped.
+     */
+    int trim(int limit) {
+        return trim(limit, EventType.Priority.DROPPABLE) + trim(limit, EventType.Priority.LATEST);
+    }
+
+    private int trim(int limit, EventType.Priority priority) {
+        int dropped = 0;
+        for (int i = 0; i < size && size > limit; ) {
+            if (get(i).type.priority == priority) {
+                remove(i);
+                dropped++;
+            } else {
+                i++;
+            }
+        }
+        return dropped;
+    }
+
+    private boolean superseded(BridgeEvent e, int index) {
+        int key = e.type.keyField;
+        for (int i = index + 1; i < size; i++) {
+            BridgeEvent newer = get(i);
+            if (newer.type == e.type && (key < 0 || newer.ints[key] == e.ints[key])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Closes the gap left by the {@code i}-th event; its slot moves to the free end. */
+    private void remove(int i) {
+        int mask = ring.length - 1;
+        BridgeEvent slot = ring[(head + i) & mask];
+        for (int j = i; j < size - 1; j++) {
+            ring[(head + j) & mask] = ring[(head + j + 1) & mask];
+        }
+        ring[(head + size - 1) & mask] = slot;
+        size--;
+    }
+
+    private void grow() {
+        BridgeEvent[] bigger = new BridgeEvent[ring.length * 2];
+        for (int i = 0; i < size; i++) {
+            bigger[i] = get(i);
+        }
+        for (int i = size; i < bigger.length; i++) {
+            bigger[i] = new BridgeEvent();
+        }
+        ring = bigger;
+        head = 0;
+    }
+}
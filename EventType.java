@@ -0,0 +1,122 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Events forwarded to the Python strategy. Every type has a fixed layout: a
+ * list of int fields followed by a list of double fields. The line-JSON
+ * transport writes them as named keys, the binary transport writes them as
+ * raw little-endian values after a one-byte tag (see {@link BinaryProtocol}).
+ *
+ * A sparse type carries only some of its double fields, those whose bit is
+ * set in {@link BridgeEvent#mask}: JSON leaves the other keys out, binary
+ * writes the mask as one byte after the int fields and then only the
+ * present doubles.
+ *
+ * Each type also has a {@link Priority} that tells the {@link EventQueue}
+ * what it may do with a backlog of them.
+ *
+ * The tags and field order must stay in sync with EVENT_LAYOUTS in
+ * bridge_protocol.py.
+ */
+enum EventType {
+    CONNECTED(1, "connected", Priority.CRITICAL, names("round"), names()),
+    TICK(2, "tick", Priority.LATEST, names("turn"),
+            names("energy", "x", "y", "direction", "gunDirection", "radarDirection", "gunHeat", "speed")),
+    SCANNED(3, "scanned", Priority.LATEST, names("botId"), names("energy", "x", "y", "direction", "speed")),
+    HIT_BY_BULLET(4, "hitByBullet", Priority.CRITICAL, names(), names("damage", "direction")),
+    BULLET_HIT_BOT(5, "bulletHitBot", Priority.CRITICAL, names("botId"), names("damage")),
+    BULLET_HIT_WALL(6, "bulletHitWall", Priority.DROPPABLE, names(), names()),
+    WON_ROUND(7, "wonRound", Priority.CRITICAL, names("turn"), names()),
+    SKIPPED_TURN(8, "skippedTurn", Priority.DROPPABLE, names("turn"), names()),
+    CUSTOM(9, "custom", Priority.DROPPABLE, names(), names()),
+    HIT_WALL(10, "hitWall", Priority.DROPPABLE, names(), names()),
+    OPPONENT_DEATH(11, "opponentDeath", Priority.CRITICAL, names("botId"), names()),
+    ROUND_ENDED(12, "roundEnded", Priority.CRITICAL, names(), names()),
+    DEATH(13, "death", Priority.CRITICAL, names(), names()),
+    /** The fields of TICK that changed since the last one sent (see TickDelta). */
+    TICK_DELTA(14, "tickDelta", Priority.LATEST, names("turn"),
+            names("energy", "x", "y", "direction", "gunDirection", "radarDirection", "gunHeat", "speed"), true),
+    /** A scan with what EnemyTracker derived from the enemy's history; replaces SCANNED once Python asks. */
+    ENEMY(15, "enemy", Priority.LATEST, names("botId"), names("energy", "x", "y", "direction", "speed",
+            "bearing", "distance", "acceleration", "turnRate", "energyDrop")),
+    /** Time Python has for this turn and how hard it may think (see TurnBudget). */
+    BUDGET(16, "budget", Priority.LATEST, names("turn", "level"), names("budgetUs", "latencyUs"));
+
+    /** What may happen to queued events of a type when Python falls behind. */
+    enum Priority {
+        /** Always delivered, and in order. */
+        CRITICAL,
+        /** State: only the newest is kept, per botId for types that have one. */
+        LATEST,
+        /** May be dropped, oldest first, to keep the queue within its limit. */
+        DROPPABLE
+    }
+
+    private static final EventType[] BY_TAG = new EventType[256];
+
+    static {
+        for (EventType t : values()) {
+            BY_TAG[t.tag] = t;
+        }
+    }
+
+    final int tag;
+    final String jsonName;
+    final String[] intFields;
+    final String[] doubleFields;
+    final boolean sparse;
+    final Priority priority;
+    /** LATEST types: index of the int field that tells apart events to keep, or -1. */
+    final int keyField;
+
+    // ── preencoded JSON fragments: {"event":"tick"  and  ,"turn":
+    final byte[] jsonHead;
+    final byte[][] jsonIntKeys;
+    final byte[][] jsonDoubleKeys;
+
+    EventType(int tag, String jsonName, Priority priority, String[] intFields, String[] doubleFields) {
+        this(tag, jsonName, priority, intFields, doubleFields, false);
+    }
+
+    EventType(int tag, String jsonName, Priority priority, String[] intFields, String[] doubleFields,
+              boolean sparse) {
+        this.tag = tag;
+        this.sparse = sparse;
+        this.priority = priority;
+        this.keyField = priority == Priority.LATEST ? Arrays.asList(intFields).indexOf("botId") : -1;
+        this.jsonName = jsonName;
+        this.intFields = intFields;
+        this.doubleFields = doubleFields;
+        this.jsonHead = ascii("{\"event\":\"" + jsonName + "\"");
+        this.jsonIntKeys = jsonKeys(intFields);
+        this.jsonDoubleKeys = jsonKeys(doubleFields);
+    }
+
+    /** Size of the binary payload of {@code e}, including the tag byte. */
+    int payloadBytes(BridgeEvent e) {
+        if (sparse) {
+            return 2 + Integer.BYTES * intFields.length + Double.BYTES * Integer.bitCount(e.mask);
+        }
+        return 1 + Integer.BYTES * intFields.length + Double.BYTES * doubleFields.length;
+    }
+
+    static EventType fromTag(int tag) {
+        return tag >= 0 && tag < BY_TAG.length ? BY_TAG[tag] : null;
+    }
+
+    private static String[] names(String... names) {
+        return names;
+    }
+
+    private static byte[][] jsonKeys(String[] fields) {
+        byte[][] keys = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            keys[i] = ascii(",\"" + fields[i] + "\":");
+        }
+        return keys;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Bytes one thread hands over with {@link #feed} and another reads as an
+ * InputStream: a bot's share of a {@link PythonHost}'s pipes, or what the
+ * selector thread of a {@link PythonServer} read from a bot's socket. Read
+ * by that bot's PythonLink; {@link #close} lets it see the end of stream.
+ */
+final class FeedInputStream extends InputStream {
+    private byte[] buf = new byte[4096];
+    private int start;
+    private int end;
+    private boolean closed;
+
+    synchronized void feed(byte[] src, int len) {
+        if (end + len > buf.length) {
+            int unread = end - start;
+            byte[] target = unread + len > buf.length ? new byte[Math.max(buf.length * 2, unread + len)] : buf;
+            System.arraycopy(buf, start, target, 0, unread);
+            buf = target;
+            start = 0;
+            end = unread;
+        }
+        System.arraycopy(src, 0, buf, end, len);
+        end += len;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized int available() {
+        return end - start;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] dst, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (start == end) {
+            if (closed) {
+                return -1;
+            }
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        int n = Math.min(len, end - start);
+        System.arraycopy(buf, start, dst, off, n);
+        start += n;
+        return n;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Log-linear histogram of non-negative longs (nanoseconds, byte counts…).
+ * Each power of two is split into {@link #SUB_BUCKETS} equal buckets, so a
+ * recorded value is known to within 12.5% while the whole range of a long
+ * fits in a fixed array; recording is a few arithmetic operations and never
+ * allocates.
+ *
+ * One thread records. Another may call {@link #snapshot} to summarise what
+ * was recorded since its previous call; it reads the live counts without
+ * locking, so a value recorded concurrently may land in either interval.
+ */
+final class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = 64 << SUB_BITS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long sum;
+
+    // ── reader side: counts at the previous snapshot
+    private final long[] seen = new long[BUCKETS];
+    private long seenSum;
+
+    /** Summary of one interval; values are in the unit that was recorded. */
+    static final class Snapshot {
+        long count;
+        double mean;
+        long p50;
+        long p99;
+        long max;
+    }
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[index(value)]++;
+        sum += value;
+    }
+
+    /** Fills {@code out} with what was recorded since the last call. */
+    Snapshot snapshot(Snapshot out) {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts[i] - seen[i];
+        }
+        long total = sum;
+        out.count = n;
+        out.mean = n == 0 ? 0 : (total - seenSum) / (double) n;
+        out.p50 = 0;
+        out.p99 = 0;
+        out.max = 0;
+        long p50Rank = (n + 1) / 2;
+        long p99Rank = n - n / 100;
+        long acc = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts[i];
+            long d = c - seen[i];
+            seen[i] = c;
+            if (d <= 0) {
+                continue;
+            }
+            long upper = upperBound(i);
+            if (acc < p50Rank && acc + d >= p50Rank) {
+                out.p50 = upper;
+            }
+            if (acc < p99Rank && acc + d >= p99Rank) {
+                out.p99 = upper;
+            }
+            acc += d;
+            out.max = upper;
+        }
+        seenSum = total;
+        return out;
+    }
+
+    static int index(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        return ((exp - SUB_BITS + 1) << SUB_BITS) + (int) ((v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /** Largest value that falls into bucket {@code i}. */
+    static long upperBound(int i) {
+        if (i < SUB_BUCKETS) {
+            return i;
+        }
+        int shift = (i >>> SUB_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (i & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
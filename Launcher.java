@@ -1,54 +1,187 @@
-import java.awt.*;
-import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
+/**
+ * Starts the bridge bot. Given the server on the command line or in the
+ * environment it starts at once without loading AWT:
+ *
+ *   java -jar robocode-python-relay-1.0.jar <server-url> <secret>
+ *   java -jar robocode-python-relay-1.0.jar --url <server-url> [--secret <secret>]
+ *   java -jar robocode-python-relay-1.0.jar --headless   (server from bridge.serverUrl or SERVER_URL)
+ *
+ * Otherwise it opens a small window asking for the server. {@code --cds-train}
+ * loads every class of the jars on the class path and exits, which is the
+ * training run cds.sh dumps the class list of for the AppCDS archive.
+ */
 public class Launcher {
+    static final String DEFAULT_URL = "ws://localhost:7654";
+
     public static void main(String[] args) {
-        // If Robocode Tank Royale supplies the server URL and secret on the
-        // command line, skip the UI and start the bot immediately.
-        if (args.length >= 2) {
-            new PythonBridgeBot(args[0], args[1]).start();
+        String url = null;
+        String secret = null;
+        boolean headless = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url":
+                    url = ++i < args.length ? args[i] : null;
+                    headless = true;
+                    break;
+                case "--secret":
+                    secret = ++i < args.length ? args[i] : null;
+                    break;
+                case "--headless":
+                    headless = true;
+                    break;
+                case "--cds-train":
+                    loadAllClasses();
+                    return;
+                default:
+                    // Robocode Tank Royale supplies the server URL and secret as plain arguments
+                    if (url == null) {
+                        url = args[i];
+                    } else {
+                        secret = args[i];
+                    }
+                    headless = true;
+            }
+        }
+        if (url == null) {
+            url = BridgeConfig.serverUrl();
+            headless |= url != null;
+        }
+        if (secret == null) {
+            secret = BridgeConfig.serverSecret();
+        }
+        if (!headless) {
+            // only this path touches AWT, so headless starts never load it
+            LauncherWindow.show();
             return;
         }
+        int bots = BridgeConfig.hostBots();
+        if (bots > 1) {
+            runHost(url != null ? url : DEFAULT_URL, secret, bots,
+                    Math.max(1, Math.min(bots, BridgeConfig.hostWorkers())));
+        } else if (url != null) {
+            new PythonBridgeBot(url, secret).start();
+        } else {
+            new PythonBridgeBot().start(); // the bot API reads the server from its own settings
+        }
+    }
 
-        Frame frame = new Frame("PythonBridgeBot Launcher");
-        frame.setLayout(new GridLayout(3, 2));
-
-        Label urlLabel = new Label("Server address:");
-        TextField urlField = new TextField("ws://localhost:7654");
-        Label secretLabel = new Label("Server secret:");
-        TextField secretField = new TextField("");
-        Button connectButton = new Button("Connect");
-        Label statusLabel = new Label("");
+    /**
+     * Host mode: runs {@code bots} bridge bots in this JVM, one pool thread
+     * each, spread over {@code workers} shared Python processes. Once every
+     * bot's Python session has answered, prints what the extra bots cost.
+     */
+    private static void runHost(String url, String secret, int bots, int workers) {
+        long jvmRssKb = PythonHost.rssKb(ProcessHandle.current().pid());
+        File script;
+        try {
+            script = PythonWorker.locateScript(Launcher.class);
+        } catch (IOException ex) {
+            BridgeLog.error(ex.getMessage());
+            return;
+        }
+        PythonHost[] hosts = new PythonHost[workers];
+        for (int i = 0; i < workers; i++) {
+            hosts[i] = new PythonHost(script);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(bots);
+        for (int i = 0; i < bots; i++) {
+            PythonBridgeBot bot = new PythonBridgeBot(url, secret, hosts[i % workers]);
+            pool.execute(bot::start);
+        }
+        pool.shutdown();
 
-        frame.add(urlLabel);
-        frame.add(urlField);
-        frame.add(secretLabel);
-        frame.add(secretField);
-        frame.add(connectButton);
-        frame.add(statusLabel);
+        Thread report = new Thread(() -> {
+            for (int i = 0; i < workers; i++) {
+                int share = bots / workers + (i < bots % workers ? 1 : 0);
+                try {
+                    hosts[i].awaitAnswered(share, BridgeConfig.startupTimeoutMs());
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                BridgeLog.info(hosts[i].memoryReport());
+            }
+            long nowKb = PythonHost.rssKb(ProcessHandle.current().pid());
+            if (jvmRssKb > 0 && nowKb > 0) {
+                double perBot = (nowKb - jvmRssKb) / 1024.0 / bots;
+                BridgeLog.info(String.format("JVM: %d bots in %.1f MB resident (%.1f MB before the bots, +%.1f MB per bot); "
+                                + "each extra bot saves about %.1f MB against a JVM of its own",
+                        bots, nowKb / 1024.0, jvmRssKb / 1024.0, perBot, jvmRssKb / 1024.0));
+            }
+        }, "host-memory-report");
+        report.setDaemon(true);
+        report.start();
+    }
 
-        frame.pack();
-        frame.addWindowListener(new WindowAdapter() {
-            @Override
-            public void windowClosing(WindowEvent e) {
-                System.exit(0);
+    /**
+     * Loads, without initialising, every class of the jars on the class
+     * path and of those their manifests add, so that a run with
+     * -XX:DumpLoadedClassList lists the bridge and bot API classes together
+     * with the JDK classes they link against.
+     */
+    private static void loadAllClasses() {
+        long t0 = System.nanoTime();
+        ClassLoader loader = Launcher.class.getClassLoader();
+        int loaded = 0;
+        int jars = 0;
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File jar = new File(entry);
+            if (!jar.isFile()) {
+                continue;
+            }
+            for (File f : withManifestClassPath(jar)) {
+                jars++;
+                try (JarFile jf = new JarFile(f)) {
+                    for (Enumeration<JarEntry> e = jf.entries(); e.hasMoreElements(); ) {
+                        String name = e.nextElement().getName();
+                        if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+                            continue;
+                        }
+                        try {
+                            Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+                            loaded++;
+                        } catch (ClassNotFoundException | LinkageError ex) {
+                            // optional dependency missing; the class is not needed
+                        }
+                    }
+                } catch (IOException ex) {
+                    BridgeLog.warn("Cannot read " + f + ": " + ex.getMessage());
+                }
             }
-        });
-        frame.setVisible(true);
+        }
+        BridgeLog.info(String.format("Loaded %d classes from %d jars in %.1f ms",
+                loaded, jars, (System.nanoTime() - t0) / 1e6));
+    }
 
-        connectButton.addActionListener(e -> {
-            connectButton.setEnabled(false);
-            statusLabel.setText("Connecting...");
-            new Thread(() -> {
-                try {
-                    PythonBridgeBot bot = new PythonBridgeBot(urlField.getText(), secretField.getText());
-                    bot.start();
-                    frame.dispose();
-                } catch (Exception ex) {
-                    statusLabel.setText("Error: " + ex.getMessage());
-                    connectButton.setEnabled(true);
+    /** {@code jar} followed by the jars its manifest's Class-Path names. */
+    private static List<File> withManifestClassPath(File jar) {
+        List<File> files = new ArrayList<>();
+        files.add(jar);
+        try (JarFile jf = new JarFile(jar)) {
+            Manifest m = jf.getManifest();
+            String cp = m == null ? null : m.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (cp != null) {
+                for (String rel : cp.trim().split("\\s+")) {
+                    File f = new File(jar.getAbsoluteFile().getParentFile(), rel);
+                    if (f.isFile()) {
+                        files.add(f);
+                    }
                 }
-            }).start();
-        });
+            }
+        } catch (IOException ex) {
+            // just the jar itself then
+        }
+        return files;
     }
 }
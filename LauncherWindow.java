@@ -0,0 +1,56 @@
+import java.awt.*;
+import java.awt.event.*;
+
+/**
+ * The launcher's window asking for the server address and secret, for
+ * when neither was given. Kept apart from {@link Launcher} so that
+ * headless starts never load AWT.
+ */
+final class LauncherWindow {
+
+    private LauncherWindow() {
+    }
+
+    static void show() {
+        Frame frame = new Frame("PythonBridgeBot Launcher");
+        frame.setLayout(new GridLayout(3, 2));
+
+        Label urlLabel = new Label("Server address:");
+        TextField urlField = new TextField(Launcher.DEFAULT_URL);
+        Label secretLabel = new Label("Server secret:");
+        TextField secretField = new TextField("");
+        Button connectButton = new Button("Connect");
+        Label statusLabel = new Label("");
+
+        frame.add(urlLabel);
+        frame.add(urlField);
+        frame.add(secretLabel);
+        frame.add(secretField);
+        frame.add(connectButton);
+        frame.add(statusLabel);
+
+        frame.pack();
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                System.exit(0);
+            }
+        });
+        frame.setVisible(true);
+
+        connectButton.addActionListener(e -> {
+            connectButton.setEnabled(false);
+            statusLabel.setText("Connecting...");
+            new Thread(() -> {
+                try {
+                    PythonBridgeBot bot = new PythonBridgeBot(urlField.getText(), secretField.getText());
+                    bot.start();
+                    frame.dispose();
+                } catch (Exception ex) {
+                    statusLabel.setText("Error: " + ex.getMessage());
+                    connectButton.setEnabled(true);
+                }
+            }).start();
+        });
+    }
+}
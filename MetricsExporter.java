@@ -0,0 +1,98 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publishes every registered {@link BridgeMetrics} once per interval
+ * ({@code bridge.metricsIntervalMs}): one row per bot appended to
+ * {@code bridge.metricsFile} (JSON lines, or CSV if the name ends in .csv)
+ * and the same figures through JMX under
+ * {@code RobocodePythonRelay:type=BridgeMetrics,name=<bot>}. A single daemon
+ * thread serves all bots in the JVM and only runs if either output is on.
+ */
+final class MetricsExporter {
+
+    private static final List<BridgeMetrics> METRICS = new CopyOnWriteArrayList<>();
+    private static Thread thread;
+
+    private MetricsExporter() {
+    }
+
+    static synchronized void register(BridgeMetrics metrics) {
+        METRICS.add(metrics);
+        if (BridgeConfig.metricsJmx()) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                        new ObjectName("RobocodePythonRelay:type=BridgeMetrics,name="
+                                + ObjectName.quote(metrics.name)));
+            } catch (JMException ex) {
+                BridgeLog.warn("Cannot register metrics with JMX: " + ex.getMessage());
+            }
+        }
+        String file = BridgeConfig.metricsFile();
+        if (thread == null && (!file.isEmpty() || BridgeConfig.metricsJmx())) {
+            thread = new Thread(() -> run(file, BridgeConfig.metricsIntervalMs()), "bridge-metrics");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static void run(String file, long intervalMs) {
+        boolean csv = file.toLowerCase().endsWith(".csv");
+        boolean header = csv && !new File(file).isFile();
+        try (Writer out = file.isEmpty() ? null : new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            while (true) {
+                Thread.sleep(Math.max(1, intervalMs));
+                long now = System.currentTimeMillis();
+                for (BridgeMetrics m : METRICS) {
+                    Map<String, Double> row = m.takeInterval();
+                    if (out == null) {
+                        continue;
+                    }
+                    if (csv) {
+                        if (header) {
+                            out.write("time,bot");
+                            for (String key : row.keySet()) {
+                                out.write(',');
+                                out.write(key);
+                            }
+                            out.write('\n');
+                            header = false;
+                        }
+                        out.write(now + "," + m.name);
+                        for (double v : row.values()) {
+                            out.write(',');
+                            out.write(format(v));
+                        }
+                    } else {
+                        out.write("{\"time\":" + now + ",\"bot\":\"" + m.name + "\"");
+                        for (Map.Entry<String, Double> e : row.entrySet()) {
+                            out.write(",\"" + e.getKey() + "\":" + format(e.getValue()));
+                        }
+                        out.write('}');
+                    }
+                    out.write('\n');
+                }
+                if (out != null) {
+                    out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            BridgeLog.error("Writing metrics failed: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String format(double v) {
+        return v == Math.rint(v) && Math.abs(v) < 1e15
+                ? Long.toString((long) v) : String.format(Locale.ROOT, "%.3f", v);
+    }
+}
@@ -2,21 +2,25 @@ import dev.robocode.tankroyale.botapi.*;
 import dev.robocode.tankroyale.botapi.events.*;
 
 import java.io.*;
-import java.util.ArrayDeque;
-import java.util.Queue;
 
 /**
  * Minimal bot that forwards game events to a Python script and waits for
  * commands in return. The Python program should output simple text commands
- * like "turnRight 90" which are executed on the Java side. Communication is
- * blocking, ensuring each turn waits for the Python logic.
+ * like "turnRight 90" which are executed on the Java side. Each turn waits
+ * for the Python logic, but only up to a deadline derived from the server's
+ * turn timeout so a slow decision never makes the bot skip a turn. Reflex
+ * rules Python sends (ReflexRules) act on each event as it is queued. Both
+ * file their commands per actuator (CommandSlots), and each turn's are
+ * applied once, after Python's reply.
  */
 public class MyFirstBot extends Bot {
 
-    private Process pyProcess;
-    private BufferedReader pyIn;
-    private PrintWriter pyOut;
-    private final Queue<String> eventQueue = new ArrayDeque<>();
+    private final PythonWorker python = new PythonWorker(MyFirstBot.class, false, false);
+    private PythonLink pyLink;
+    private final EventQueue eventQueue = new EventQueue();
+    private final ReflexRules reflexes = new ReflexRules();
+    private final CommandSlots slots = new CommandSlots(CommandSlots.Merge.parse(BridgeConfig.commandMerge()));
+    private final PythonLink.CommandHandler actuators = this::handleCommand;
 
     public static void main(String[] args) {
         new MyFirstBot().start();
@@ -24,6 +28,8 @@ public class MyFirstBot extends Bot {
 
     MyFirstBot() {
         super(BotInfo.fromFile("MyFirstBot.json"));
+        python.setReflexes(reflexes);
+        python.startAsync();
     }
 
     @Override
@@ -31,7 +37,7 @@ public class MyFirstBot extends Bot {
         try {
             startPython();
         } catch (IOException e) {
-            System.err.println("Unable to start Python: " + e.getMessage());
+            BridgeLog.error("Unable to start Python: " + e.getMessage());
             return;
         }
 
@@ -44,133 +50,95 @@ public class MyFirstBot extends Bot {
     // --- event handlers -------------------------------------------------
     @Override
     public void onTick(TickEvent e) {
-        eventQueue.offer(EventJson.tick(this, e));
+        BridgeEvents.tick(eventQueue, e.getTurnNumber(), getEnergy(), getX(), getY(), getDirection(),
+                getGunDirection(), getRadarDirection(), getGunHeat(), getSpeed());
+        reflexes.onQueued(eventQueue, slots);
     }
 
     @Override
     public void onScannedBot(ScannedBotEvent e) {
-        eventQueue.offer(EventJson.scannedBot());
+        BridgeEvents.scanned(eventQueue, e.getScannedBotId(), e.getEnergy(), e.getX(), e.getY(), e.getDirection(),
+                e.getSpeed());
+        reflexes.onQueued(eventQueue, slots);
     }
 
     @Override
     public void onHitByBullet(HitByBulletEvent e) {
-        eventQueue.offer(EventJson.hitByBullet(e));
+        BridgeEvents.hitByBullet(eventQueue, e.getDamage(), e.getBullet().getDirection());
+        reflexes.onQueued(eventQueue, slots);
     }
 
     @Override
     public void onHitWall(HitWallEvent e) {
-        eventQueue.offer(EventJson.hitWall());
+        BridgeEvents.hitWall(eventQueue);
+        reflexes.onQueued(eventQueue, slots);
     }
 
-    // --- python communication helpers ----------------------------------
-    private void startPython() throws IOException {
-        File script = new File("bot_logic.py");
-        if (!script.isFile()) {
-            File jar = new File(MyFirstBot.class.getProtectionDomain()
-                    .getCodeSource().getLocation().getPath());
-            script = new File(jar.getParentFile(), "bot_logic.py");
-        }
-        if (!script.isFile()) {
-            throw new IOException("Cannot locate bot_logic.py");
-        }
-
-        pyProcess = new ProcessBuilder("python", "-u", script.getAbsolutePath()).start();
-        pyIn = new BufferedReader(new InputStreamReader(pyProcess.getInputStream()));
-        pyOut = new PrintWriter(new OutputStreamWriter(pyProcess.getOutputStream()), true);
+    @Override
+    public void onGameEnded(GameEndedEvent e) {
+        python.shutdown();
     }
 
-    private void sendToPython(String msg) {
-        pyOut.println(msg);
-        pyOut.flush();
+    // --- python communication helpers ----------------------------------
+    private void startPython() throws IOException {
+        pyLink = python.link();
+        pyLink.newRound();
     }
 
     private void flushEvents() {
-        while (!eventQueue.isEmpty()) {
-            sendToPython(eventQueue.poll());
-        }
+        boolean expectReply = !eventQueue.isEmpty();
         try {
-            String line = pyIn.readLine(); // block for at least one command
-            while (line != null && !line.isEmpty()) {
-                handleCommand(line.trim());
-                if (!pyIn.ready()) {
-                    break;
-                }
-                line = pyIn.readLine();
+            while (!eventQueue.isEmpty()) {
+                pyLink.send(eventQueue.poll());
             }
         } catch (IOException ex) {
-            System.err.println("I/O with Python failed: " + ex.getMessage());
+            BridgeLog.error("I/O with Python failed: " + ex.getMessage());
         }
+        // wait for at least one command, but never past the turn deadline
+        if (expectReply && !pyLink.awaitCommands(slots,
+                PythonLink.turnDeadline(getTurnTimeout(), getTimeLeft()))) {
+            BridgeLog.warn("Python missed the turn deadline ("
+                    + pyLink.deadlineMisses() + " misses)");
+        }
+        slots.apply(actuators);
     }
 
-    // --- command parsing ------------------------------------------------
-    private void handleCommand(String cmd) {
-        String[] parts = cmd.split("\\s+");
-        String c = parts[0];
-        double val = parts.length > 1 ? parseDouble(parts[1]) : 0;
-        switch (c) {
-            case "fire":
-                setFire(val);
+    // --- command handling (parsed by CommandParser) ---------------------
+    private void handleCommand(int opcode, double power, double distance, double angle) {
+        switch (opcode) {
+            case BinaryProtocol.CMD_FIRE:
+                setFire(power);
                 break;
-            case "forward":
-                setForward(val);
+            case BinaryProtocol.CMD_FORWARD:
+                setForward(distance);
                 break;
-            case "back":
-                setBack(val);
+            case BinaryProtocol.CMD_BACK:
+                setBack(distance);
                 break;
-            case "turnLeft":
-                setTurnLeft(val);
+            case BinaryProtocol.CMD_TURN_LEFT:
+                setTurnLeft(angle);
                 break;
-            case "turnRight":
-                setTurnRight(val);
+            case BinaryProtocol.CMD_TURN_RIGHT:
+                setTurnRight(angle);
                 break;
-            case "turnGunLeft":
-                setTurnGunLeft(val);
+            case BinaryProtocol.CMD_TURN_GUN_LEFT:
+                setTurnGunLeft(angle);
                 break;
-            case "turnGunRight":
-                setTurnGunRight(val);
+            case BinaryProtocol.CMD_TURN_GUN_RIGHT:
+                setTurnGunRight(angle);
                 break;
-            case "turnRadarLeft":
-                setTurnRadarLeft(val);
+            case BinaryProtocol.CMD_TURN_RADAR_LEFT:
+                setTurnRadarLeft(angle);
                 break;
-            case "turnRadarRight":
-                setTurnRadarRight(val);
+            case BinaryProtocol.CMD_TURN_RADAR_RIGHT:
+                setTurnRadarRight(angle);
                 break;
-            case "rescan":
+            case BinaryProtocol.CMD_RESCAN:
                 rescan();
                 break;
             default:
-                System.err.println("Unknown command from Python: " + cmd);
+                BridgeLog.warn("Unknown command from Python: " + opcode);
                 break;
         }
     }
-
-    private double parseDouble(String s) {
-        try {
-            return Double.parseDouble(s);
-        } catch (NumberFormatException ex) {
-            return 0;
-        }
-    }
-
-    // --- minimal JSON builders -----------------------------------------
-    private static class EventJson {
-        static String tick(MyFirstBot bot, TickEvent e) {
-            return "{\"event\":\"tick\",\"turn\":" + e.getTurnNumber() +
-                    ",\"direction\":" + bot.getDirection() +
-                    ",\"speed\":" + bot.getSpeed() + "}";
-        }
-
-        static String scannedBot() {
-            return "{\"event\":\"scanned\"}";
-        }
-
-        static String hitByBullet(HitByBulletEvent e) {
-            return "{\"event\":\"hitByBullet\",\"direction\":" +
-                    e.getBullet().getDirection() + "}";
-        }
-
-        static String hitWall() {
-            return "{\"event\":\"hitWall\"}";
-        }
-    }
 }
@@ -1,3 +1,3 @@
-javac -cp lib/* PythonBridgeBot.java
+javac -cp lib/* -sourcepath . PythonBridgeBot.java
 rem Run without redirecting output so the Python console is visible
 java -cp lib/*;. PythonBridgeBot
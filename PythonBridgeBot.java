@@ -3,28 +3,48 @@
 // ------------------------------------------------------------------
 // A Robocode Tank Royale bot that delegates its decision‑making logic to an
 // external Python script (bot_logic.py). The Java side is responsible for:
-//   • Spawning the Python process using ProcessBuilder
+//   • Spawning the Python process (PythonWorker) while the bot connects, and
+//     keeping it warm from round to round
 //   • Forwarding key game events to the Python program as single‑line JSON
-//   • Parsing simple JSON commands coming back from Python and invoking the
-//     corresponding Bot API calls (move, turn, fire, etc.)
-//   • Processing everything sequentially each turn without background threads
+//   • Parsing the commands coming back from Python (CommandParser) and
+//     invoking the corresponding Bot API calls (move, turn, fire, etc.)
+//   • Waiting for each turn's reply only up to a deadline derived from the
+//     server's turn timeout; a background thread reads Python's output
 //
 // Communication protocol (line‑delimited JSON):
 //   Java → Python  : {"event":"scanned","distance":123.4,"energy":87.6}
 //   Python → Java  : "forward 150"  or  {"cmd":"forward","distance":150}
-// Feel free to extend the EventJson helper or add new commands.
+// With -Dbridge.transport=binary the bridge offers length‑prefixed binary
+// frames instead (see BinaryProtocol), -Dbridge.transport=shm carries those
+// frames through a shared-memory file, and with -Dbridge.batch=true it sends
+// each turn's events as one batch that Python answers with an end marker.
+// Each falls back to plain line‑JSON when the Python script does not
+// acknowledge the handshake. With -Dbridge.recordDir=<dir> every event and
+// command is also recorded (BridgeRecorder) for replay without a server
+// (BridgeReplay). Python may also push reflex rules (ReflexRules) that
+// the event handlers run at once, for reactions that cannot wait for it,
+// and ask for per-enemy summaries (EnemyTracker) instead of raw scans.
+// Longer behaviours (goTo, lockRadar, aim) run as Controllers, which issue
+// their commands every turn until they are done or cancelled.
+// With -Dbridge.server=<port> the bot connects to a long-lived Python
+// strategy server (PythonServer) instead of starting a process of its own;
+// with -Dbridge.standby=true a second process waits ready to take over in
+// the same turn should the first die or hang. -Dbridge.budget=true tells
+// Python its time budget and a load level every turn (TurnBudget) and files
+// a cheap default action when it misses the deadline.
+// The turn itself runs in TurnExchange, which the simulator (BattleSim)
+// shares. Feel free to extend EventType and BridgeEvents or add new commands.
 // ------------------------------------------------------------------
 
 import dev.robocode.tankroyale.botapi.*;
 import dev.robocode.tankroyale.botapi.events.*;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import java.io.*;
 import java.net.URI;
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A minimal bridge bot that delegates strategy to a Python script.
@@ -32,11 +52,17 @@ import java.util.Queue;
 public class PythonBridgeBot extends Bot {
 
     // ── python process & I/O ──────────────────────────────────────────
-    private Process pyProcess;
-    private BufferedReader pyIn;
-    private BufferedReader pyErr;
-    private PrintWriter pyOut;
-    private final Queue<String> eventQueue = new ArrayDeque<>();
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    /** Set by the first bot of this JVM to get through its first go(). */
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    private final PythonWorker python;
+    private final BridgeMetrics metrics =
+            new BridgeMetrics("PythonBridgeBot-" + INSTANCES.incrementAndGet());
+    /** Null unless bridge.recordDir is set. */
+    private final BridgeRecorder recorder = BridgeRecorder.open(metrics.name);
+    /** The link, event queue, reflexes, controllers and command slots of each turn. */
+    private final TurnExchange exchange;
 
     // ── entry point ──────────────────────────────────────────────────
     public static void main(String[] args) {
@@ -46,6 +72,10 @@ public class PythonBridgeBot extends Bot {
     // ── constructor ──────────────────────────────────────────────────
     public PythonBridgeBot() {
         super(BotInfo.fromFile("PythonBridgeBot.json"));
+        python = new PythonWorker(PythonBridgeBot.class, true, true);
+        exchange = new TurnExchange(python, metrics, recorder);
+        MetricsExporter.register(metrics);
+        python.startAsync();
     }
 
     /**
@@ -54,7 +84,19 @@ public class PythonBridgeBot extends Bot {
      * supplies connection details provided by Robocode Tank Royale.
      */
     public PythonBridgeBot(String serverUrl, String serverSecret) {
+        this(serverUrl, serverSecret, null);
+    }
+
+    /**
+     * Like {@link #PythonBridgeBot(String, String)}, but runs the strategy in
+     * a session of a Python process shared with other bots in this JVM.
+     */
+    PythonBridgeBot(String serverUrl, String serverSecret, PythonHost host) {
         super(BotInfo.fromFile("PythonBridgeBot.json"), URI.create(serverUrl), serverSecret);
+        python = new PythonWorker(PythonBridgeBot.class, host == null, true, host);
+        exchange = new TurnExchange(python, metrics, recorder);
+        MetricsExporter.register(metrics);
+        python.startAsync();
     }
 
     // ── main loop ────────────────────────────────────────────────────
@@ -67,15 +109,16 @@ public class PythonBridgeBot extends Bot {
             return; // abort bot if Python cannot be launched
         }
 
-        // Send initial connected event
-        sendToPy("{\"event\":\"connected\",\"round\":" + getRoundNumber() + "}");
-
         // Main loop: execute one turn at a time
         // Events received during the turn are queued by the event handlers and
         // sent to Python after each go() call. The Python program replies with
-        // simple commands that are executed before the next turn.
+        // simple commands that are executed before the next turn, or, with
+        // bridge.pipeline, one turn later so Python can think during go().
         while (isRunning()) {
             go();
+            if (!STARTED.get() && STARTED.compareAndSet(false, true)) {
+                logStartupTime();
+            }
             flushEvents();
         }
     }
@@ -83,290 +126,184 @@ public class PythonBridgeBot extends Bot {
     // ── event forwarding ─────────────────────────────────────────────
     @Override
     public void onScannedBot(ScannedBotEvent e) {
-        eventQueue.offer(EventJson.scannedBot(e));
+        exchange.scanned(e.getTurnNumber(), e.getScannedBotId(), e.getEnergy(), e.getX(), e.getY(),
+                e.getDirection(), e.getSpeed(), getX(), getY(), getDirection());
+        exchange.react();
     }
 
+    @Override
+    public void onBulletHit(BulletHitBotEvent e) {
+        exchange.bulletHitBot(e.getVictimId(), e.getDamage());
+        exchange.react();
+    }
 
     @Override
     public void onBulletHitWall(BulletHitWallEvent e) {
-        eventQueue.offer(EventJson.bulletHitWall(e));
+        BridgeEvents.bulletHitWall(exchange.events);
+        exchange.react();
     }
 
     @Override
     public void onTick(TickEvent e) {
-        eventQueue.offer(EventJson.tick(this, e));
+        BridgeEvents.tick(exchange.events, e.getTurnNumber(), getEnergy(), getX(), getY(), getDirection(),
+                getGunDirection(), getRadarDirection(), getGunHeat(), getSpeed());
+        exchange.react();
     }
 
     @Override
     public void onWonRound(WonRoundEvent e) {
-        eventQueue.offer(EventJson.wonRound(e));
+        BridgeEvents.wonRound(exchange.events, e.getTurnNumber());
+        exchange.react();
     }
 
     @Override
     public void onSkippedTurn(SkippedTurnEvent e) {
-        eventQueue.offer(EventJson.skippedTurn(e));
+        BridgeEvents.skippedTurn(exchange.events, e.getTurnNumber());
+        exchange.react();
+        metrics.skippedTurn();
+        if (exchange.budget != null) {
+            exchange.budget.skipped();
+        }
     }
 
     @Override
     public void onCustomEvent(CustomEvent e) {
-        eventQueue.offer(EventJson.customEvent());
+        BridgeEvents.custom(exchange.events);
+        exchange.react();
     }
 
     @Override
     public void onHitByBullet(HitByBulletEvent e) {
-        eventQueue.offer(EventJson.hitByBullet(e));
+        exchange.hitByBullet(e.getBullet().getOwnerId(), e.getBullet().getPower(), e.getDamage(),
+                e.getBullet().getDirection());
+        exchange.react();
     }
 
     @Override
     public void onHitWall(HitWallEvent e) {
-        eventQueue.offer("{\"event\":\"hitWall\"}");
+        BridgeEvents.hitWall(exchange.events);
+        exchange.react();
     }
 
     @Override
     public void onBotDeath(BotDeathEvent e) {
-        eventQueue.offer(EventJson.botDeath(e));
+        exchange.opponentDeath(e.getVictimId());
+        exchange.react();
     }
 
     @Override
     public void onRoundEnded(RoundEndedEvent e) {
-        eventQueue.offer("{\"event\":\"roundEnded\"}");
+        BridgeEvents.roundEnded(exchange.events);
+        exchange.react();
+        if (recorder != null) {
+            recorder.flush();
+        }
+        if (exchange.deadlineMisses() > 0) {
+            logError("Python missed the turn deadline " + exchange.deadlineMisses() + " times so far");
+        }
     }
 
     @Override
     public void onDeath(DeathEvent e) {
-        eventQueue.offer("{\"event\":\"death\"}");
-        if (pyProcess != null) {
-            pyProcess.destroy();
+        BridgeEvents.death(exchange.events);
+        exchange.react();
+    }
+
+    @Override
+    public void onGameEnded(GameEndedEvent e) {
+        python.shutdown();
+        if (recorder != null) {
+            recorder.close();
         }
     }
 
     // ── python process helpers ───────────────────────────────────────
+    /**
+     * Takes over the Python process started by the constructor (or a new one
+     * if it has died) and starts the round on the Python side.
+     */
     private void startPython() throws IOException {
-        // Use -u for unbuffered stdout so we receive events immediately
-        File script = new File("bot_logic.py");
-        if (!script.isFile()) {
-            // When executed from another directory, fall back to the jar location
-            File jar = new File(PythonBridgeBot.class.getProtectionDomain()
-                    .getCodeSource().getLocation().getPath());
-            File jarDir = jar.getParentFile();
-            script = new File(jarDir, "bot_logic.py");
+        if (exchange.startRound(getRoundNumber())) {
+            BridgeLog.info(python.startupSummary());
         }
-        if (!script.isFile()) {
-            throw new IOException("Cannot locate bot_logic.py");
-        }
-
-        pyProcess = new ProcessBuilder("python", "-u", script.getAbsolutePath()).start();
-        pyIn = new BufferedReader(new InputStreamReader(pyProcess.getInputStream()));
-        pyErr = new BufferedReader(new InputStreamReader(pyProcess.getErrorStream()));
-        pyOut = new PrintWriter(new BufferedWriter(new OutputStreamWriter(pyProcess.getOutputStream())), true);
-    }
-
-    private void sendToPy(String msg) {
-        System.out.println("[ToPython] " + msg);
-        pyOut.println(msg);
-        pyOut.flush();
     }
 
     private void flushEvents() {
-        while (!eventQueue.isEmpty()) {
-            sendToPy(eventQueue.poll());
-        }
+        exchange.control(getTurnNumber(), getX(), getY(), getDirection(), getGunDirection(), getRadarDirection(),
+                getGunHeat());
         try {
-            while (pyErr != null && pyErr.ready()) {
-                System.err.println("[PyErr] " + pyErr.readLine());
-            }
-            while (pyIn != null && pyIn.ready()) {
-                String line = pyIn.readLine();
-                if (line == null) {
-                    break;
-                }
-                System.out.println("[Python] " + line);
-                handlePythonCommand(line.trim());
-            }
+            long deadline = PythonLink.turnDeadline(getTurnTimeout(), getTimeLeft());
+            exchange.send(getTurnNumber(), deadline, getTurnTimeout() * 1_000L);
+            exchange.receive(deadline);
         } catch (IOException ex) {
             logError("I/O with Python failed: " + ex.getMessage());
         }
+        exchange.apply(actuators);
     }
 
-    private void logError(String message) {
-        System.err.println(message);
+    /** Logs the time from JVM start until the first go() returned, the figure AppCDS cuts. */
+    private static void logStartupTime() {
+        ProcessHandle.current().info().startInstant().ifPresent(start -> BridgeLog.info(String.format(
+                "JVM start to end of first go(): %d ms", Duration.between(start, Instant.now()).toMillis())));
     }
 
-    // ── command parser ───────────────────────────────────────────────
-    private void handlePythonCommand(String cmd) {
-        /*
-         * Supported commands (extend as needed):
-         *   {"cmd":"fire",       "power": 2.0}
-         *   {"cmd":"forward",    "distance": 100}
-         *   {"cmd":"back",       "distance": 80}
-         *   {"cmd":"turn",       "angle": 90}
-         *   {"cmd":"turnGun",    "angle": 45}
-         *   {"cmd":"turnRadar",  "angle": 360}
-         */
-        try {
-            Map<String, String> map = parseJson(cmd);
-            if (map.containsKey("cmd")) {
-                dispatchCommand(map.get("cmd"),
-                        parseDouble(map.get("power")),
-                        parseDouble(map.get("distance")),
-                        parseDouble(map.get("angle")));
-                return;
-            }
-        } catch (Exception ex) {
-            logError("Cannot parse Python command: " + cmd + " (" + ex + ")");
-        }
-
-        String[] parts = cmd.split("\\s+");
-        String c = parts[0];
-        double val = parts.length > 1 ? Double.parseDouble(parts[1]) : 0;
-        dispatchCommand(c, val, val, val);
-
-    }
-
-    private double parseDouble(String s) {
-        if (s == null || s.isEmpty()) {
-            return 0;
-        }
-        try {
-            return Double.parseDouble(s);
-        } catch (NumberFormatException ex) {
-            return 0;
-        }
-    }
-
-    private Map<String, String> parseJson(String json) {
-        Map<String, String> map = new HashMap<>();
-        json = json.trim();
-        if (!json.startsWith("{") || !json.endsWith("}")) {
-            return map;
-        }
-        json = json.substring(1, json.length() - 1).trim();
-        if (json.isEmpty()) {
-            return map;
-        }
-        String[] tokens = json.split(",");
-        for (String token : tokens) {
-            String[] pair = token.split(":", 2);
-            if (pair.length != 2) {
-                continue;
-            }
-            String key = stripQuotes(pair[0].trim());
-            String value = stripQuotes(pair[1].trim());
-            map.put(key, value);
-        }
-        return map;
-    }
-
-    private String stripQuotes(String s) {
-        if (s.startsWith("\"") && s.endsWith("\"")) {
-            return s.substring(1, s.length() - 1);
-        }
-        return s;
+    private void logError(String message) {
+        BridgeLog.error(message);
     }
 
-    private void dispatchCommand(String cmd, double power, double distance, double angle) {
-        switch (cmd) {
-            case "fire":
+    // ── command dispatch ─────────────────────────────────────────────
+    // Commands are parsed on the reader thread by CommandParser and arrive
+    // here as opcodes. Supported commands (extend as needed):
+    //   {"cmd":"fire",           "power": 2.0}      or  fire 2
+    //   {"cmd":"forward",        "distance": 100}   or  forward 100
+    //   {"cmd":"back",           "distance": 80}    or  back 80
+    //   {"cmd":"turnLeft",       "angle": 90}       or  turnLeft 90
+    //   {"cmd":"turnGunRight",   "angle": 45}       or  turnGunRight 45
+    //   {"cmd":"turnRadarRight", "angle": 360}      or  turnRadarRight 360
+    //   {"cmd":"rescan"}                            or  rescan
+    // Commands are first filed per actuator (CommandSlots) and applied once
+    // per turn, after Python's reply. Reflex rules (ReflexRules) file theirs
+    // straight from the event handlers and controllers (Controllers) theirs
+    // before Python's reply, both bypassing the recorder, which only keeps
+    // Python's. Controllers are started by control lines rather than commands:
+    //   goTo 400 300  |  lockRadar 2  |  aim 2 1.5 circular  |  aim off
+    private final PythonLink.CommandHandler actuators = this::applyCommand;
+
+    private void applyCommand(int opcode, double power, double distance, double angle) {
+        switch (opcode) {
+            case BinaryProtocol.CMD_FIRE:
                 setFire(power);
                 break;
-            case "forward":
+            case BinaryProtocol.CMD_FORWARD:
                 setForward(distance);
                 break;
-            case "back":
+            case BinaryProtocol.CMD_BACK:
                 setBack(distance);
                 break;
-            case "turnLeft":
+            case BinaryProtocol.CMD_TURN_LEFT:
                 setTurnLeft(angle);
                 break;
-            case "turnRight":
+            case BinaryProtocol.CMD_TURN_RIGHT:
                 setTurnRight(angle);
                 break;
-            case "turnGunLeft":
+            case BinaryProtocol.CMD_TURN_GUN_LEFT:
                 setTurnGunLeft(angle);
                 break;
-            case "turnGunRight":
+            case BinaryProtocol.CMD_TURN_GUN_RIGHT:
                 setTurnGunRight(angle);
                 break;
-            case "turnRadarLeft":
+            case BinaryProtocol.CMD_TURN_RADAR_LEFT:
                 setTurnRadarLeft(angle);
                 break;
-            case "turnRadarRight":
+            case BinaryProtocol.CMD_TURN_RADAR_RIGHT:
                 setTurnRadarRight(angle);
                 break;
-            case "rescan":
+            case BinaryProtocol.CMD_RESCAN:
                 rescan();
                 break;
             default:
-                logError("Unknown command from Python: " + cmd);
+                logError("Unknown command opcode from Python: " + opcode);
                 break;
         }
     }
-
-    // ── JSON builders for outgoing events ────────────────────────────
-    private static class EventJson {
-        static String scannedBot(ScannedBotEvent e) {
-            return "{" +
-                    "\"event\":\"scanned\"," +
-                    "\"energy\":" + e.getEnergy() + "," +
-                    "\"x\":" + e.getX() + "," +
-                    "\"y\":" + e.getY() + "," +
-                    "\"direction\":" + e.getDirection() + "," +
-                    "\"speed\":" + e.getSpeed() +
-                    "}";
-        }
-
-        static String hitByBullet(HitByBulletEvent e) {
-            return "{" +
-                    "\"event\":\"hitByBullet\"," +
-                    "\"damage\":" + e.getDamage() + "," +
-                    "\"direction\":" + e.getBullet().getDirection() +
-                    "}";
-        }
-
-        static String bulletHitBot(BulletHitBotEvent e) {
-            return "{" +
-                    "\"event\":\"bulletHitBot\"," +
-                    "\"damage\":" + e.getDamage() + "," +
-                    "\"botId\":" + e.getVictimId() +
-                    "}";
-        }
-
-
-        static String bulletHitWall(BulletHitWallEvent e) {
-            return "{\"event\":\"bulletHitWall\"}";
-        }
-
-
-        static String tick(PythonBridgeBot bot, TickEvent e) {
-            return "{" +
-                    "\"event\":\"tick\"," +
-                    "\"turn\":" + e.getTurnNumber() + "," +
-                    "\"energy\":" + bot.getEnergy() + "," +
-                    "\"x\":" + bot.getX() + "," +
-                    "\"y\":" + bot.getY() + "," +
-                    "\"direction\":" + bot.getDirection() + "," +
-                    "\"gunDirection\":" + bot.getGunDirection() + "," +
-                    "\"radarDirection\":" + bot.getRadarDirection() + "," +
-                    "\"gunHeat\":" + bot.getGunHeat() + "," +
-                    "\"speed\":" + bot.getSpeed() +
-                    "}";
-        }
-
-        static String wonRound(WonRoundEvent e) {
-            return "{\"event\":\"wonRound\",\"turn\":" + e.getTurnNumber() + "}";
-        }
-
-        static String skippedTurn(SkippedTurnEvent e) {
-            return "{\"event\":\"skippedTurn\",\"turn\":" + e.getTurnNumber() + "}";
-        }
-
-        static String customEvent() {
-            return "{\"event\":\"custom\"}";
-        }
-
-
-        static String botDeath(BotDeathEvent e) {
-            return "{\"event\":\"opponentDeath\",\"botId\":" + e.getVictimId() + "}";
-        }
-    }
 }
@@ -1,5 +1,5 @@
 #!/bin/sh
 # Compile the bot
-javac -cp lib/* PythonBridgeBot.java
+javac -cp lib/* -sourcepath . PythonBridgeBot.java
 # Run the bot
 java -cp lib/*:. PythonBridgeBot
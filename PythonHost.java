@@ -0,0 +1,265 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One Python process shared by several bots in the same JVM. The process
+ * runs {@code bridge_protocol.py --host <script>}; its stdin/stdout carry
+ * frames tagged with a bot id,
+ *
+ *   [length:u32 LE] [botId:u16 LE] [bytes…]     (length counts id and bytes)
+ *
+ * and each bot gets a {@link PythonLink} over its own virtual pair of
+ * streams, so every bot still negotiates its own transport and batching.
+ * An empty frame opens a bot (Java → Python, new id), closes it (Java →
+ * Python, known id) or reports that its session ended (Python → Java). Id 0
+ * is the host itself, which announces with an empty frame that it is up.
+ *
+ * The resident set size of the process is sampled when the host is up and
+ * whenever another bot's session answers for the first time, which gives
+ * the memory cost of each extra bot (Linux only; see {@link #memoryReport()}).
+ */
+final class PythonHost {
+
+    private static final int MUX_HEADER_BYTES = 6;
+    private static final int MAX_BOTS = 0xFFFF;
+
+    private final File script;
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final List<Long> rssKbBySessions = new ArrayList<>();
+    private volatile long baseRssKb = -1;
+    private final byte[] header = new byte[MUX_HEADER_BYTES];
+    private Process process;
+    private OutputStream toPython;
+    private int nextId = 1;
+
+    PythonHost(File script) {
+        this.script = script;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "python-host-shutdown"));
+    }
+
+    /** A bot's share of the host: its id and the link over its virtual streams. */
+    final class Session {
+        final int id;
+        final PythonLink link;
+        private final Process owner = process;
+        private final FeedInputStream in = new FeedInputStream();
+        private boolean answered;
+
+        private Session(int id, boolean echo) {
+            this.id = id;
+            link = new PythonLink(in, new SessionOutput(id), null, process, echo);
+        }
+
+        /** Ends this bot's session; the Python process keeps serving the others. */
+        void close() {
+            if (sessions.remove(id) != null) {
+                try {
+                    writeFrame(id, null, 0, 0);
+                } catch (IOException ex) {
+                    // the process is gone already
+                }
+            }
+        }
+    }
+
+    /** Opens a session for one more bot, starting the process if it is not running. */
+    synchronized Session open(boolean echo) throws IOException {
+        if (process == null || !process.isAlive()) {
+            start();
+        }
+        int id = nextId;
+        nextId = nextId % MAX_BOTS + 1;
+        Session s = new Session(id, echo);
+        sessions.put(id, s);
+        writeFrame(id, null, 0, 0);
+        return s;
+    }
+
+    synchronized Process process() {
+        return process;
+    }
+
+    void shutdown() {
+        Process p = process;
+        if (p != null) {
+            p.destroy();
+        }
+    }
+
+    /** Waits until {@code n} sessions have answered, or the timeout has passed. */
+    boolean awaitAnswered(int n, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (rssKbBySessions) {
+            while (rssKbBySessions.size() < n) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return false;
+                }
+                rssKbBySessions.wait(left);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Describes the resident memory of the shared process: the interpreter
+     * on its own, what each bot adds, and so what each extra bot saves by not
+     * starting an interpreter of its own.
+     */
+    String memoryReport() {
+        long all;
+        int n;
+        synchronized (rssKbBySessions) {
+            n = rssKbBySessions.size();
+            all = n > 0 ? rssKbBySessions.get(n - 1) : -1;
+        }
+        long base = baseRssKb;
+        if (base <= 0 || all <= 0) {
+            return "Python host: memory figures unavailable (needs /proc)";
+        }
+        double perBot = (all - base) / (double) n;
+        return String.format("Python host: %d bots in %.1f MB resident (%.1f MB interpreter, "
+                        + "+%.0f kB per bot); each extra bot saves about %.1f MB "
+                        + "against a Python process of its own",
+                n, all / 1024.0, base / 1024.0, perBot, base / 1024.0);
+    }
+
+    /** Resident set size of a process in kB from /proc, or -1 where that is not available. */
+    static long rssKb(long pid) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            // not Linux, or the process has gone
+        }
+        return -1;
+    }
+
+    // ── process and demultiplexing ───────────────────────────────────
+    private void start() throws IOException {
+        File protocol = new File(script.getAbsoluteFile().getParentFile(), "bridge_protocol.py");
+        process = new ProcessBuilder("python", "-u", protocol.getAbsolutePath(),
+                "--host", script.getAbsolutePath()).start();
+        toPython = new BufferedOutputStream(process.getOutputStream());
+        synchronized (rssKbBySessions) {
+            rssKbBySessions.clear();
+        }
+        baseRssKb = -1;
+        Process p = process;
+        Thread reader = new Thread(() -> readLoop(p), "python-host-reader");
+        reader.setDaemon(true);
+        reader.start();
+        PythonLink.drainLines(p.getErrorStream(), "python-host-stderr", PythonLink.STDERR_PREFIX);
+    }
+
+    private void writeFrame(int id, byte[] buf, int off, int len) throws IOException {
+        synchronized (header) {
+            int length = len + 2;
+            header[0] = (byte) length;
+            header[1] = (byte) (length >>> 8);
+            header[2] = (byte) (length >>> 16);
+            header[3] = (byte) (length >>> 24);
+            header[4] = (byte) id;
+            header[5] = (byte) (id >>> 8);
+            toPython.write(header);
+            if (len > 0) {
+                toPython.write(buf, off, len);
+            }
+            toPython.flush();
+        }
+    }
+
+    private void readLoop(Process p) {
+        byte[] head = new byte[MUX_HEADER_BYTES];
+        byte[] payload = new byte[8192];
+        try (InputStream in = new BufferedInputStream(p.getInputStream())) {
+            while (readFully(in, head, MUX_HEADER_BYTES)) {
+                int length = (head[0] & 0xFF) | (head[1] & 0xFF) << 8
+                        | (head[2] & 0xFF) << 16 | (head[3] & 0xFF) << 24;
+                int id = (head[4] & 0xFF) | (head[5] & 0xFF) << 8;
+                int n = length - 2;
+                if (n < 0) {
+                    throw new IOException("Bad frame length from Python host: " + length);
+                }
+                if (n > payload.length) {
+                    payload = new byte[Math.max(n, payload.length * 2)];
+                }
+                if (!readFully(in, payload, n)) {
+                    break;
+                }
+                if (id == 0) {
+                    baseRssKb = rssKb(p.pid());
+                    continue;
+                }
+                Session s = sessions.get(id);
+                if (s == null) {
+                    continue;
+                }
+                if (n == 0) {
+                    sessions.remove(id);
+                    s.in.close();
+                    continue;
+                }
+                if (!s.answered) {
+                    s.answered = true;
+                    synchronized (rssKbBySessions) {
+                        rssKbBySessions.add(rssKb(p.pid()));
+                        rssKbBySessions.notifyAll();
+                    }
+                }
+                s.in.feed(payload, n);
+            }
+        } catch (IOException ex) {
+            if (p.isAlive()) {
+                BridgeLog.error("Reading from the Python host failed: " + ex.getMessage());
+            }
+        } finally {
+            sessions.values().removeIf(s -> {
+                if (s.owner == p) {
+                    s.in.close();
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    private static boolean readFully(InputStream in, byte[] buf, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int n = in.read(buf, off, len - off);
+            if (n < 0) {
+                return false;
+            }
+            off += n;
+        }
+        return true;
+    }
+
+    // ── a bot's virtual streams ──────────────────────────────────────
+    /** Collects one bot's output and sends it as a single frame on flush. */
+    private final class SessionOutput extends ByteArrayOutputStream {
+        private final int id;
+
+        SessionOutput(int id) {
+            super(512);
+            this.id = id;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (count > 0) {
+                writeFrame(id, buf, 0, count);
+                reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,944 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Owns the stdin/stdout/stderr pipes of the Python process and speaks
+ * whichever transport was negotiated: line-JSON (the default), the
+ * length-prefixed binary frames described in {@link BinaryProtocol}, or those
+ * same frames through a {@link SharedMemoryChannel}, each either one event at
+ * a time or batched per turn. With shared memory the pipes are left to the
+ * handshake and to Python's log output.
+ *
+ * Python's stderr (and its stdout, once that only carries log output) is
+ * drained continuously by a thread of its own into {@link BridgeLog}, so a
+ * chatty script can never fill the pipe and stall.
+ *
+ * Python's stdout is read by a dedicated daemon thread that parses commands
+ * in place from its read buffer ({@link CommandParser}) and hands them to the
+ * bot thread through a lock-free {@link CommandRing}. The bot thread waits for its
+ * turn's reply with {@link #awaitCommands} for at most a deadline derived
+ * from the server's turn timeout, so a slow Python decision costs a missed
+ * deadline instead of a skipped turn. Encoding, round-trip, parse and
+ * dispatch times are recorded in a {@link BridgeMetrics}.
+ */
+final class PythonLink {
+
+    /** Receives the commands read back from Python, already parsed. */
+    interface CommandHandler {
+        /**
+         * @param opcode one of the BinaryProtocol.CMD_* opcodes
+         * Commands with a single argument (text form and binary frames)
+         * carry it in all of power, distance and angle.
+         */
+        void onCommand(int opcode, double power, double distance, double angle);
+    }
+
+    /** Spin this many times before parking while waiting for Python. */
+    private static final int SPIN_TRIES = 200;
+    private static final int MAX_FRAME_BYTES = 1 << 16;
+    /** How long newRound waits for Python's reply to the last round's final batch. */
+    private static final long ROUND_DRAIN_NANOS = 100_000_000L;
+    private static final byte[] ECHO_OUT_PREFIX = "[ToPython] ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ECHO_IN_PREFIX = "[Python] ".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] STDERR_PREFIX = "[PyErr] ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STDOUT_PREFIX = "[PyOut] ".getBytes(StandardCharsets.US_ASCII);
+
+    private final Process process;
+    private InputStream in;
+    private OutputStream out;
+    private SharedMemoryChannel shm;
+    private final boolean echo;
+    private ByteBuffer frameOut = BinaryProtocol.newBuffer(256);
+    private final EventJson jsonOut = new EventJson();
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream(128);
+    private boolean binary;
+    private boolean batched;
+    /** Set once Python has accepted delta-encoded ticks. */
+    private TickDelta tickDelta;
+
+    // ── reader thread: raw read buffer, parsed in place
+    private byte[] readBuf = new byte[8192];
+    private ByteBuffer readView = ByteBuffer.wrap(readBuf).order(ByteOrder.LITTLE_ENDIAN);
+    private int readPos;
+    private int readLimit;
+    private final CommandParser parser = new CommandParser();
+
+    // ── reader thread → bot thread handoff
+    private final CommandRing replies = new CommandRing(1024);
+    private volatile Thread waiter;
+    private volatile boolean closed;
+    private Thread reader;
+
+    // ── batched replies: commands are held until the end marker arrives
+    private int[] batchOps = new int[16];
+    private double[] batchArgs = new double[16 * 3];
+    private int batchOpCount;
+    private int lastSentTurn = -1;
+    private int lastAppliedTurn = -1;
+    private int maxReplyLag;
+    private long discardedReplies;
+    private long deadlineMisses;
+    /** Deadlines missed since Python last answered anything. */
+    private int missesInARow;
+    private long quietNanos = 200_000L;
+
+    private volatile BridgeMetrics metrics = new BridgeMetrics("unregistered");
+    /** Where rules from Python go; null if the owner does not run any. */
+    private volatile ReflexRules reflexes;
+    /** Where goTo, lockRadar and aim lines go; null if the owner runs no controllers. */
+    private volatile Controllers controllers;
+    /** Standby links: control lines kept until the link takes over; guarded by this. */
+    private List<String> deferredControls;
+    /** Set by Python's "track on": send ENEMY events instead of SCANNED. */
+    private volatile boolean trackEnemies;
+    /** When the first event of the current turn was sent; 0 if none was. */
+    private long turnStartNanos;
+    /** Round trip of the last turn Python answered in time. */
+    private long lastRoundTripNanos;
+    /** When the reader handed over the latest end marker; read by collectCommands. */
+    private volatile long lastMarkerNanos;
+
+    PythonLink(Process process) {
+        this(process, true);
+    }
+
+    /** @param echo log every JSON line sent and received at TRACE level */
+    PythonLink(Process process, boolean echo) {
+        this(new BufferedInputStream(process.getInputStream()),
+                new BufferedOutputStream(process.getOutputStream()),
+                process.getErrorStream(), process, echo);
+    }
+
+    /**
+     * Speaks over the given streams instead of the process's own pipes, e.g.
+     * one bot's share of a {@link PythonHost}; {@code process} is only
+     * watched to notice that Python has exited. {@code err} may be null if
+     * someone else drains stderr.
+     */
+    PythonLink(InputStream in, OutputStream out, InputStream err, Process process, boolean echo) {
+        this.process = process;
+        this.in = in;
+        this.out = out;
+        this.echo = echo;
+        if (err != null) {
+            drainLines(err, "python-stderr", STDERR_PREFIX);
+        }
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    /** True if the frames travel through shared memory instead of the pipes. */
+    boolean isShared() {
+        return shm != null;
+    }
+
+    /** Name of the active transport: "json", "binary" or "shm". */
+    String transport() {
+        return shm != null ? BinaryProtocol.PROTOCOL_SHM
+                : binary ? BinaryProtocol.PROTOCOL_BINARY : BinaryProtocol.PROTOCOL_JSON;
+    }
+
+    boolean isBatched() {
+        return batched;
+    }
+
+    boolean isTickDelta() {
+        return tickDelta != null;
+    }
+
+    /** True once Python has closed its stdout. */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /** Records into {@code m} from now on (the bot's metrics survive a new link). */
+    void setMetrics(BridgeMetrics m) {
+        metrics = m;
+    }
+
+    /**
+     * Installs the rules Python sends into {@code r}; must be called before
+     * {@link #awaitReady} so that rules sent at start-up are not missed.
+     */
+    void setReflexes(ReflexRules r) {
+        reflexes = r;
+    }
+
+    /** Starts the controllers Python asks for in {@code c}; like {@link #setReflexes}, before awaitReady. */
+    void setControllers(Controllers c) {
+        controllers = c;
+    }
+
+    /** True once Python has asked for EnemyTracker summaries instead of raw scans. */
+    boolean tracksEnemies() {
+        return trackEnemies;
+    }
+
+    /** Number of turn replies dropped because they were stale or repeated. */
+    long discardedReplies() {
+        return discardedReplies;
+    }
+
+    /** Number of turns in which Python did not answer before the deadline. */
+    long deadlineMisses() {
+        return deadlineMisses;
+    }
+
+    /** Round trip of the last turn {@link #awaitCommands} or {@link #collectCommands} saw answered. */
+    long lastRoundTripNanos() {
+        return lastRoundTripNanos;
+    }
+
+    /** Deadlines missed in a row, i.e. since Python last sent anything. */
+    int missesInARow() {
+        return missesInARow;
+    }
+
+    /**
+     * Keeps the rules and controllers Python sends from now on instead of
+     * applying them, for a standby process whose link is not in use yet.
+     * Must be called before {@link #awaitReady}.
+     */
+    synchronized void deferControls() {
+        deferredControls = new ArrayList<>();
+    }
+
+    /** Applies the control lines kept since {@link #deferControls}, in order. */
+    void applyDeferredControls() {
+        List<String> held;
+        synchronized (this) {
+            held = deferredControls;
+            deferredControls = null;
+        }
+        if (held != null) {
+            for (String text : held) {
+                control(text);
+            }
+        }
+    }
+
+    /**
+     * Accept batched replies for turns up to {@code turns} behind the last
+     * batch sent; older replies are discarded.
+     */
+    void setMaxReplyLag(int turns) {
+        maxReplyLag = Math.max(0, turns);
+    }
+
+    /**
+     * In unbatched mode, keep collecting commands until none has arrived
+     * for this long after the first one (Python writes them one by one).
+     */
+    void setQuietPeriodMicros(long micros) {
+        quietNanos = Math.max(0, micros) * 1_000L;
+    }
+
+    /**
+     * Absolute {@link System#nanoTime()} deadline for the current turn's
+     * reply: the configured share of the server's turn timeout, but never
+     * later than the time left in the turn minus the configured reserve.
+     */
+    static long turnDeadline(int turnTimeoutMicros, int timeLeftMicros) {
+        long budget = BridgeConfig.turnDeadlineMicros();
+        if (budget <= 0) {
+            budget = (long) (turnTimeoutMicros * BridgeConfig.turnDeadlineFraction());
+        }
+        if (timeLeftMicros > 0) {
+            budget = Math.min(budget, timeLeftMicros - BridgeConfig.turnReserveMicros());
+        }
+        return System.nanoTime() + Math.max(0, budget) * 1_000L;
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for the ready line Python writes once
+     * the script has loaded. Scripts that predate it send nothing; any other
+     * line is handed out with the first commands. Rules and other control
+     * lines the script sent while loading arrive with the ready line and are
+     * applied here, off the bot's critical path. Must be called before
+     * {@link #startReader()}.
+     */
+    boolean awaitReady(long timeoutMs) throws IOException {
+        String line = awaitLine(timeoutMs);
+        if (line == null) {
+            return false;
+        }
+        if (BinaryProtocol.isReady(line)) {
+            String next;
+            while ((next = readAvailableLine()) != null) {
+                byte[] bytes = next.getBytes(StandardCharsets.UTF_8);
+                handleLine(bytes, 0, bytes.length);
+            }
+            return true;
+        }
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        handleLine(bytes, 0, bytes.length);
+        return false;
+    }
+
+    /**
+     * Offers a transport ("json", "binary" or "shm") and/or batched turns and
+     * waits up to {@code timeoutMs} for the reply. A script that does not
+     * know the handshake answers with an ordinary command (or not at all);
+     * such a line is kept and handed out with the first commands so nothing
+     * is lost. Must be called before {@link #startReader()}. Returns false if
+     * the script did not acknowledge the offer as made.
+     */
+    boolean negotiate(String protocol, boolean offerBatch, long timeoutMs) throws IOException {
+        return negotiate(protocol, offerBatch, false, timeoutMs);
+    }
+
+    /**
+     * As above, also offering delta-encoded ticks (see {@link TickDelta}),
+     * which are used from then on if Python accepts them.
+     */
+    boolean negotiate(String protocol, boolean offerBatch, boolean offerDelta, long timeoutMs)
+            throws IOException {
+        SharedMemoryChannel offered = null;
+        if (BinaryProtocol.PROTOCOL_SHM.equals(protocol)) {
+            offered = SharedMemoryChannel.createTemp(BridgeConfig.shmRingBytes(),
+                    BridgeConfig.shmSpinTries(), BridgeConfig.shmParkMicros());
+            offered.setPeer(process);
+        }
+        writeLine(BinaryProtocol.hello(protocol, offerBatch, offerDelta, offered));
+        out.flush();
+
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        String reply = awaitLine(timeoutMs);
+        while (reply != null
+                && (reply.startsWith(ReflexRules.PREFIX) || reply.startsWith(EnemyTracker.PREFIX)
+                        || Controllers.isController(reply))) {
+            // control lines the script sent while loading follow its ready line
+            control(reply);
+            reply = awaitLine(Math.max(0, (deadline - System.nanoTime()) / 1_000_000L));
+        }
+        if (reply == null || !BinaryProtocol.isAck(reply)) {
+            if (offered != null) {
+                offered.close();
+            }
+            if (reply != null) {
+                byte[] line = reply.getBytes(StandardCharsets.UTF_8);
+                handleLine(line, 0, line.length);
+            }
+            return false;
+        }
+        String accepted = BinaryProtocol.ackProtocol(reply);
+        if (offered != null && BinaryProtocol.PROTOCOL_SHM.equals(accepted)) {
+            shm = offered;
+            // the stream stays open until Python (or the server) goes away
+            drainLines(in, "python-stdout", STDOUT_PREFIX, shm::peerClosed);
+            in = shm.input();
+            out = shm.output();
+        } else if (offered != null) {
+            offered.close();
+        }
+        binary = shm != null || BinaryProtocol.PROTOCOL_BINARY.equals(accepted);
+        batched = offerBatch && BinaryProtocol.isBatchAck(reply);
+        if (offerDelta && BinaryProtocol.isDeltaAck(reply)) {
+            tickDelta = new TickDelta(BridgeConfig.tickKeyframeTurns(), BridgeConfig.tickDeltaEpsilon());
+        }
+        return transport().equals(protocol) && batched == offerBatch && isTickDelta() == offerDelta;
+    }
+
+    /** Starts the thread that reads Python's stdout for the rest of the game. */
+    void startReader() {
+        if (!binary && partialLine.size() > 0) {
+            // the start of a line read while looking for the ready line or the ack
+            byte[] rest = partialLine.toByteArray();
+            partialLine.reset();
+            if (rest.length > readBuf.length) {
+                readBuf = Arrays.copyOf(readBuf, rest.length * 2);
+                readView = ByteBuffer.wrap(readBuf).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            System.arraycopy(rest, 0, readBuf, 0, rest.length);
+            readLimit = rest.length;
+        }
+        reader = new Thread(this::readLoop, "python-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    void send(BridgeEvent e) throws IOException {
+        long t0 = System.nanoTime();
+        if (turnStartNanos == 0) {
+            turnStartNanos = t0;
+        }
+        if (tickDelta != null) {
+            tickDelta.apply(e);
+        }
+        if (binary) {
+            frameOut.clear();
+            BinaryProtocol.writeEvent(e, frameOut);
+            metrics.sent(1, frameOut.position(), System.nanoTime() - t0);
+            out.write(frameOut.array(), 0, frameOut.position());
+        } else {
+            jsonOut.reset().event(e).newline();
+            metrics.sent(1, jsonOut.length(), System.nanoTime() - t0);
+            writeJson();
+        }
+        out.flush();
+    }
+
+    /**
+     * Sends every queued event for {@code turn} in a single frame (binary) or
+     * line (JSON) with one flush, draining the queue.
+     */
+    void sendBatch(int turn, EventQueue events) throws IOException {
+        long t0 = System.nanoTime();
+        turnStartNanos = t0;
+        lastSentTurn = turn;
+        int count = events.size();
+        if (tickDelta != null) {
+            for (int i = 0; i < count; i++) {
+                tickDelta.apply(events.get(i));
+            }
+        }
+        if (binary) {
+            int size = BinaryProtocol.BATCH_HEADER_BYTES;
+            for (int i = 0; i < events.size(); i++) {
+                size += BinaryProtocol.frameBytes(events.get(i));
+            }
+            if (frameOut.capacity() < size) {
+                frameOut = BinaryProtocol.newBuffer(Math.max(size, frameOut.capacity() * 2));
+            }
+            frameOut.clear();
+            BinaryProtocol.writeBatchHeader(turn, events.size(), size, frameOut);
+            BridgeEvent e;
+            while ((e = events.poll()) != null) {
+                BinaryProtocol.writeEvent(e, frameOut);
+            }
+            metrics.sent(count, frameOut.position(), System.nanoTime() - t0);
+            out.write(frameOut.array(), 0, frameOut.position());
+        } else {
+            jsonOut.reset().batchStart(turn);
+            BridgeEvent e;
+            boolean first = true;
+            while ((e = events.poll()) != null) {
+                if (!first) {
+                    jsonOut.put(',');
+                }
+                jsonOut.event(e);
+                first = false;
+            }
+            jsonOut.batchEnd().newline();
+            metrics.sent(count, jsonOut.length(), System.nanoTime() - t0);
+            writeJson();
+        }
+        out.flush();
+    }
+
+    /**
+     * Batched mode: true if the events queued for {@code turn} should wait
+     * because Python has not answered the last batch yet. Sending more would
+     * only line up stale ticks behind it; held back, they are coalesced and
+     * go out together once Python has caught up. Events are held for at most
+     * the reply lag (an older reply would be dropped anyway) and never while
+     * a critical event is queued.
+     */
+    boolean holdEvents(int turn, EventQueue events) {
+        return batched && lastAppliedTurn < lastSentTurn && turn - lastSentTurn <= maxReplyLag
+                && !events.hasCritical();
+    }
+
+    /**
+     * Starts a new round: turn numbers begin again, so the batched-reply
+     * bookkeeping is reset and commands left over from the last round are
+     * dropped. In batched mode a reply still owed for the last round (in
+     * pipelined mode there always is one) is waited for and dropped first;
+     * read after the reset it would pass for a reply to a turn of the new
+     * round. With delta ticks the next tick is sent in full.
+     */
+    void newRound() {
+        if (batched && lastAppliedTurn < lastSentTurn) {
+            drainRound(System.nanoTime() + ROUND_DRAIN_NANOS);
+        }
+        lastSentTurn = -1;
+        lastAppliedTurn = -1;
+        batchOpCount = 0;
+        if (tickDelta != null) {
+            tickDelta.reset();
+        }
+        while (replies.poll()) {
+            discardedReplies++;
+            metrics.replyDiscarded();
+        }
+    }
+
+    /**
+     * Discards replies until the end marker of the last batch sent has been
+     * read, Python has gone or the deadline has passed. Python answers
+     * batches in order, so nothing of the round is left after that marker.
+     */
+    private void drainRound(long deadlineNanos) {
+        waiter = Thread.currentThread();
+        try {
+            CommandRing r = replies;
+            while (true) {
+                if (r.poll()) {
+                    if (r.opcode == BinaryProtocol.CMD_END_TURN) {
+                        discardedReplies++;
+                        metrics.replyDiscarded();
+                        if ((int) r.power >= lastSentTurn) {
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                if (closed && r.isEmpty()) {
+                    return;
+                }
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    BridgeLog.warn("Python has still not answered turn " + lastSentTurn
+                            + " of the last round");
+                    return;
+                }
+                LockSupport.parkNanos(remaining);
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Hands every command that has already arrived to {@code handler}. In
+     * batched mode commands are only released once their turn's end marker
+     * has been read, and only if that turn is neither stale, a repeat nor one not sent yet.
+     * Returns the number of replies taken from the queue.
+     */
+    int pollCommands(CommandHandler handler) {
+        int count = 0;
+        CommandRing r = replies;
+        while (r.poll()) {
+            count++;
+            if (r.opcode == BinaryProtocol.CMD_END_TURN) {
+                endTurn((int) r.power, handler);
+            } else {
+                command(r.opcode, r.power, r.distance, r.angle, handler);
+            }
+        }
+        if (count > 0) {
+            missesInARow = 0;
+        }
+        return count;
+    }
+
+    /**
+     * Waits until Python has answered the current turn or the deadline has
+     * passed, applying commands as they arrive. A turn counts as answered
+     * when its end marker was applied (batched mode) or when at least one
+     * command arrived and the stream then stayed quiet for the quiet period.
+     * Returns false, and counts a miss, if the deadline passed first.
+     */
+    boolean awaitCommands(CommandHandler handler, long deadlineNanos) {
+        waiter = Thread.currentThread();
+        try {
+            boolean received = false;
+            long lastArrival = 0;
+            int spins = 0;
+            while (true) {
+                int n = pollCommands(handler);
+                long now = System.nanoTime();
+                if (n > 0) {
+                    received = true;
+                    lastArrival = now;
+                    spins = 0;
+                }
+                if (batched ? lastAppliedTurn >= lastSentTurn
+                        : received && now - lastArrival >= quietNanos) {
+                    recordRoundTrip(batched ? now : lastArrival);
+                    return true;
+                }
+                if (closed && replies.isEmpty()) {
+                    return received;
+                }
+                long remaining = deadlineNanos - now;
+                if (remaining <= 0) {
+                    if (!received || batched) {
+                        deadlineMisses++;
+                        missesInARow++;
+                        metrics.deadlineMissed();
+                    } else {
+                        recordRoundTrip(lastArrival);
+                    }
+                    return received && !batched;
+                }
+                if (spins < SPIN_TRIES) {
+                    spins++;
+                    Thread.onSpinWait();
+                } else if (received && !batched) {
+                    LockSupport.parkNanos(Math.min(remaining, quietNanos));
+                } else {
+                    LockSupport.parkNanos(remaining);
+                }
+            }
+        } finally {
+            waiter = null;
+            turnStartNanos = 0;
+        }
+    }
+
+    /**
+     * Pipelined mode: hands over whatever Python has answered so far without
+     * waiting. It is called just before the next turn's events go out, so
+     * Python had the whole server turn for its reply; in batched mode a
+     * reply that has still not arrived counts as a missed deadline. Returns
+     * false in that case. A batched reply that did arrive sets the round
+     * trip, measured to the moment its end marker was read.
+     */
+    boolean collectCommands(CommandHandler handler) {
+        pollCommands(handler);
+        if (batched && lastAppliedTurn < lastSentTurn) {
+            deadlineMisses++;
+            missesInARow++;
+            metrics.deadlineMissed();
+            return false;
+        }
+        if (batched) {
+            recordRoundTrip(lastMarkerNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Starts a daemon thread that reads {@code src} to its end and logs each
+     * line with {@code prefix}, without building Strings.
+     */
+    static void drainLines(InputStream src, String threadName, byte[] prefix) {
+        drainLines(src, threadName, prefix, null);
+    }
+
+    /** As above, then runs {@code atEnd} (if not null) once the stream has ended. */
+    static void drainLines(InputStream src, String threadName, byte[] prefix, Runnable atEnd) {
+        Thread t = new Thread(() -> {
+            byte[] buf = new byte[8192];
+            int len = 0;
+            try {
+                int n;
+                while ((n = src.read(buf, len, buf.length - len)) > 0) {
+                    len += n;
+                    int start = 0;
+                    for (int i = len - n; i < len; i++) {
+                        if (buf[i] == '\n') {
+                            BridgeLog.log(BridgeLog.Level.INFO, prefix, buf, start, i - start);
+                            start = i + 1;
+                        }
+                    }
+                    if (start == 0 && len == buf.length) {
+                        BridgeLog.log(BridgeLog.Level.INFO, prefix, buf, 0, len);
+                        len = 0;
+                    } else if (start > 0) {
+                        System.arraycopy(buf, start, buf, 0, len - start);
+                        len -= start;
+                    }
+                }
+                if (len > 0) {
+                    BridgeLog.log(BridgeLog.Level.INFO, prefix, buf, 0, len);
+                }
+            } catch (IOException ex) {
+                // the process has gone
+            }
+            if (atEnd != null) {
+                atEnd.run();
+            }
+        }, threadName);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ── bot thread: batch bookkeeping ────────────────────────────────
+    private void recordRoundTrip(long answeredNanos) {
+        if (turnStartNanos != 0) {
+            lastRoundTripNanos = answeredNanos - turnStartNanos;
+            metrics.roundTrip.record(lastRoundTripNanos);
+        }
+    }
+
+    private void dispatch(int opcode, double power, double distance, double angle,
+                          CommandHandler handler) {
+        long t0 = System.nanoTime();
+        handler.onCommand(opcode, power, distance, angle);
+        metrics.dispatch.record(System.nanoTime() - t0);
+    }
+
+    private void command(int opcode, double power, double distance, double angle,
+                         CommandHandler handler) {
+        if (!batched) {
+            dispatch(opcode, power, distance, angle, handler);
+            return;
+        }
+        if (batchOpCount == batchOps.length) {
+            batchOps = Arrays.copyOf(batchOps, batchOpCount * 2);
+            batchArgs = Arrays.copyOf(batchArgs, batchOpCount * 2 * 3);
+        }
+        batchOps[batchOpCount] = opcode;
+        batchArgs[batchOpCount * 3] = power;
+        batchArgs[batchOpCount * 3 + 1] = distance;
+        batchArgs[batchOpCount * 3 + 2] = angle;
+        batchOpCount++;
+    }
+
+    private void endTurn(int turn, CommandHandler handler) {
+        if (!batched) {
+            return;
+        }
+        // a turn not sent yet can only be a late reply from the previous round
+        if (turn > lastAppliedTurn && turn <= lastSentTurn && turn >= lastSentTurn - maxReplyLag) {
+            lastAppliedTurn = turn;
+            for (int i = 0; i < batchOpCount; i++) {
+                dispatch(batchOps[i],
+                        batchArgs[i * 3], batchArgs[i * 3 + 1], batchArgs[i * 3 + 2], handler);
+            }
+        } else {
+            discardedReplies++;
+            metrics.replyDiscarded();
+            BridgeLog.warn("Discarded stale reply for turn " + turn
+                    + " (last sent " + lastSentTurn + ", last applied " + lastAppliedTurn + ")");
+        }
+        batchOpCount = 0;
+    }
+
+    // ── reader thread ────────────────────────────────────────────────
+    private void readLoop() {
+        try {
+            while (binary ? readFrameCommand() : readLineCommand()) {
+                Thread w = waiter;
+                if (w != null) {
+                    LockSupport.unpark(w);
+                }
+            }
+        } catch (IOException ex) {
+            BridgeLog.error("Reading from Python failed: " + ex.getMessage());
+        } finally {
+            closed = true;
+            Thread w = waiter;
+            if (w != null) {
+                LockSupport.unpark(w);
+            }
+        }
+    }
+
+    /** Reads and hands over the next line; false at end of stream. */
+    private boolean readLineCommand() throws IOException {
+        int scanned = 0;
+        while (true) {
+            for (int i = readPos + scanned; i < readLimit; i++) {
+                if (readBuf[i] == '\n') {
+                    handleLine(readBuf, readPos, i - readPos);
+                    readPos = i + 1;
+                    return true;
+                }
+            }
+            scanned = readLimit - readPos;
+            if (!fill()) {
+                if (readLimit > readPos) {
+                    handleLine(readBuf, readPos, readLimit - readPos);
+                    readPos = readLimit;
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /** Reads and hands over the next binary frame; false at end of stream. */
+    private boolean readFrameCommand() throws IOException {
+        if (!require(BinaryProtocol.HEADER_BYTES)) {
+            return false;
+        }
+        int length = readView.getInt(readPos);
+        if (length <= 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Bad frame length from Python: " + length);
+        }
+        if (!require(BinaryProtocol.HEADER_BYTES + length)) {
+            return false;
+        }
+        long t0 = System.nanoTime();
+        int p = readPos + BinaryProtocol.HEADER_BYTES;
+        int opcode = readBuf[p] & 0xFF;
+        if (opcode == BinaryProtocol.CMD_CONTROL) {
+            control(new String(readBuf, p + 1, length - 1, StandardCharsets.UTF_8));
+        } else if (opcode == BinaryProtocol.CMD_END_TURN && length >= BinaryProtocol.END_TURN_PAYLOAD_BYTES) {
+            int turn = readView.getInt(p + 1);
+            metrics.commandParsed(System.nanoTime() - t0);
+            handOver(opcode, turn, 0, 0);
+        } else if (length >= BinaryProtocol.COMMAND_PAYLOAD_BYTES) {
+            double arg = readView.getDouble(p + 1);
+            metrics.commandParsed(System.nanoTime() - t0);
+            handOver(opcode, arg, arg, arg);
+        }
+        readPos = p + length;
+        return true;
+    }
+
+    private void handleLine(byte[] buf, int off, int len) {
+        if (echo) {
+            BridgeLog.log(BridgeLog.Level.TRACE, ECHO_IN_PREFIX, buf, off, len);
+        }
+        if (ReflexRules.isRule(buf, off, len) || EnemyTracker.isTrack(buf, off, len)
+                || Controllers.isController(buf, off, len)) {
+            control(new String(buf, off, len, StandardCharsets.UTF_8));
+            return;
+        }
+        long t0 = System.nanoTime();
+        if (parser.parse(buf, off, len)) {
+            metrics.commandParsed(System.nanoTime() - t0);
+            handOver(parser.opcode, parser.power, parser.distance, parser.angle);
+        } else if (!CommandParser.EMPTY.equals(parser.error)) {
+            BridgeLog.warn("Cannot parse Python command: "
+                    + new String(buf, off, len, StandardCharsets.UTF_8) + " (" + parser.error + ")");
+        }
+    }
+
+    /** Applies a control line: a reflex rule, a track switch or a controller. */
+    private void control(String text) {
+        synchronized (this) {
+            if (deferredControls != null) {
+                deferredControls.add(text);
+                return;
+            }
+        }
+        if (Controllers.isController(text)) {
+            Controllers c = controllers;
+            String error = c == null ? "this bot runs no controllers" : c.define(text);
+            if (error != null) {
+                BridgeLog.warn("Rejected control line from Python: " + text + " (" + error + ")");
+            } else if (BridgeLog.isEnabled(BridgeLog.Level.DEBUG)) {
+                BridgeLog.debug("Controller from Python: " + text);
+            }
+            return;
+        }
+        if (text.startsWith(EnemyTracker.PREFIX)) {
+            String arg = text.substring(EnemyTracker.PREFIX.length()).trim();
+            if (arg.equals("on") || arg.equals("off")) {
+                trackEnemies = arg.equals("on");
+            } else {
+                BridgeLog.warn("Rejected control line from Python: " + text + " (expected: track on|off)");
+            }
+            return;
+        }
+        ReflexRules r = reflexes;
+        if (r == null) {
+            BridgeLog.warn("Ignoring rule from Python, this bot runs none: " + text);
+            return;
+        }
+        String error = r.define(text);
+        if (error != null) {
+            BridgeLog.warn("Rejected rule from Python: " + text + " (" + error + ")");
+        } else if (BridgeLog.isEnabled(BridgeLog.Level.DEBUG)) {
+            BridgeLog.debug("Rule from Python: " + text);
+        }
+    }
+
+    /** Publishes a command to the bot thread, waiting while the ring is full. */
+    private void handOver(int opcode, double power, double distance, double angle) {
+        if (opcode == BinaryProtocol.CMD_END_TURN) {
+            lastMarkerNanos = System.nanoTime();
+        }
+        while (!replies.offer(opcode, power, distance, angle)) {
+            Thread w = waiter;
+            if (w != null) {
+                LockSupport.unpark(w);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Makes sure at least {@code n} unread bytes are buffered. */
+    private boolean require(int n) throws IOException {
+        while (readLimit - readPos < n) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reads more bytes into readBuf, compacting or growing it as needed. */
+    private boolean fill() throws IOException {
+        if (readPos == readLimit) {
+            readPos = 0;
+            readLimit = 0;
+        }
+        if (readLimit == readBuf.length) {
+            int unread = readLimit - readPos;
+            byte[] target = readPos > 0 ? readBuf : new byte[readBuf.length * 2];
+            System.arraycopy(readBuf, readPos, target, 0, unread);
+            if (target != readBuf) {
+                readBuf = target;
+                readView = ByteBuffer.wrap(readBuf).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            readPos = 0;
+            readLimit = unread;
+        }
+        int n = in.read(readBuf, readLimit, readBuf.length - readLimit);
+        if (n < 0) {
+            return false;
+        }
+        readLimit += n;
+        return true;
+    }
+
+    // ── raw stream helpers ───────────────────────────────────────────
+    /** Writes the encoded JSON line, logging the raw bytes without a String. */
+    private void writeJson() throws IOException {
+        if (echo) {
+            BridgeLog.log(BridgeLog.Level.TRACE, ECHO_OUT_PREFIX, jsonOut.buffer(), 0, jsonOut.length());
+        }
+        out.write(jsonOut.buffer(), 0, jsonOut.length());
+    }
+
+    private void writeLine(String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    /** Polls for a complete line for up to {@code timeoutMs}; null if none came. */
+    private String awaitLine(long timeoutMs) throws IOException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        String line = readAvailableLine();
+        while (line == null && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            line = readAvailableLine();
+        }
+        return line;
+    }
+
+    /**
+     * Returns the next complete line if one can be assembled from the bytes
+     * already available, otherwise keeps the partial line for the next call.
+     * Only used for the ready line and the handshake, before the reader
+     * thread starts.
+     */
+    private String readAvailableLine() throws IOException {
+        while (in.available() > 0) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            if (b == '\n') {
+                return takeLine();
+            }
+            partialLine.write(b);
+        }
+        return null;
+    }
+
+    private String takeLine() {
+        String line = partialLine.toString(StandardCharsets.UTF_8);
+        partialLine.reset();
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+}
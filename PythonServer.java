@@ -0,0 +1,244 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Connections to a long-lived Python strategy server on this machine, which
+ * is started on its own,
+ *
+ *   python -u bridge_protocol.py --serve 7700 bot_logic.py
+ *
+ * and used instead of a child process per bot when bridge.server names it.
+ * Each bot opens one TCP connection (TCP_NODELAY) and introduces itself with
+ * the line {@code session <name>}; from then on the connection carries the
+ * ordinary protocol, so every bot still negotiates its own transport and
+ * batching. The server keeps its imports loaded for every bot it serves, and
+ * a bot's copy of the script, with its state and rules, for when a bot of
+ * the same name connects again.
+ *
+ * All connections of a JVM to one server share a single selector thread,
+ * which hands whatever arrives to each bot's {@link FeedInputStream}. Writes
+ * come from the bot thread: a flush sends everything buffered since the
+ * last one with one write call, and only what the socket does not take at
+ * once is queued for the selector thread.
+ */
+final class PythonServer {
+
+    private static final Map<String, PythonServer> SERVERS = new ConcurrentHashMap<>();
+    private static final String SESSION = "session ";
+
+    private final InetSocketAddress address;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuf = ByteBuffer.allocate(64 * 1024);
+    private Selector selector;
+
+    private PythonServer(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * The server at {@code address} ("host:port", or just a port on the
+     * loopback interface), shared by every bot of this JVM.
+     */
+    static PythonServer at(String address) {
+        return SERVERS.computeIfAbsent(address, a -> {
+            int colon = a.lastIndexOf(':');
+            String host = colon < 0 ? "127.0.0.1" : a.substring(0, colon);
+            int port = Integer.parseInt(a.substring(colon + 1).trim());
+            return new PythonServer(new InetSocketAddress(host, port));
+        });
+    }
+
+    /** The server bridge.server names, or null if bots start Python themselves. */
+    static PythonServer configured() {
+        String address = BridgeConfig.strategyServer();
+        if (address.isEmpty()) {
+            return null;
+        }
+        try {
+            return at(address);
+        } catch (IllegalArgumentException ex) {
+            BridgeLog.warn("Bad bridge.server '" + address + "', starting Python as a child process");
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /** One bot's connection: its link and the streams under it. */
+    final class Connection {
+        final PythonLink link;
+        private final SocketChannel channel;
+        private final FeedInputStream in = new FeedInputStream();
+        private final Output out = new Output();
+        /** Bytes the socket has not taken yet, oldest first; guarded by this. */
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        private SelectionKey key;
+
+        private Connection(SocketChannel channel, boolean echo) {
+            this.channel = channel;
+            link = new PythonLink(in, out, null, null, echo);
+        }
+
+        /** Ends this bot's connection; the server keeps serving the others. */
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // closing anyway
+            }
+            in.close();
+        }
+
+        /** Bot thread: writes what it can now and queues the rest. */
+        private synchronized void send(byte[] b, int len) throws IOException {
+            ByteBuffer bb = ByteBuffer.wrap(b, 0, len);
+            if (pending.isEmpty()) {
+                channel.write(bb);
+                if (!bb.hasRemaining()) {
+                    return;
+                }
+            }
+            ByteBuffer rest = ByteBuffer.allocate(bb.remaining());
+            rest.put(bb).flip();
+            pending.add(rest);
+            if (key != null) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                selector.wakeup();
+            }
+        }
+
+        /** Selector thread: writes queued bytes until the socket is full again. */
+        private synchronized void writePending() throws IOException {
+            while (!pending.isEmpty()) {
+                ByteBuffer bb = pending.peek();
+                channel.write(bb);
+                if (bb.hasRemaining()) {
+                    return;
+                }
+                pending.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private synchronized void register() throws ClosedChannelException {
+            key = channel.register(selector,
+                    pending.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE, this);
+        }
+
+        /** Collects the bot's output and writes it on flush. */
+        private final class Output extends ByteArrayOutputStream {
+            Output() {
+                super(512);
+            }
+
+            @Override
+            public synchronized void flush() throws IOException {
+                if (count > 0) {
+                    send(buf, count);
+                    reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Connects one more bot named {@code name}, waiting up to
+     * {@code timeoutMs} for the server to accept.
+     */
+    Connection open(String name, boolean echo, long timeoutMs) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.socket().connect(address, (int) Math.max(1, timeoutMs));
+            channel.configureBlocking(false);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        Connection c = new Connection(channel, echo);
+        c.out.write((SESSION + name + "\n").getBytes(StandardCharsets.UTF_8));
+        c.out.flush();
+        startSelector();
+        tasks.add(() -> {
+            try {
+                c.register();
+            } catch (ClosedChannelException ex) {
+                c.in.close();
+            }
+        });
+        selector.wakeup();
+        return c;
+    }
+
+    // ── selector thread ──────────────────────────────────────────────
+    private synchronized void startSelector() throws IOException {
+        if (selector != null) {
+            return;
+        }
+        selector = Selector.open();
+        Thread t = new Thread(this::selectLoop, "python-server-io");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void selectLoop() {
+        try {
+            while (true) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            read(c);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            c.writePending();
+                        }
+                    } catch (IOException | CancelledKeyException ex) {
+                        if (c.channel.isOpen()) {
+                            BridgeLog.warn("Connection to the strategy server at " + this + " failed: " + ex);
+                        }
+                        c.close();
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            BridgeLog.error("Strategy server selector failed: " + ex.getMessage());
+        }
+    }
+
+    private void read(Connection c) throws IOException {
+        readBuf.clear();
+        int n = c.channel.read(readBuf);
+        if (n < 0) {
+            c.close();
+        } else if (n > 0) {
+            c.in.feed(readBuf.array(), n);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+import java.io.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Starts the Python strategy process on a background thread as soon as the
+ * bot is constructed, so interpreter start-up and the script's imports
+ * overlap with connecting to the server instead of eating into the first
+ * turns. The script announces that it has finished loading with a ready line
+ * ({"ready":true,...}); after that the transport handshake runs.
+ *
+ * The process is kept for the whole battle and reused from round to round;
+ * it is only started again if it has died. Given a {@link PythonHost}, the
+ * worker opens a session in that shared process instead of starting one of
+ * its own; with bridge.server set it connects to a long-lived
+ * {@link PythonServer} instead, and only starts Python itself if that server
+ * cannot be reached. Start-up timings are recorded for {@link #startupSummary()}.
+ *
+ * With bridge.standby (own processes only) a second process is started and
+ * taken through its ready line and handshake as soon as the first is up, and
+ * kept idle. When the process dies or stops answering, {@link #failover()}
+ * kills it and hands over to the standby within the turn, then starts the
+ * next standby behind it.
+ */
+final class PythonWorker {
+
+    private final Class<?> anchor;
+    private final File script;
+    private final boolean echo;
+    private final boolean negotiate;
+    private final PythonHost host;
+    /** Null unless bridge.server names a strategy server to connect to. */
+    private final PythonServer server;
+    private volatile PythonServer.Connection connection;
+    private volatile PythonHost.Session session;
+    private volatile BridgeMetrics metrics;
+    private volatile ReflexRules reflexes;
+    private volatile Controllers controllers;
+    private CompletableFuture<PythonLink> starting;
+    private volatile Process process;
+    private PythonLink link;
+    private final Thread shutdownHook;
+    /** bridge.standby, for a process of our own. */
+    private final boolean keepStandby;
+    private final int failoverMisses = BridgeConfig.failoverMisses();
+    /** The standby's link once it is up; guarded by this. */
+    private CompletableFuture<PythonLink> standby;
+    private volatile Process standbyProcess;
+
+    // ── start-up timings of the current process, in nanoseconds
+    private volatile long spawnNanos;
+    private volatile long readyNanos;
+    private volatile long handshakeNanos;
+    private volatile boolean announcedReady;
+    private long waitedNanos;
+    private int starts;
+
+    /**
+     * @param anchor    class whose jar directory is searched for bot_logic.py
+     *                  when it is not in the working directory
+     * @param echo      passed on to {@link PythonLink}
+     * @param negotiate offer the transport, batching and delta ticks set in BridgeConfig
+     */
+    PythonWorker(Class<?> anchor, boolean echo, boolean negotiate) {
+        this(anchor, echo, negotiate, null);
+    }
+
+    /** @param host shared process to open a session in, or null for a process of our own */
+    PythonWorker(Class<?> anchor, boolean echo, boolean negotiate, PythonHost host) {
+        this(anchor, null, echo, negotiate, host);
+    }
+
+    /** Runs {@code script} instead of looking for bot_logic.py. */
+    PythonWorker(File script, boolean echo, boolean negotiate) {
+        this(null, script, echo, negotiate, null);
+    }
+
+    private PythonWorker(Class<?> anchor, File script, boolean echo, boolean negotiate, PythonHost host) {
+        this.anchor = anchor;
+        this.script = script;
+        this.echo = echo;
+        this.negotiate = negotiate;
+        this.host = host;
+        // scripts given by path (BattleSim) always run in a process of their own
+        this.server = host == null && script == null ? PythonServer.configured() : null;
+        keepStandby = host == null && server == null && BridgeConfig.standby();
+        shutdownHook = host == null ? new Thread(this::shutdown, "python-shutdown") : null;
+        if (shutdownHook != null) {
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    /** Metrics every link of this worker records into; set before {@link #startAsync()}. */
+    void setMetrics(BridgeMetrics m) {
+        metrics = m;
+    }
+
+    /**
+     * Rules Python sends go into {@code r}; set before {@link #startAsync()}.
+     * They are cleared whenever a new process starts, which sends its own.
+     */
+    void setReflexes(ReflexRules r) {
+        reflexes = r;
+    }
+
+    /**
+     * Controllers Python starts go into {@code c}; set before {@link #startAsync()}.
+     * Like the rules they are cancelled whenever a new process starts.
+     */
+    void setControllers(Controllers c) {
+        controllers = c;
+    }
+
+    /** Starts Python in the background unless it is already starting or running. */
+    synchronized void startAsync() {
+        if (starting != null) {
+            return;
+        }
+        CompletableFuture<PythonLink> future = new CompletableFuture<>();
+        starting = future;
+        Thread t = new Thread(() -> {
+            try {
+                future.complete(start(false));
+            } catch (IOException | RuntimeException ex) {
+                future.completeExceptionally(ex);
+            }
+            if (keepStandby) {
+                startStandby();
+            }
+        }, "python-start");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Starts the standby process in the background unless there is one. */
+    private synchronized void startStandby() {
+        if (standby != null) {
+            return;
+        }
+        CompletableFuture<PythonLink> future = new CompletableFuture<>();
+        standby = future;
+        Thread t = new Thread(() -> {
+            try {
+                future.complete(start(true));
+            } catch (IOException | RuntimeException ex) {
+                BridgeLog.warn("Could not start the standby Python process: " + ex.getMessage());
+                future.completeExceptionally(ex);
+            }
+        }, "python-standby");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * True if the standby should take over from {@code l} now: its process
+     * has exited, or (batched, where every turn is answered) it has missed
+     * bridge.failoverMisses deadlines in a row. Always false without a
+     * standby; the process is then replaced at the start of the next round.
+     */
+    boolean failed(PythonLink l) {
+        if (!keepStandby) {
+            return false;
+        }
+        Process p = process;
+        return l.isClosed() || (p != null && !p.isAlive())
+                || (l.isBatched() && failoverMisses > 0 && l.missesInARow() >= failoverMisses);
+    }
+
+    /**
+     * Replaces a process that has died or hung: kills it and hands over to
+     * the standby, which has loaded the script and been through the
+     * handshake already, so only the rules it sent at start-up need
+     * installing. A new standby is then started behind it. Without a
+     * standby, or if it could not be started, a new process is started
+     * (or the server reconnected) the slow way. The time taken is recorded
+     * as the failover time.
+     */
+    PythonLink failover() throws IOException {
+        long t0 = System.nanoTime();
+        Process old = process;
+        if (old != null) {
+            old.destroyForcibly();
+        }
+        CompletableFuture<PythonLink> next;
+        synchronized (this) {
+            next = standby;
+            standby = null;
+            starting = null;
+        }
+        PythonLink l = next == null ? null : takeStandby(next);
+        boolean fromStandby = l != null;
+        if (fromStandby) {
+            process = standbyProcess;
+            standbyProcess = null;
+            if (reflexes != null) {
+                reflexes.clear();
+                l.setReflexes(reflexes);
+            }
+            if (controllers != null) {
+                controllers.clear();
+                l.setControllers(controllers);
+            }
+            l.applyDeferredControls();
+            synchronized (this) {
+                starting = CompletableFuture.completedFuture(l);
+            }
+            link = l;
+            starts++;
+            if (keepStandby) {
+                startStandby();
+            }
+        } else {
+            l = join();
+        }
+        long took = System.nanoTime() - t0;
+        if (metrics != null) {
+            metrics.failover(took);
+        }
+        BridgeLog.warn(String.format("Python replaced by %s in %.2f ms",
+                fromStandby ? "the standby" : "a new start", took / 1e6));
+        return l;
+    }
+
+    /** The standby's link, waiting for it if it is still starting; null if it failed or died. */
+    private PythonLink takeStandby(CompletableFuture<PythonLink> next) {
+        try {
+            PythonLink l = next.get(BridgeConfig.startupTimeoutMs(), TimeUnit.MILLISECONDS);
+            Process p = standbyProcess;
+            if (!l.isClosed() && p != null && p.isAlive()) {
+                return l;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            // fall through to a fresh start
+        }
+        Process p = standbyProcess;
+        if (p != null) {
+            p.destroyForcibly();
+        }
+        standbyProcess = null;
+        return null;
+    }
+
+    /**
+     * Returns the link to the running process, waiting for the background
+     * start if it has not finished yet and starting a new process if the
+     * previous one has exited.
+     */
+    PythonLink link() throws IOException {
+        long t0 = System.nanoTime();
+        PythonLink l = join();
+        Process p = process;
+        if (l.isClosed() || (connection == null && (p == null || !p.isAlive()))) {
+            BridgeLog.warn(connection != null ? "Strategy server connection is gone, reconnecting"
+                    : "Python process is gone, starting a new one");
+            l = failover();
+        }
+        waitedNanos = System.nanoTime() - t0;
+        return l;
+    }
+
+    /**
+     * Stops the process, or closes this bot's session in a shared one or its
+     * connection to the server; called when the game ends and on JVM exit.
+     */
+    void shutdown() {
+        PythonServer.Connection c = connection;
+        if (c != null) {
+            c.close();
+        }
+        if (host != null) {
+            if (session != null) {
+                session.close();
+            }
+            return;
+        }
+        Process p = process;
+        if (p != null) {
+            p.destroy();
+        }
+        Process s = standbyProcess;
+        if (s != null) {
+            s.destroy();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                // workers can come and go by the thousand (BattleSim); do not pile up hooks
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ex) {
+                // the JVM is already shutting down
+            }
+        }
+    }
+
+    /** One line describing how long the last start took and how much of it was hidden. */
+    String startupSummary() {
+        return String.format("Python start #%d: %s %.1f ms, %s %.1f ms, handshake %.1f ms; "
+                        + "bot waited %.1f ms for it",
+                starts, connection != null ? "connect to " + server : "spawn", spawnNanos / 1e6, announcedReady ? "ready after" : "no ready line within",
+                readyNanos / 1e6, handshakeNanos / 1e6, waitedNanos / 1e6);
+    }
+
+    private PythonLink join() throws IOException {
+        startAsync();
+        try {
+            link = starting.get();
+            return link;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while starting Python");
+        } catch (ExecutionException ex) {
+            synchronized (this) {
+                starting = null;
+            }
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    // ── python-start thread ──────────────────────────────────────────
+    /** @param asStandby start the standby: keep its rules, and its timings out of the summary */
+    private PythonLink start(boolean asStandby) throws IOException {
+        long t0 = System.nanoTime();
+        PythonLink l;
+        PythonServer.Connection c = server != null ? connect() : null;
+        connection = c;
+        if (host != null) {
+            session = host.open(echo);
+            process = host.process();
+            l = session.link;
+        } else if (c != null) {
+            process = null;
+            l = c.link;
+        } else {
+            // Use -u for unbuffered stdout so we receive events immediately
+            File file = script != null ? script : locateScript(anchor);
+            Process p = new ProcessBuilder("python", "-u", file.getAbsolutePath()).start();
+            if (asStandby) {
+                standbyProcess = p;
+            } else {
+                process = p;
+            }
+            l = new PythonLink(p, echo);
+        }
+        long t1 = System.nanoTime();
+
+        if (metrics != null) {
+            l.setMetrics(metrics);
+        }
+        if (asStandby) {
+            l.deferControls();
+        } else if (reflexes != null) {
+            reflexes.clear();
+            l.setReflexes(reflexes);
+        }
+        if (controllers != null && !asStandby) {
+            controllers.clear();
+            l.setControllers(controllers);
+        }
+        l.setQuietPeriodMicros(BridgeConfig.replyQuietMicros());
+        l.setMaxReplyLag(BridgeConfig.maxReplyLagTurns());
+        announcedReady = l.awaitReady(BridgeConfig.startupTimeoutMs());
+        long t2 = System.nanoTime();
+
+        String transport = BridgeConfig.transport().toLowerCase();
+        boolean batch = BridgeConfig.batch();
+        boolean delta = BridgeConfig.tickDelta();
+        if (negotiate && (!BinaryProtocol.PROTOCOL_JSON.equals(transport) || batch || delta)
+                && !l.negotiate(transport, batch, delta, BridgeConfig.handshakeTimeoutMs())) {
+            BridgeLog.warn("Python did not accept the requested transport, using "
+                    + l.transport() + (l.isBatched() ? " batches" : "")
+                    + (l.isTickDelta() ? " with delta ticks" : ""));
+        }
+        l.startReader();
+        long t3 = System.nanoTime();
+
+        if (!asStandby) {
+            starts++;
+            spawnNanos = t1 - t0;
+            readyNanos = t2 - t1;
+            handshakeNanos = t3 - t2;
+        }
+        return l;
+    }
+
+    /**
+     * Opens this bot's connection to the server, or returns null if it
+     * cannot be reached. The session is named as bridge.session says.
+     */
+    private PythonServer.Connection connect() {
+        String name = sessionName(BridgeConfig.session(), metrics != null ? metrics.name : "bot");
+        try {
+            return server.open(name, echo, BridgeConfig.startupTimeoutMs());
+        } catch (IOException ex) {
+            BridgeLog.warn("Cannot reach the strategy server at " + server + " (" + ex.getMessage()
+                    + "), starting Python as a child process");
+            return null;
+        }
+    }
+
+    /** {@code pattern} with %b replaced by {@code bot} and %p by this JVM's process id, as one word. */
+    static String sessionName(String pattern, String bot) {
+        String name = pattern.replace("%b", bot)
+                .replace("%p", Long.toString(ProcessHandle.current().pid()));
+        return name.isBlank() ? bot : name.trim().replaceAll("\\s+", "_");
+    }
+
+    /** Finds bot_logic.py in the working directory or next to {@code anchor}'s jar. */
+    static File locateScript(Class<?> anchor) throws IOException {
+        File script = new File("bot_logic.py");
+        if (!script.isFile()) {
+            // When executed from another directory, fall back to the jar location
+            File jar = new File(anchor.getProtectionDomain().getCodeSource().getLocation().getPath());
+            script = new File(jar.getParentFile(), "bot_logic.py");
+        }
+        if (!script.isFile()) {
+            throw new IOException("Cannot locate bot_logic.py");
+        }
+        return script;
+    }
+}
@@ -0,0 +1,326 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reactions that Python hands to the Java side so they happen in the same
+ * turn as the event, without waiting for a round trip. Python sends a rule
+ * like any command, at start-up or whenever it likes:
+ *
+ *   rule <name> <event> [if <field> <op> <number> [and ...]] => <command> [<arg>] [; ...]
+ *   rule <name> off        removes one rule
+ *   rule * off             removes all of them
+ *
+ * for example {@code rule gun scanned if distance < 300 and my.gunHeat == 0 => fire 2}.
+ * The event and command names are those of EventType and
+ * BinaryProtocol.COMMAND_NAMES; the fields are the event's own, {@code my.*}
+ * for the fields of the bot's latest tick, and {@code distance} from the bot
+ * to events that have x and y. The operators are {@code < <= > >= == !=};
+ * words are separated by spaces.
+ * A rule with the name of an existing one replaces it. On the binary
+ * transports the rule text travels in a {@link BinaryProtocol#CMD_CONTROL} frame.
+ *
+ * Rules are compiled on the reader thread and published as an immutable
+ * array; matching them on the bot thread reads only primitive fields and
+ * allocates nothing. Commands a rule issues go to the handler given to
+ * {@link #onEvent} (the bot's CommandSlots) ahead of Python's reply to the
+ * same events, so under the default merge policy Python's commands win
+ * where both set the same actuator.
+ */
+final class ReflexRules {
+
+    static final String PREFIX = "rule ";
+    private static final byte[] PREFIX_BYTES = PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final String SELF_PREFIX = "my.";
+    private static final String DISTANCE = "distance";
+
+    // ── field sources, in the top bits of a field code
+    private static final int INT_FIELD = 1 << 8;
+    private static final int DOUBLE_FIELD = 2 << 8;
+    private static final int SELF_FIELD = 3 << 8;
+    private static final int DISTANCE_FIELD = 4 << 8;
+
+    private static final int LT = 0;
+    private static final int LE = 1;
+    private static final int GT = 2;
+    private static final int GE = 3;
+    private static final int EQ = 4;
+    private static final int NE = 5;
+    private static final List<String> OPERATORS = Arrays.asList("<", "<=", ">", ">=", "==", "!=");
+
+    private static final Rule[] NONE = new Rule[0];
+
+    private static final class Rule {
+        final String name;
+        final EventType type;
+        final int[] fields;
+        final int[] operators;
+        final double[] values;
+        final int[] opcodes;
+        final double[] args;
+
+        Rule(String name, EventType type, int[] fields, int[] operators, double[] values,
+             int[] opcodes, double[] args) {
+            this.name = name;
+            this.type = type;
+            this.fields = fields;
+            this.operators = operators;
+            this.values = values;
+            this.opcodes = opcodes;
+            this.args = args;
+        }
+    }
+
+    private volatile Rule[] rules = NONE;
+    /** Doubles of the last TICK seen, for my.* fields; bot thread only. */
+    private final double[] self = new double[EventType.TICK.doubleFields.length];
+    private final int selfX = indexOf(EventType.TICK.doubleFields, "x");
+    private final int selfY = indexOf(EventType.TICK.doubleFields, "y");
+
+    /** True if the line {@code b[off, off + len)} is a rule rather than a command. */
+    static boolean isRule(byte[] b, int off, int len) {
+        if (len < PREFIX_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < PREFIX_BYTES.length; i++) {
+            if (b[off + i] != PREFIX_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds, replaces or removes a rule as {@code text} says. Returns null
+     * on success, otherwise why the text was rejected (the rules are then
+     * left as they were). Plain string handling only: this runs on the
+     * reader thread, often at start-up while everything is still cold.
+     */
+    synchronized String define(String text) {
+        List<String> words = words(text);
+        if (words.size() < 3 || !words.get(0).equals(PREFIX.trim())) {
+            return "expected: rule <name> <event> [if <condition>] => <command>";
+        }
+        String name = words.get(1);
+        if (words.size() == 3 && words.get(2).equals("off")) {
+            remove(name);
+            return null;
+        }
+        int arrow = words.indexOf("=>");
+        if (arrow < 3 || arrow == words.size() - 1 || name.equals("*")) {
+            return "expected: rule <name> <event> [if <condition>] => <command>";
+        }
+        EventType type = eventType(words.get(2));
+        if (type == null) {
+            return "unknown event " + words.get(2);
+        }
+
+        int clauses = arrow == 3 ? 0 : (arrow - 3) / 4;
+        if (arrow > 3 && (!words.get(3).equals("if") || (arrow - 3) % 4 != 0)) {
+            return "expected: if <field> <op> <number> [and ...]";
+        }
+        int[] fields = new int[clauses];
+        int[] operators = new int[clauses];
+        double[] values = new double[clauses];
+        for (int i = 0; i < clauses; i++) {
+            int w = 4 + 4 * i;
+            if (i > 0 && !words.get(w - 1).equals("and")) {
+                return "expected 'and' before " + words.get(w);
+            }
+            fields[i] = field(type, words.get(w));
+            if (fields[i] < 0) {
+                return type.jsonName + " has no field " + words.get(w);
+            }
+            operators[i] = OPERATORS.indexOf(words.get(w + 1));
+            if (operators[i] < 0) {
+                return "unknown operator " + words.get(w + 1);
+            }
+            try {
+                values[i] = Double.parseDouble(words.get(w + 2));
+            } catch (NumberFormatException ex) {
+                return "bad number " + words.get(w + 2);
+            }
+        }
+
+        List<String> actions = words.subList(arrow + 1, words.size());
+        int commands = 1 + Collections.frequency(actions, ";");
+        int[] opcodes = new int[commands];
+        double[] args = new double[commands];
+        int c = 0;
+        for (int w = 0; w < actions.size(); w++) {
+            opcodes[c] = Arrays.asList(BinaryProtocol.COMMAND_NAMES).indexOf(actions.get(w));
+            if (opcodes[c] <= 0) {
+                return "unknown command " + actions.get(w);
+            }
+            if (w + 1 < actions.size() && !actions.get(w + 1).equals(";")) {
+                w++;
+                try {
+                    args[c] = Double.parseDouble(actions.get(w));
+                } catch (NumberFormatException ex) {
+                    return "bad number " + actions.get(w);
+                }
+            }
+            if (w + 1 < actions.size() && !actions.get(++w).equals(";")) {
+                return "expected ';' before " + actions.get(w);
+            }
+            c++;
+        }
+        if (c != commands) {
+            return "missing command after ';'";
+        }
+
+        remove(name);
+        Rule[] next = Arrays.copyOf(rules, rules.length + 1);
+        next[next.length - 1] = new Rule(name, type, fields, operators, values, opcodes, args);
+        rules = next;
+        return null;
+    }
+
+    /** Drops every rule, e.g. when a new Python process starts and will send its own. */
+    synchronized void clear() {
+        rules = NONE;
+    }
+
+    int size() {
+        return rules.length;
+    }
+
+    /** Runs the rules against the event just added to {@code q}. */
+    int onQueued(EventQueue q, PythonLink.CommandHandler handler) {
+        return onEvent(q.get(q.size() - 1), handler);
+    }
+
+    /**
+     * Issues the commands of every rule for {@code e}'s type whose conditions
+     * all hold. Returns the number of rules that fired.
+     */
+    int onEvent(BridgeEvent e, PythonLink.CommandHandler handler) {
+        if (e.type == EventType.TICK) {
+            System.arraycopy(e.doubles, 0, self, 0, self.length);
+        }
+        Rule[] current = rules;
+        int count = 0;
+        for (Rule r : current) {
+            if (r.type == e.type && matches(r, e)) {
+                for (int i = 0; i < r.opcodes.length; i++) {
+                    handler.onCommand(r.opcodes[i], r.args[i], r.args[i], r.args[i]);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean matches(Rule r, BridgeEvent e) {
+        for (int i = 0; i < r.fields.length; i++) {
+            double v = value(r.fields[i], e);
+            double limit = r.values[i];
+            boolean ok;
+            switch (r.operators[i]) {
+                case LT:
+                    ok = v < limit;
+                    break;
+                case LE:
+                    ok = v <= limit;
+                    break;
+                case GT:
+                    ok = v > limit;
+                    break;
+                case GE:
+                    ok = v >= limit;
+                    break;
+                case EQ:
+                    ok = v == limit;
+                    break;
+                default:
+                    ok = v != limit;
+                    break;
+            }
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double value(int field, BridgeEvent e) {
+        int index = field & 0xFF;
+        switch (field & ~0xFF) {
+            case INT_FIELD:
+                return e.ints[index];
+            case DOUBLE_FIELD:
+                return e.doubles[index];
+            case SELF_FIELD:
+                return self[index];
+            default:
+                // DISTANCE_FIELD: index holds the event's x; y follows it
+                return Math.hypot(e.doubles[index] - self[selfX], e.doubles[index + 1] - self[selfY]);
+        }
+    }
+
+    private void remove(String name) {
+        if (name.equals("*")) {
+            rules = NONE;
+            return;
+        }
+        List<Rule> kept = new ArrayList<>(Arrays.asList(rules));
+        kept.removeIf(r -> r.name.equals(name));
+        rules = kept.toArray(NONE);
+    }
+
+    /** Splits on whitespace; ';' is a word of its own even without spaces around it. */
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char ch = i < text.length() ? text.charAt(i) : ' ';
+            boolean separator = Character.isWhitespace(ch) || ch == ';';
+            if (separator && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+            if (ch == ';') {
+                words.add(";");
+            } else if (!separator && start < 0) {
+                start = i;
+            }
+        }
+        return words;
+    }
+
+    private static EventType eventType(String name) {
+        for (EventType t : EventType.values()) {
+            if (t.jsonName.equals(name) && !t.sparse) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /** Code of {@code name} for events of {@code type}, or -1 if there is no such field. */
+    private static int field(EventType type, String name) {
+        if (name.startsWith(SELF_PREFIX)) {
+            int i = indexOf(EventType.TICK.doubleFields, name.substring(SELF_PREFIX.length()));
+            return i < 0 ? -1 : SELF_FIELD | i;
+        }
+        int i = indexOf(type.intFields, name);
+        if (i >= 0) {
+            return INT_FIELD | i;
+        }
+        i = indexOf(type.doubleFields, name);
+        if (i >= 0) {
+            return DOUBLE_FIELD | i;
+        }
+        int x = indexOf(type.doubleFields, "x");
+        if (name.equals(DISTANCE) && x >= 0 && indexOf(type.doubleFields, "y") == x + 1) {
+            return DISTANCE_FIELD | x;
+        }
+        return -1;
+    }
+
+    private static int indexOf(String[] names, String name) {
+        return Arrays.asList(names).indexOf(name);
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Two single-producer/single-consumer byte rings in a memory-mapped file,
+ * shared with the Python process (which maps the same file with mmap). The
+ * binary frames of {@link BinaryProtocol} travel through the rings instead
+ * of the stdin/stdout pipes, so a turn's round trip costs no system calls.
+ *
+ * File layout (little-endian, positions are ever-increasing byte counts):
+ *
+ *   0    magic:int32  version:int32  ringBytes:int32
+ *   64   to-Python   head:int64    (written by Python)
+ *   128  to-Python   tail:int64    (written by Java)
+ *   192  from-Python head:int64    (written by Java)
+ *   256  from-Python tail:int64    (written by Python)
+ *   320  to-Python data   [ringBytes]
+ *   …    from-Python data [ringBytes]
+ *
+ * A producer copies its bytes first and then publishes the new tail with a
+ * release store; the consumer reads the tail with an acquire load. Both
+ * sides wait by spinning first, then yielding, then parking for short
+ * intervals, since no wake-up can cross the process boundary. Must match
+ * SharedRing in bridge_protocol.py.
+ */
+final class SharedMemoryChannel implements Closeable {
+
+    static final int MAGIC = 0x52424352; // "RCBR"
+    static final int HEADER_BYTES = 320;
+
+    private static final int TO_PY_HEAD = 64;
+    private static final int TO_PY_TAIL = 128;
+    private static final int FROM_PY_HEAD = 192;
+    private static final int FROM_PY_TAIL = 256;
+
+    private static final VarHandle LONG =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer map;
+    private final int ringBytes;
+    private final int spinTries;
+    private final long parkNanos;
+    private volatile Process peer;
+    private volatile boolean peerClosed;
+    private final RingOutputStream output;
+    private final RingInputStream input;
+
+    /**
+     * Creates and maps {@code file} with two rings of {@code ringBytes}
+     * (rounded up to a power of two) each.
+     */
+    SharedMemoryChannel(File file, int ringBytes, int spinTries, long parkMicros) throws IOException {
+        this.file = file;
+        this.ringBytes = Integer.highestOneBit(Math.max(1024, ringBytes) - 1) << 1;
+        // spinning only pays off when the other process can run meanwhile
+        this.spinTries = Runtime.getRuntime().availableProcessors() > 1 ? spinTries : 0;
+        this.parkNanos = Math.max(1, parkMicros) * 1_000L;
+        raf = new RandomAccessFile(file, "rw");
+        long size = HEADER_BYTES + 2L * this.ringBytes;
+        raf.setLength(size);
+        map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < HEADER_BYTES; i++) {
+            map.put(i, (byte) 0);
+        }
+        map.putInt(4, BinaryProtocol.VERSION);
+        map.putInt(8, this.ringBytes);
+        map.putInt(0, MAGIC);
+        output = new RingOutputStream(HEADER_BYTES);
+        input = new RingInputStream(HEADER_BYTES + this.ringBytes);
+    }
+
+    /** Creates a channel in a fresh temporary file that is deleted on exit. */
+    static SharedMemoryChannel createTemp(int ringBytes, int spinTries, long parkMicros) throws IOException {
+        File f = File.createTempFile("robocode-bridge-", ".shm");
+        f.deleteOnExit();
+        return new SharedMemoryChannel(f, ringBytes, spinTries, parkMicros);
+    }
+
+    File file() {
+        return file;
+    }
+
+    int ringBytes() {
+        return ringBytes;
+    }
+
+    /** Lets a blocked reader notice that the Python process has exited. */
+    void setPeer(Process process) {
+        peer = process;
+    }
+
+    /**
+     * Tells a blocked reader that Python has gone: its stdout or socket has
+     * reached its end. The only sign there is of a strategy server's death,
+     * which has no Process to watch.
+     */
+    void peerClosed() {
+        peerClosed = true;
+    }
+
+    OutputStream output() {
+        return output;
+    }
+
+    InputStream input() {
+        return input;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+        file.delete();
+    }
+
+    /** Waits one step: spin, then yield, then park. Returns the next attempt. */
+    private int idle(int attempt) {
+        if (attempt < spinTries) {
+            Thread.onSpinWait();
+        } else if (attempt < spinTries + 64) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+        }
+        return attempt + 1;
+    }
+
+    private boolean peerGone() {
+        Process p = peer;
+        return peerClosed || p != null && !p.isAlive();
+    }
+
+    // ── Java → Python ring ───────────────────────────────────────────
+    private final class RingOutputStream extends OutputStream {
+        private final ByteBuffer data;
+        private long tail;
+
+        RingOutputStream(int dataOffset) {
+            data = slice(dataOffset);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] src, int off, int len) throws IOException {
+            while (len > 0) {
+                long free = ringBytes - (tail - (long) LONG.getAcquire(map, TO_PY_HEAD));
+                if (free == 0) {
+                    flush();
+                    int attempt = 0;
+                    while (ringBytes - (tail - (long) LONG.getAcquire(map, TO_PY_HEAD)) == 0) {
+                        if (peerGone()) {
+                            throw new IOException("Python exited");
+                        }
+                        attempt = idle(attempt);
+                    }
+                    continue;
+                }
+                int at = (int) tail & (ringBytes - 1);
+                int n = (int) Math.min(Math.min(free, len), ringBytes - at);
+                data.position(at);
+                data.put(src, off, n);
+                tail += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /** Publishes everything written so far. */
+        @Override
+        public void flush() {
+            LONG.setRelease(map, TO_PY_TAIL, tail);
+        }
+    }
+
+    // ── Python → Java ring ───────────────────────────────────────────
+    private final class RingInputStream extends InputStream {
+        private final ByteBuffer data;
+        private long head;
+
+        RingInputStream(int dataOffset) {
+            data = slice(dataOffset);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int available() {
+            return (int) ((long) LONG.getAcquire(map, FROM_PY_TAIL) - head);
+        }
+
+        /** Blocks until at least one byte is available, spinning before parking. */
+        @Override
+        public int read(byte[] dst, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long tail = (long) LONG.getAcquire(map, FROM_PY_TAIL);
+            int attempt = 0;
+            while (tail == head) {
+                if (attempt > spinTries && peerGone()) {
+                    return -1;
+                }
+                attempt = idle(attempt);
+                tail = (long) LONG.getAcquire(map, FROM_PY_TAIL);
+            }
+            int at = (int) head & (ringBytes - 1);
+            int n = (int) Math.min(Math.min(tail - head, len), ringBytes - at);
+            data.position(at);
+            data.get(dst, off, n);
+            head += n;
+            LONG.setRelease(map, FROM_PY_HEAD, head);
+            return n;
+        }
+    }
+
+    private ByteBuffer slice(int offset) {
+        ByteBuffer dup = map.duplicate();
+        dup.position(offset).limit(offset + ringBytes);
+        return dup.slice();
+    }
+}
@@ -0,0 +1,372 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One battle of {@link BattleSim}: a few rounds between bots whose
+ * strategies each run in a Python process of their own, with simplified
+ * Tank Royale physics standing in for the server. Every turn each bot's
+ * events go through the same {@link TurnExchange} as PythonBridgeBot's,
+ * and the commands coming back steer its {@link SimBot}.
+ *
+ * The rules kept are the ones strategies react to: acceleration 1 and
+ * braking 2 up to speed 8, body turn rate 10 - 0.75·|speed|, gun 20 and
+ * radar 45 degrees per turn (each carried along by the one below it),
+ * gun heat 1 + power/5 cooling by 0.1, bullet speed 20 - 3·power and
+ * damage 4·power (+2·(power - 1) above 1), wall damage |speed|/2 - 1, and a
+ * radar that sees what its arc swept this turn within 1200 units. Bots do
+ * not collide with each other and there is no inactivity penalty.
+ *
+ * Turns follow each other as fast as the bots answer, unless a turn period
+ * is given: then each turn lasts at least that long, as on a server, which
+ * is what pipelined bots (bridge.pipeline) use to think. With
+ * bridge.standby a bot whose Python dies or hangs is handed to its standby
+ * process within the turn, as PythonBridgeBot does.
+ */
+final class SimBattle {
+
+    private static final double COOLING_RATE = 0.1;
+    private static final double RADAR_RANGE = 1200;
+
+    /** Outcome of a battle. */
+    static final class Result {
+        final int[] wins;
+        int draws;
+        int rounds;
+        long turns;
+        long deadlineMisses;
+        int failovers;
+
+        Result(int bots) {
+            wins = new int[bots];
+        }
+    }
+
+    private static final class Bullet {
+        final SimBot owner;
+        final double power;
+        final double direction;
+        final double dx;
+        final double dy;
+        double x;
+        double y;
+
+        Bullet(SimBot owner, double power) {
+            this.owner = owner;
+            this.power = power;
+            direction = owner.gunDirection;
+            double speed = 20 - 3 * power;
+            dx = Math.cos(Math.toRadians(direction)) * speed;
+            dy = Math.sin(Math.toRadians(direction)) * speed;
+            x = owner.x;
+            y = owner.y;
+        }
+    }
+
+    private final SimBot[] bots;
+    private final int rounds;
+    private final int maxTurns;
+    private final double width;
+    private final double height;
+    private final int turnTimeoutMicros;
+    private final long turnPeriodNanos;
+    private final SplittableRandom random;
+    private final List<Bullet> bullets = new ArrayList<>();
+    private final double[] sweepFrom;
+    private final double[] sweep;
+    /** Bots taking part in this turn's exchange. */
+    private final boolean[] active;
+
+    SimBattle(File[] scripts, int rounds, int maxTurns, double width, double height,
+              int turnTimeoutMicros, int turnPeriodMicros, long seed) {
+        bots = new SimBot[scripts.length];
+        for (int i = 0; i < scripts.length; i++) {
+            bots[i] = new SimBot(i + 1, scripts[i].getName(), new PythonWorker(scripts[i], false, true));
+        }
+        this.rounds = rounds;
+        this.maxTurns = maxTurns;
+        this.width = width;
+        this.height = height;
+        this.turnTimeoutMicros = turnTimeoutMicros;
+        this.turnPeriodNanos = turnPeriodMicros * 1_000L;
+        random = new SplittableRandom(seed);
+        sweepFrom = new double[bots.length];
+        sweep = new double[bots.length];
+        active = new boolean[bots.length];
+    }
+
+    Result run() throws IOException {
+        Result result = new Result(bots.length);
+        try {
+            for (SimBot b : bots) {
+                b.exchange.python.startAsync();
+            }
+            for (int round = 1; round <= rounds; round++) {
+                SimBot winner = playRound(round, result);
+                result.rounds++;
+                if (winner == null) {
+                    result.draws++;
+                } else {
+                    result.wins[winner.id - 1]++;
+                }
+            }
+            for (SimBot b : bots) {
+                result.deadlineMisses += b.exchange.deadlineMisses();
+                result.failovers += b.exchange.failovers();
+            }
+        } finally {
+            for (SimBot b : bots) {
+                b.exchange.python.shutdown();
+            }
+        }
+        return result;
+    }
+
+    // ── rounds and turns ─────────────────────────────────────────────
+    private SimBot playRound(int round, Result result) throws IOException {
+        bullets.clear();
+        for (int i = 0; i < bots.length; i++) {
+            SimBot b = bots[i];
+            place(b, i);
+            b.exchange.startRound(round);
+            sweepFrom[i] = b.radarDirection;
+            sweep[i] = 0;
+        }
+        int alive = bots.length;
+        int turn = 0;
+        SimBot winner = null;
+        long turnStart = System.nanoTime();
+        while (alive > 1) {
+            turn++;
+            step(turn);
+            alive = 0;
+            for (SimBot b : bots) {
+                if (b.alive) {
+                    b.tick(turn);
+                    alive++;
+                }
+            }
+            if (alive <= 1 || turn == maxTurns) {
+                for (SimBot b : bots) {
+                    if (b.alive && alive == 1) {
+                        winner = b;
+                        BridgeEvents.wonRound(b.exchange.events, turn);
+                    }
+                    BridgeEvents.roundEnded(b.exchange.events);
+                }
+                alive = 0;
+            }
+            exchange(turn);
+            result.turns++;
+            if (turnPeriodNanos > 0) {
+                turnStart += turnPeriodNanos;
+                long wait;
+                while ((wait = turnStart - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+        return winner;
+    }
+
+    private void place(SimBot b, int index) {
+        double x;
+        double y;
+        boolean clear;
+        do {
+            x = SimBot.RADIUS + random.nextDouble() * (width - 2 * SimBot.RADIUS);
+            y = SimBot.RADIUS + random.nextDouble() * (height - 2 * SimBot.RADIUS);
+            clear = true;
+            for (int i = 0; i < index; i++) {
+                if (Math.hypot(bots[i].x - x, bots[i].y - y) < 4 * SimBot.RADIUS) {
+                    clear = false;
+                }
+            }
+        } while (!clear);
+        b.reset(x, y, random.nextDouble() * 360);
+    }
+
+    /**
+     * Sends this turn's events and applies the replies through each bot's
+     * TurnExchange, as PythonBridgeBot's flushEvents does, except that all
+     * bots send before any waits, as they would in separate processes.
+     * Bots that were already dead have nothing to send and are left alone,
+     * as the server stops sending them turns.
+     */
+    private void exchange(int turn) throws IOException {
+        long deadline = PythonLink.turnDeadline(turnTimeoutMicros, turnTimeoutMicros);
+        for (int i = 0; i < bots.length; i++) {
+            SimBot b = bots[i];
+            active[i] = b.alive || !b.exchange.events.isEmpty();
+            if (!active[i]) {
+                continue;
+            }
+            if (b.alive) {
+                b.exchange.control(turn, b.x, b.y, b.direction, b.gunDirection, b.radarDirection, b.gunHeat);
+            }
+            b.exchange.send(turn, deadline, turnTimeoutMicros * 1_000L);
+        }
+        for (int i = 0; i < bots.length; i++) {
+            if (active[i]) {
+                bots[i].exchange.receive(deadline);
+                bots[i].exchange.apply(bots[i]);
+            }
+        }
+    }
+
+    // ── physics ──────────────────────────────────────────────────────
+    private void step(int turn) {
+        for (int i = 0; i < bots.length; i++) {
+            SimBot b = bots[i];
+            if (!b.alive) {
+                continue;
+            }
+            fire(b);
+            turn(b, i);
+            move(b);
+        }
+        moveBullets();
+        for (int i = 0; i < bots.length; i++) {
+            if (bots[i].alive) {
+                scan(bots[i], i, turn);
+            }
+        }
+        for (SimBot b : bots) {
+            if (b.alive && b.energy <= 0) {
+                b.alive = false;
+                BridgeEvents.death(b.exchange.events);
+                for (SimBot other : bots) {
+                    if (other != b && other.alive) {
+                        other.exchange.opponentDeath(b.id);
+                    }
+                }
+            }
+        }
+    }
+
+    private void fire(SimBot b) {
+        b.gunHeat = Math.max(0, b.gunHeat - COOLING_RATE);
+        double power = Math.min(3, Math.min(b.firePower, b.energy));
+        b.firePower = 0;
+        if (power >= 0.1 && b.gunHeat == 0) {
+            bullets.add(new Bullet(b, power));
+            b.gunHeat = 1 + power / 5;
+            b.energy -= power;
+        }
+    }
+
+    private void turn(SimBot b, int i) {
+        double maxTurn = 10 - 0.75 * Math.abs(b.speed);
+        double body = clamp(b.turnLeft, maxTurn);
+        double gun = clamp(b.gunTurnLeft, SimBot.MAX_GUN_TURN);
+        double radar = clamp(b.radarTurnLeft, SimBot.MAX_RADAR_TURN);
+        b.turnLeft -= body;
+        b.gunTurnLeft -= gun;
+        b.radarTurnLeft -= radar;
+        b.direction = SimBot.normalAbsolute(b.direction + body);
+        b.gunDirection = SimBot.normalAbsolute(b.gunDirection + body + gun);
+        if (body + gun + radar != 0 || !b.rescan) {
+            sweepFrom[i] = b.radarDirection;
+            sweep[i] = body + gun + radar;
+        }
+        b.radarDirection = SimBot.normalAbsolute(b.radarDirection + body + gun + radar);
+    }
+
+    private void move(SimBot b) {
+        double target = clamp(b.distanceLeft, SimBot.MAX_SPEED);
+        double diff = target - b.speed;
+        boolean accelerating = b.speed * target >= 0 && Math.abs(target) > Math.abs(b.speed);
+        b.speed += clamp(diff, accelerating ? 1 : 2);
+        b.x += Math.cos(Math.toRadians(b.direction)) * b.speed;
+        b.y += Math.sin(Math.toRadians(b.direction)) * b.speed;
+        double left = b.distanceLeft - b.speed;
+        b.distanceLeft = left * b.distanceLeft <= 0 ? 0 : left;
+
+        double x = Math.max(SimBot.RADIUS, Math.min(width - SimBot.RADIUS, b.x));
+        double y = Math.max(SimBot.RADIUS, Math.min(height - SimBot.RADIUS, b.y));
+        if (x != b.x || y != b.y) {
+            b.energy -= Math.max(0, Math.abs(b.speed) / 2 - 1);
+            b.x = x;
+            b.y = y;
+            b.speed = 0;
+            b.distanceLeft = 0;
+            BridgeEvents.hitWall(b.exchange.events);
+        }
+    }
+
+    private void moveBullets() {
+        for (int k = bullets.size() - 1; k >= 0; k--) {
+            Bullet bullet = bullets.get(k);
+            double x0 = bullet.x;
+            double y0 = bullet.y;
+            bullet.x += bullet.dx;
+            bullet.y += bullet.dy;
+            SimBot victim = null;
+            for (SimBot b : bots) {
+                if (b != bullet.owner && b.alive
+                        && distanceToSegment(b.x, b.y, x0, y0, bullet.x, bullet.y) <= SimBot.RADIUS) {
+                    victim = b;
+                    break;
+                }
+            }
+            if (victim != null) {
+                double damage = 4 * bullet.power + Math.max(0, 2 * (bullet.power - 1));
+                victim.energy -= damage;
+                victim.exchange.hitByBullet(bullet.owner.id, bullet.power, damage, bullet.direction);
+                if (bullet.owner.alive) {
+                    bullet.owner.energy += 3 * bullet.power;
+                    bullet.owner.exchange.bulletHitBot(victim.id, damage);
+                }
+                bullets.remove(k);
+            } else if (bullet.x < 0 || bullet.y < 0 || bullet.x > width || bullet.y > height) {
+                if (bullet.owner.alive) {
+                    BridgeEvents.bulletHitWall(bullet.owner.exchange.events);
+                }
+                bullets.remove(k);
+            }
+        }
+    }
+
+    /** Reports every bot inside the arc the radar swept this turn (or last turn, on rescan). */
+    private void scan(SimBot b, int i, int turn) {
+        double arc = sweep[i];
+        if (arc == 0 && !b.rescan) {
+            return;
+        }
+        b.rescan = false;
+        for (SimBot other : bots) {
+            if (other == b || !other.alive) {
+                continue;
+            }
+            double dx = other.x - b.x;
+            double dy = other.y - b.y;
+            double distance = Math.hypot(dx, dy);
+            if (distance > RADAR_RANGE) {
+                continue;
+            }
+            double halfWidth = Math.toDegrees(Math.asin(Math.min(1, SimBot.RADIUS / distance)));
+            double bearing = SimBot.normalRelative(Math.toDegrees(Math.atan2(dy, dx)) - sweepFrom[i]);
+            if (arc < 0) {
+                bearing = -bearing;
+            }
+            if (Math.abs(arc) >= 360 || (bearing + halfWidth >= 0 && bearing - halfWidth <= Math.abs(arc))) {
+                b.scanned(other, turn);
+            }
+        }
+    }
+
+    private static double clamp(double v, double limit) {
+        return Math.max(-limit, Math.min(limit, v));
+    }
+
+    private static double distanceToSegment(double px, double py, double x0, double y0, double x1, double y1) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 == 0 ? 0 : Math.max(0, Math.min(1, ((px - x0) * dx + (py - y0) * dy) / len2));
+        return Math.hypot(px - (x0 + t * dx), py - (y0 + t * dy));
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * One tank in a {@link SimBattle}: its body, the orders Python gave it and
+ * its {@link TurnExchange} with its strategy process. Commands arrive through
+ * {@link #onCommand} exactly as PythonBridgeBot receives them and are kept
+ * as remaining distances and angles, the way the Bot API's set* calls work.
+ *
+ * Angles are in degrees, counter-clockwise from east, with y pointing up,
+ * as in Tank Royale.
+ */
+final class SimBot implements PythonLink.CommandHandler {
+
+    static final double RADIUS = 18;
+    static final double MAX_SPEED = 8;
+    static final double MAX_GUN_TURN = 20;
+    static final double MAX_RADAR_TURN = 45;
+
+    final int id;
+    final String name;
+    final TurnExchange exchange;
+
+    // ── body
+    double x;
+    double y;
+    double direction;
+    double gunDirection;
+    double radarDirection;
+    double speed;
+    double energy;
+    double gunHeat;
+    boolean alive;
+
+    // ── orders still to carry out
+    double distanceLeft;
+    double turnLeft;
+    double gunTurnLeft;
+    double radarTurnLeft;
+    double firePower;
+    boolean rescan;
+
+    SimBot(int id, String name, PythonWorker python) {
+        this.id = id;
+        this.name = name;
+        exchange = new TurnExchange(python, new BridgeMetrics("SimBot-" + id), null);
+    }
+
+    void reset(double x, double y, double direction) {
+        this.x = x;
+        this.y = y;
+        this.direction = direction;
+        gunDirection = direction;
+        radarDirection = direction;
+        speed = 0;
+        energy = 100;
+        gunHeat = 3;
+        alive = true;
+        distanceLeft = 0;
+        turnLeft = 0;
+        gunTurnLeft = 0;
+        radarTurnLeft = 0;
+        firePower = 0;
+        rescan = false;
+    }
+
+    @Override
+    public void onCommand(int opcode, double power, double distance, double angle) {
+        switch (opcode) {
+            case BinaryProtocol.CMD_FIRE:
+                firePower = power;
+                break;
+            case BinaryProtocol.CMD_FORWARD:
+                distanceLeft = distance;
+                break;
+            case BinaryProtocol.CMD_BACK:
+                distanceLeft = -distance;
+                break;
+            case BinaryProtocol.CMD_TURN_LEFT:
+                turnLeft = angle;
+                break;
+            case BinaryProtocol.CMD_TURN_RIGHT:
+                turnLeft = -angle;
+                break;
+            case BinaryProtocol.CMD_TURN_GUN_LEFT:
+                gunTurnLeft = angle;
+                break;
+            case BinaryProtocol.CMD_TURN_GUN_RIGHT:
+                gunTurnLeft = -angle;
+                break;
+            case BinaryProtocol.CMD_TURN_RADAR_LEFT:
+                radarTurnLeft = angle;
+                break;
+            case BinaryProtocol.CMD_TURN_RADAR_RIGHT:
+                radarTurnLeft = -angle;
+                break;
+            case BinaryProtocol.CMD_RESCAN:
+                rescan = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Queues this turn's tick with the state after movement. */
+    void tick(int turn) {
+        BridgeEvents.tick(exchange.events, turn, energy, x, y, direction, gunDirection, radarDirection, gunHeat,
+                speed);
+    }
+
+    /** Queues a scan of {@code other}, as an ENEMY summary if Python asked for them. */
+    void scanned(SimBot other, int turn) {
+        exchange.scanned(turn, other.id, other.energy, other.x, other.y, other.direction, other.speed,
+                x, y, direction);
+    }
+
+    static double normalAbsolute(double angle) {
+        angle %= 360;
+        return angle < 0 ? angle + 360 : angle;
+    }
+
+    static double normalRelative(double angle) {
+        angle = normalAbsolute(angle);
+        return angle > 180 ? angle - 360 : angle;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Turns TICK events into TICK_DELTA events carrying only the fields that
+ * moved by more than {@code epsilon} since the last tick sent, so that idle
+ * values (gun heat at 0, a radar that is not turning) stop costing bytes.
+ * Every {@code keyframeTurns} ticks, and on the first tick of a round, the
+ * full tick goes out instead so the Python mirror can never drift further
+ * than epsilon.
+ *
+ * Changes are measured against the values last sent, not the last ones
+ * seen, so slow drift is sent once it adds up to more than epsilon.
+ */
+final class TickDelta {
+
+    private final int keyframeTurns;
+    private final double epsilon;
+    private final double[] sent = new double[EventType.TICK.doubleFields.length];
+    private boolean haveKeyframe;
+    private int sinceKeyframe;
+
+    TickDelta(int keyframeTurns, double epsilon) {
+        this.keyframeTurns = Math.max(1, keyframeTurns);
+        this.epsilon = Math.max(0, epsilon);
+    }
+
+    /** Makes the next tick a keyframe, e.g. when a round starts. */
+    void reset() {
+        haveKeyframe = false;
+    }
+
+    /** Rewrites {@code e} in place into a delta if it is a tick that allows one. */
+    void apply(BridgeEvent e) {
+        if (e.type != EventType.TICK) {
+            return;
+        }
+        double[] v = e.doubles;
+        if (!haveKeyframe || ++sinceKeyframe >= keyframeTurns) {
+            System.arraycopy(v, 0, sent, 0, sent.length);
+            haveKeyframe = true;
+            sinceKeyframe = 0;
+            return;
+        }
+        int mask = 0;
+        for (int i = 0; i < sent.length; i++) {
+            // written so that a NaN on either side counts as a change
+            if (!(Math.abs(v[i] - sent[i]) <= epsilon)) {
+                sent[i] = v[i];
+                mask |= 1 << i;
+            }
+        }
+        e.type = EventType.TICK_DELTA;
+        e.mask = mask;
+    }
+}
@@ -0,0 +1,165 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tells Python how much time it has for each turn and how hard it may
+ * think, and covers for it when it runs out. With bridge.budget set, every
+ * turn's events end with a BUDGET event:
+ *
+ *   turn       the turn it belongs to
+ *   level      0 full, 1 reduced, 2 minimal
+ *   budgetUs   time left until the reply deadline when the events went out
+ *   latencyUs  the p90 of the round trips of the last bridge.budgetWindow turns
+ *
+ * The level goes down one step when that p90 reaches bridge.budgetDegradeAt
+ * of the budget, or at once on a missed deadline or a skipped turn, and at
+ * most once every {@value #HOLD_TURNS} turns otherwise; it goes back up a
+ * step after a full window of turns with the p90 below
+ * bridge.budgetRecoverAt of the budget. A missed deadline counts as a round
+ * trip of the whole budget.
+ *
+ * When Python misses the deadline, the commands of bridge.fallback (text or
+ * JSON commands separated by semicolons, by default "turnRadarRight 45")
+ * are filed for the actuators that have none yet this turn, so reflex
+ * rules and controllers keep theirs. Bot thread only; nothing is allocated
+ * per turn.
+ */
+final class TurnBudget {
+
+    static final int FULL = 0;
+    static final int REDUCED = 1;
+    static final int MINIMAL = 2;
+    /** Turns after a step down before the p90 may cause another one. */
+    private static final int HOLD_TURNS = 8;
+    private static final double PERCENTILE = 0.9;
+
+    private final long[] samples;
+    private final long[] sorted;
+    private int next;
+    private int filled;
+    private final double degradeAt;
+    private final double recoverAt;
+    private final int[] fallbackOpcodes;
+    /** Power, distance and angle of each fallback command, as the parser left them. */
+    private final double[] fallbackArgs;
+
+    private int level = FULL;
+    private int sinceChange;
+    private int calmTurns;
+    private boolean pressed;
+    private long latencyNanos;
+
+    TurnBudget() {
+        this(BridgeConfig.budgetWindow(), BridgeConfig.budgetDegradeAt(), BridgeConfig.budgetRecoverAt(),
+                BridgeConfig.fallback());
+    }
+
+    TurnBudget(int window, double degradeAt, double recoverAt, String fallback) {
+        samples = new long[Math.max(1, window)];
+        sorted = new long[samples.length];
+        this.degradeAt = degradeAt;
+        this.recoverAt = recoverAt;
+        String[] parts = fallback.trim().isEmpty() ? new String[0] : fallback.split(";");
+        int[] opcodes = new int[parts.length];
+        double[] args = new double[parts.length * 3];
+        int n = 0;
+        CommandParser parser = new CommandParser();
+        for (String part : parts) {
+            byte[] b = part.getBytes(StandardCharsets.US_ASCII);
+            if (parser.parse(b, 0, b.length) && parser.opcode != BinaryProtocol.CMD_END_TURN) {
+                args[n * 3] = parser.power;
+                args[n * 3 + 1] = parser.distance;
+                args[n * 3 + 2] = parser.angle;
+                opcodes[n++] = parser.opcode;
+            } else {
+                BridgeLog.warn("Ignoring fallback command '" + part.trim() + "': "
+                        + (parser.error != null ? parser.error : "not a command"));
+            }
+        }
+        fallbackOpcodes = Arrays.copyOf(opcodes, n);
+        fallbackArgs = Arrays.copyOf(args, n * 3);
+    }
+
+    int level() {
+        return level;
+    }
+
+    /** Python answered this turn after {@code roundTripNanos}. */
+    void answered(long roundTripNanos) {
+        add(roundTripNanos);
+    }
+
+    /**
+     * Python missed this turn's deadline, {@code budgetNanos} after the
+     * events went out. Files the fallback commands into {@code slots} and
+     * returns how many it filed.
+     */
+    int missed(long budgetNanos, CommandSlots slots) {
+        add(budgetNanos);
+        pressed = true;
+        int filed = 0;
+        for (int i = 0; i < fallbackOpcodes.length; i++) {
+            if (slots.fillIn(fallbackOpcodes[i],
+                    fallbackArgs[i * 3], fallbackArgs[i * 3 + 1], fallbackArgs[i * 3 + 2])) {
+                filed++;
+            }
+        }
+        return filed;
+    }
+
+    /** The server skipped one of our turns. */
+    void skipped() {
+        pressed = true;
+    }
+
+    /**
+     * Sets this turn's level from what happened since the last call and
+     * queues the BUDGET event for {@code turn}, whose reply is due in
+     * {@code budgetNanos}.
+     */
+    void write(EventQueue q, int turn, long budgetNanos) {
+        update(Math.max(0, budgetNanos));
+        BridgeEvent ev = q.add(EventType.BUDGET);
+        ev.ints[0] = turn;
+        ev.ints[1] = level;
+        ev.doubles[0] = Math.max(0, budgetNanos) / 1e3;
+        ev.doubles[1] = latencyNanos / 1e3;
+    }
+
+    private void update(long budgetNanos) {
+        latencyNanos = percentile();
+        sinceChange++;
+        boolean slow = filled > 0 && latencyNanos >= degradeAt * budgetNanos;
+        if (pressed || (slow && sinceChange >= HOLD_TURNS)) {
+            if (level < MINIMAL) {
+                level++;
+                sinceChange = 0;
+            }
+            calmTurns = 0;
+        } else if (latencyNanos < recoverAt * budgetNanos) {
+            if (++calmTurns >= samples.length && level > FULL) {
+                level--;
+                sinceChange = 0;
+                calmTurns = 0;
+            }
+        } else {
+            calmTurns = 0;
+        }
+        pressed = false;
+    }
+
+    private void add(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        filled = Math.min(samples.length, filled + 1);
+    }
+
+    private long percentile() {
+        if (filled == 0) {
+            return 0;
+        }
+        System.arraycopy(samples, 0, sorted, 0, filled);
+        Arrays.sort(sorted, 0, filled);
+        return sorted[(int) Math.min(filled - 1, Math.floor(PERCENTILE * filled))];
+    }
+}
@@ -0,0 +1,277 @@
+import java.io.IOException;
+
+/**
+ * One bot's side of the turn-by-turn exchange with its Python strategy,
+ * shared by {@link PythonBridgeBot} and {@link SimBattle} so that the
+ * simulator runs the same code the bot does. A turn goes:
+ *
+ *   control  the running Controllers file their commands
+ *   send     reflex rules see the new events; a dead or hung process is
+ *            replaced by its standby and caught up; pipelined, the reply to
+ *            the previous turn is collected; the budget is written, the
+ *            queue coalesced, trimmed and recorded, and sent unless Python
+ *            is too far behind
+ *   receive  unless pipelined, wait for this turn's reply until the deadline
+ *   apply    the turn's commands, one per actuator, go to the bot
+ *
+ * A reply that misses its deadline files the TurnBudget's fallback; the
+ * budget it had is the whole turn timeout when pipelined and the time from
+ * sending to the deadline otherwise. Unbatched, no reply is expected, and
+ * so none missed, after a turn with no events. Bot thread only.
+ */
+final class TurnExchange {
+
+    final PythonWorker python;
+    final BridgeMetrics metrics;
+    final EventQueue events = new EventQueue();
+    /** Rules Python pushed to run as soon as their event is queued. */
+    final ReflexRules reflexes = new ReflexRules();
+    /** goTo, lockRadar and aim as Python started them, updated every turn. */
+    final Controllers controllers = new Controllers();
+    /** Per-enemy history and derived features, sent instead of scans once Python asks. */
+    final EnemyTracker enemies = new EnemyTracker(BridgeConfig.enemyHistory());
+    /** This turn's commands, one per actuator, applied by {@link #apply}. */
+    final CommandSlots slots = new CommandSlots(CommandSlots.Merge.parse(BridgeConfig.commandMerge()));
+    /** Null unless bridge.budget is set. */
+    final TurnBudget budget = BridgeConfig.budget() ? new TurnBudget() : null;
+    /** Null unless bridge.recordDir is set. */
+    private final BridgeRecorder recorder;
+    /** Apply each reply one turn late instead of waiting for it (bridge.pipeline). */
+    private final boolean pipeline = BridgeConfig.pipeline();
+    private final int eventQueueLimit = BridgeConfig.eventQueueLimit();
+    /** What a standby that has just taken over is told first. */
+    private final EventQueue catchUp = new EventQueue();
+    /** Python's commands: recorded, then filed per actuator. */
+    private final PythonLink.CommandHandler fromPython = this::fromPython;
+    private PythonLink link;
+    private int round;
+    /** Events at the head of {@link #events} the reflex rules have already seen. */
+    private int reacted;
+    private boolean expectReply;
+    private long sentNanos;
+    // ── of the links replaced so far
+    private int failovers;
+    private long replacedMisses;
+
+    TurnExchange(PythonWorker python, BridgeMetrics metrics, BridgeRecorder recorder) {
+        this.python = python;
+        this.metrics = metrics;
+        this.recorder = recorder;
+        python.setMetrics(metrics);
+        python.setReflexes(reflexes);
+        python.setControllers(controllers);
+    }
+
+    /** The current link; null before the first round. */
+    PythonLink link() {
+        return link;
+    }
+
+    int failovers() {
+        return failovers;
+    }
+
+    /** Deadlines missed so far, by this link and those it replaced. */
+    long deadlineMisses() {
+        return replacedMisses + (link == null ? 0 : link.deadlineMisses());
+    }
+
+    // ── rounds ───────────────────────────────────────────────────────
+    /**
+     * Takes over the Python process (a new one if it has died, the standby
+     * if it has hung), resets the turn bookkeeping and the round's state and
+     * sends the CONNECTED event that starts the round on the Python side,
+     * after the critical events the last round queued too late to send (its
+     * state events are stale by now). Returns whether a new process had to
+     * be started.
+     */
+    boolean startRound(int round) throws IOException {
+        this.round = round;
+        boolean fresh = link == null || link.isClosed();
+        replace(python.link());
+        if (python.failed(link)) {
+            replace(python.failover()); // the CONNECTED below is all it needs
+        }
+        link.newRound();
+        enemies.clear();
+        controllers.endRound();
+        expectReply = false;
+        events.trim(0);
+        BridgeEvents.connected(events, round);
+        if (recorder != null) {
+            recorder.startRound(round);
+            recorder.events(events);
+        }
+        while (!events.isEmpty()) {
+            link.send(events.poll());
+        }
+        reacted = 0;
+        return fresh;
+    }
+
+    private void replace(PythonLink next) {
+        if (link != null && next != link) {
+            replacedMisses += link.deadlineMisses();
+            failovers++;
+        }
+        link = next;
+    }
+
+    /**
+     * Hands over to the standby process if Python has died or hung, and
+     * brings it up to date: the round it joins and the latest scan of every
+     * known enemy go out ahead of this turn's events.
+     */
+    private void failoverIfNeeded() throws IOException {
+        if (!python.failed(link)) {
+            return;
+        }
+        replace(python.failover());
+        expectReply = false;
+        BridgeEvents.connected(catchUp, round);
+        enemies.writeAll(catchUp, link.tracksEnemies());
+        while (!catchUp.isEmpty()) {
+            link.send(catchUp.poll());
+        }
+    }
+
+    // ── events with enemy bookkeeping ────────────────────────────────
+    /**
+     * Queues a scan of bot {@code botId} by a bot at ({@code myX},
+     * {@code myY}) facing {@code myDirection}, as an ENEMY summary if Python
+     * asked for them.
+     */
+    void scanned(int turn, int botId, double energy, double x, double y, double direction, double speed,
+                 double myX, double myY, double myDirection) {
+        int enemy = enemies.scanned(turn, botId, x, y, direction, speed, energy, myX, myY, myDirection);
+        if (link != null && link.tracksEnemies()) {
+            enemies.write(enemy, events);
+        } else {
+            BridgeEvents.scanned(events, botId, energy, x, y, direction, speed);
+        }
+    }
+
+    void hitByBullet(int ownerId, double power, double damage, double bulletDirection) {
+        enemies.hitBy(ownerId, power);
+        BridgeEvents.hitByBullet(events, damage, bulletDirection);
+    }
+
+    void bulletHitBot(int victimId, double damage) {
+        enemies.bulletHit(victimId, damage);
+        BridgeEvents.bulletHitBot(events, victimId, damage);
+    }
+
+    void opponentDeath(int victimId) {
+        enemies.remove(victimId);
+        BridgeEvents.opponentDeath(events, victimId);
+    }
+
+    // ── turns ────────────────────────────────────────────────────────
+    /** Fires the reflex rules for the events queued since they last ran, in this same turn. */
+    void react() {
+        int n = 0;
+        for (; reacted < events.size(); reacted++) {
+            n += reflexes.onEvent(events.get(reacted), slots);
+        }
+        if (n > 0) {
+            metrics.reflexesFired(n);
+        }
+    }
+
+    /** Files the running controllers' commands for a bot in this state. */
+    void control(int turn, double x, double y, double direction, double gunDirection, double radarDirection,
+                 double gunHeat) {
+        int n = controllers.update(turn, x, y, direction, gunDirection, radarDirection, gunHeat, enemies, slots);
+        if (n > 0) {
+            metrics.controllerCommands(n);
+        }
+    }
+
+    /**
+     * Sends this turn's events, collecting the previous turn's reply first
+     * when pipelined. {@code deadlineNanos} is when this turn's reply is due
+     * and {@code turnTimeoutNanos} the whole turn timeout.
+     */
+    void send(int turn, long deadlineNanos, long turnTimeoutNanos) throws IOException {
+        react();
+        failoverIfNeeded();
+        if (pipeline && expectReply) {
+            // Python had the whole turn for it
+            if (!link.collectCommands(fromPython)) {
+                fallBack(turnTimeoutNanos);
+            } else if (link.isBatched()) {
+                answered();
+            }
+        } else if (link.isBatched()) {
+            link.pollCommands(fromPython); // the last reply may have come in since
+        }
+        if (budget != null) {
+            budget.write(events, turn, deadlineNanos - System.nanoTime());
+            metrics.budgetLevel(budget.level());
+        }
+        metrics.eventsCoalesced(events.coalesce(), events.trim(eventQueueLimit));
+        metrics.queueDepth.record(events.size());
+        boolean hold = link.holdEvents(turn, events);
+        if (recorder != null && !hold) {
+            recorder.events(events);
+            recorder.turn(turn);
+        }
+        expectReply = link.isBatched() || !events.isEmpty();
+        if (hold) {
+            metrics.heldTurn();
+        } else if (link.isBatched()) {
+            link.sendBatch(turn, events);
+        } else {
+            while (!events.isEmpty()) {
+                link.send(events.poll());
+            }
+        }
+        reacted = events.size();
+        sentNanos = System.nanoTime();
+    }
+
+    /** Unless pipelined, waits for the reply to what {@link #send} sent, until {@code deadlineNanos}. */
+    void receive(long deadlineNanos) {
+        if (pipeline) {
+            // collected by the next send; Python computes meanwhile
+        } else if (expectReply) {
+            if (link.awaitCommands(fromPython, deadlineNanos)) {
+                answered();
+            } else {
+                fallBack(deadlineNanos - sentNanos);
+            }
+        } else {
+            link.pollCommands(fromPython);
+        }
+    }
+
+    /** Applies this turn's commands to {@code actuators} and closes the turn. */
+    void apply(PythonLink.CommandHandler actuators) {
+        metrics.commandsCoalesced(slots.dropped(), slots.merged());
+        slots.apply(actuators);
+        metrics.endTurn();
+    }
+
+    private void answered() {
+        if (budget != null) {
+            budget.answered(link.lastRoundTripNanos());
+        }
+    }
+
+    /** Python missed a deadline {@code budgetNanos} after the events went out: file the fallback. */
+    private void fallBack(long budgetNanos) {
+        if (budget != null) {
+            int n = budget.missed(budgetNanos, slots);
+            if (n > 0) {
+                metrics.fallbackCommands(n);
+            }
+        }
+    }
+
+    private void fromPython(int opcode, double power, double distance, double angle) {
+        if (recorder != null) {
+            recorder.command(opcode, power, distance, angle);
+        }
+        slots.onCommand(opcode, power, distance, angle);
+    }
+}
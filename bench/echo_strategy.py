@@ -0,0 +1,18 @@
+"""Benchmark stub: answers every turn at once with fixed commands.
+
+Keeps strategy time out of the round-trip benchmark so that it measures
+only the bridge: encoding, the transport and parsing on both sides.
+"""
+import bridge_protocol
+
+
+def handle_event(evt: dict) -> None:
+    event = evt.get("event")
+    if event == "tick":
+        bridge_protocol.send("forward 10")
+    elif event == "scanned":
+        bridge_protocol.send("fire 1")
+
+
+if __name__ == "__main__":
+    bridge_protocol.serve(handle_event)
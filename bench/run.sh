@@ -0,0 +1,12 @@
+#!/bin/sh
+# Build and run the JMH benchmarks, keeping the results as JSON under
+# bench/results/ (named after the current commit) for comparing releases.
+# Extra arguments go to JMH, e.g. ./run.sh RoundTrip -p transport=shm
+# Requires Maven, and python on the PATH for the round-trip benchmark.
+
+set -e
+cd "$(dirname "$0")"
+mvn -B -q package
+mkdir -p results
+name=$(git rev-parse --short HEAD 2>/dev/null || date +%Y%m%d-%H%M%S)
+java -jar target/benchmarks.jar -rf json -rff "results/jmh-$name.json" "$@"
@@ -0,0 +1,182 @@
+import relay.bench.HotPaths;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link HotPaths} over the relay's own classes. Lives in the unnamed
+ * package so it can use them directly; the fixtures are built once and
+ * reused, as the bot reuses its buffers from turn to turn.
+ *
+ * The round trip runs bench/echo_strategy.py, found through
+ * {@code -Dbench.root=<relay directory>} or else in the working directory
+ * or its parent.
+ */
+public final class BenchHooks implements HotPaths {
+
+    private static final long ROUND_TRIP_TIMEOUT_NANOS = 1_000_000_000L;
+
+    private final EventJson json = new EventJson();
+    private final ByteBuffer frame = BinaryProtocol.newBuffer(256);
+    private final BridgeEvent tick = new BridgeEvent().reset(EventType.TICK);
+    private final BridgeEvent scanned = new BridgeEvent().reset(EventType.SCANNED);
+    private final BridgeEvent tickDelta = new BridgeEvent().reset(EventType.TICK_DELTA);
+
+    private final CommandParser parser = new CommandParser();
+    private final CommandRing ring = new CommandRing(64);
+    private final byte[] jsonCommand = ascii("{\"cmd\":\"forward\",\"distance\":150}");
+    private final byte[] textCommand = ascii("turnRight 45");
+    private final byte[] reply = ascii("forward 150\n{\"cmd\":\"turnRight\",\"angle\":45}\nturnGunLeft 360\nfire 1.5\n");
+
+    private double dispatched;
+    private final PythonLink.CommandHandler handler = (opcode, power, distance, angle) ->
+            dispatched += opcode + power + distance + angle;
+
+    private Process process;
+    private PythonLink link;
+    private EventQueue queue;
+    private int turn;
+
+    public BenchHooks() {
+        tick.ints[0] = 1234;
+        double[] t = {87.25, 412.5, 309.125, 271.5, 15.75, 331.0, 0.4, 8.0};
+        System.arraycopy(t, 0, tick.doubles, 0, t.length);
+        scanned.ints[0] = 2;
+        double[] s = {64.1, 120.5, 548.3, 93.7, -6.0};
+        System.arraycopy(s, 0, scanned.doubles, 0, s.length);
+        tickDelta.ints[0] = 1234;
+        System.arraycopy(t, 0, tickDelta.doubles, 0, t.length);
+        tickDelta.mask = 1 << 1 | 1 << 2 | 1 << 7;
+    }
+
+    // ── encoding and parsing ─────────────────────────────────────────
+    @Override
+    public int encodeTickJson() {
+        return json.reset().event(tick).newline().length();
+    }
+
+    @Override
+    public int encodeScannedBotJson() {
+        return json.reset().event(scanned).newline().length();
+    }
+
+    @Override
+    public int encodeTickDeltaJson() {
+        return json.reset().event(tickDelta).newline().length();
+    }
+
+    @Override
+    public int encodeTickBinary() {
+        frame.clear();
+        BinaryProtocol.writeEvent(tick, frame);
+        return frame.position();
+    }
+
+    @Override
+    public int encodeBatchJson() {
+        json.reset().batchStart(1234).event(tick);
+        for (int i = 0; i < 3; i++) {
+            json.put(',').event(scanned);
+        }
+        return json.batchEnd().newline().length();
+    }
+
+    @Override
+    public boolean parseJsonCommand() {
+        return parser.parse(jsonCommand, 0, jsonCommand.length);
+    }
+
+    @Override
+    public boolean parseTextCommand() {
+        return parser.parse(textCommand, 0, textCommand.length);
+    }
+
+    @Override
+    public double dispatchReply() {
+        int start = 0;
+        for (int i = 0; i < reply.length; i++) {
+            if (reply[i] == '\n') {
+                if (parser.parse(reply, start, i - start)) {
+                    ring.offer(parser.opcode, parser.power, parser.distance, parser.angle);
+                }
+                start = i + 1;
+            }
+        }
+        while (ring.poll()) {
+            handler.onCommand(ring.opcode, ring.power, ring.distance, ring.angle);
+        }
+        return dispatched;
+    }
+
+    // ── round trip ───────────────────────────────────────────────────
+    @Override
+    public void connect(String transport, boolean batch) throws IOException {
+        File root = findRoot();
+        ProcessBuilder pb = new ProcessBuilder("python", "-u",
+                new File(root, "bench/echo_strategy.py").getAbsolutePath());
+        pb.environment().put("PYTHONPATH", root.getAbsolutePath());
+        process = pb.start();
+        link = new PythonLink(process, false);
+        link.setQuietPeriodMicros(BridgeConfig.replyQuietMicros());
+        if (!link.awaitReady(BridgeConfig.startupTimeoutMs())) {
+            throw new IOException("The echo strategy did not announce itself");
+        }
+        if ((!BinaryProtocol.PROTOCOL_JSON.equals(transport) || batch)
+                && (!link.negotiate(transport, batch, BridgeConfig.handshakeTimeoutMs())
+                || !link.transport().equals(transport) || link.isBatched() != batch)) {
+            throw new IOException("Python did not accept " + transport + (batch ? " batches" : ""));
+        }
+        link.startReader();
+        queue = new EventQueue();
+        turn = 0;
+    }
+
+    @Override
+    public int roundTrip() throws IOException {
+        turn++;
+        BridgeEvent e = queue.add(EventType.TICK);
+        System.arraycopy(tick.doubles, 0, e.doubles, 0, EventType.TICK.doubleFields.length);
+        e.ints[0] = turn;
+        e = queue.add(EventType.SCANNED);
+        e.ints[0] = scanned.ints[0];
+        System.arraycopy(scanned.doubles, 0, e.doubles, 0, EventType.SCANNED.doubleFields.length);
+        if (link.isBatched()) {
+            link.sendBatch(turn, queue);
+        } else {
+            while (!queue.isEmpty()) {
+                link.send(queue.poll());
+            }
+        }
+        if (!link.awaitCommands(handler, System.nanoTime() + ROUND_TRIP_TIMEOUT_NANOS)) {
+            throw new IOException("No reply from Python for turn " + turn);
+        }
+        return turn;
+    }
+
+    @Override
+    public void disconnect() {
+        if (process != null) {
+            process.destroy();
+            process = null;
+        }
+    }
+
+    private static File findRoot() throws IOException {
+        String configured = System.getProperty("bench.root");
+        File[] candidates = configured != null
+                ? new File[]{new File(configured)}
+                : new File[]{new File("."), new File("..")};
+        for (File dir : candidates) {
+            if (new File(dir, "bridge_protocol.py").isFile()) {
+                return dir.getAbsoluteFile();
+            }
+        }
+        throw new IOException("Cannot locate bridge_protocol.py; set -Dbench.root");
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
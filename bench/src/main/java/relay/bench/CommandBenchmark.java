@@ -0,0 +1,44 @@
+package relay.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading Python's commands: parsing single lines, and a whole reply taken
+ * through the command ring to the handler. The handler only accumulates the
+ * arguments; the bot's own setters need a running game and are left out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CommandBenchmark {
+
+    private final HotPaths hooks = HotPaths.create();
+
+    @Benchmark
+    public boolean parseJson() {
+        return hooks.parseJsonCommand();
+    }
+
+    @Benchmark
+    public boolean parseText() {
+        return hooks.parseTextCommand();
+    }
+
+    @Benchmark
+    public double dispatchReply() {
+        return hooks.dispatchReply();
+    }
+}
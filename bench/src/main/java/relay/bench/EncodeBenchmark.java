@@ -0,0 +1,50 @@
+package relay.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Encoding the events the bot sends every turn. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EncodeBenchmark {
+
+    private final HotPaths hooks = HotPaths.create();
+
+    @Benchmark
+    public int tickJson() {
+        return hooks.encodeTickJson();
+    }
+
+    @Benchmark
+    public int scannedBotJson() {
+        return hooks.encodeScannedBotJson();
+    }
+
+    @Benchmark
+    public int tickDeltaJson() {
+        return hooks.encodeTickDeltaJson();
+    }
+
+    @Benchmark
+    public int tickBinary() {
+        return hooks.encodeTickBinary();
+    }
+
+    @Benchmark
+    public int batchJson() {
+        return hooks.encodeBatchJson();
+    }
+}
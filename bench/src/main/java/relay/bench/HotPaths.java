@@ -0,0 +1,57 @@
+package relay.bench;
+
+import java.io.IOException;
+
+/**
+ * The relay's per-turn operations as the benchmarks see them. The relay
+ * lives in the unnamed package, which named packages cannot import, so the
+ * implementation ({@code BenchHooks}, next to the relay classes) is loaded
+ * by name once; after that every call is an ordinary interface call that
+ * the JIT inlines.
+ */
+public interface HotPaths {
+
+    /** Encodes one tick event as a JSON line; returns its length. */
+    int encodeTickJson();
+
+    /** Encodes one scanned-bot event as a JSON line; returns its length. */
+    int encodeScannedBotJson();
+
+    /** Encodes a tick in which only x, y and speed changed as a delta JSON line; returns its length. */
+    int encodeTickDeltaJson();
+
+    /** Encodes one tick event as a binary frame; returns its length. */
+    int encodeTickBinary();
+
+    /** Encodes a tick and three scans as one JSON batch line; returns its length. */
+    int encodeBatchJson();
+
+    /** Parses {"cmd":"forward","distance":150}; returns whether it parsed. */
+    boolean parseJsonCommand();
+
+    /** Parses "turnRight 45"; returns whether it parsed. */
+    boolean parseTextCommand();
+
+    /**
+     * Parses a typical four-command reply and passes every command through
+     * the reader-to-bot-thread ring to a command handler, as the bot does
+     * each turn; returns a value derived from the dispatched arguments.
+     */
+    double dispatchReply();
+
+    /** Starts the echo strategy in Python and negotiates {@code transport}. */
+    void connect(String transport, boolean batch) throws IOException;
+
+    /** Sends one turn's events and waits for the reply; returns the commands received. */
+    int roundTrip() throws IOException;
+
+    void disconnect();
+
+    static HotPaths create() {
+        try {
+            return (HotPaths) Class.forName("BenchHooks").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("BenchHooks is missing from the classpath", ex);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package relay.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One turn against a live Python process running bench/echo_strategy.py:
+ * a tick and a scan out, two commands back, on every transport. Sampled, so
+ * the results carry percentiles as well as the mean. Unbatched turns include
+ * the reply quiet period ({@code -Dbridge.replyQuietUs}, passed on with
+ * {@code -jvmArgsAppend}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    @Param({"json", "binary", "shm"})
+    public String transport;
+
+    @Param({"true", "false"})
+    public boolean batch;
+
+    private HotPaths hooks;
+
+    @Setup(Level.Trial)
+    public void connect() throws IOException {
+        hooks = HotPaths.create();
+        hooks.connect(transport, batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() {
+        hooks.disconnect();
+    }
+
+    @Benchmark
+    public int turn() throws IOException {
+        return hooks.roundTrip();
+    }
+}
@@ -1,12 +1,20 @@
-import json
 import random
-import sys
+
+import bridge_protocol
 
 # Current direction of our bot, updated each tick
 bot_direction = 0.0
 move_remaining = 0.0
 TURN_OPTIONS = [-90, -45, 45, 90]
 
+# Fire at whatever the radar sweeps over in the same turn, without a round
+# trip, through reflex rules; with tracking on, scans arrive as enemy events.
+# Set to False for a Java side that runs no rules, to fire from the reply.
+REFLEXES = True
+if REFLEXES:
+    bridge_protocol.rule("gun", "scanned => fire 1")
+    bridge_protocol.rule("gunTracked", "enemy => fire 1")
+
 
 def normalize(angle: float) -> float:
     """Normalize angle to [-180, 180]."""
@@ -18,7 +26,7 @@ def normalize(angle: float) -> float:
 
 
 def send(cmd: str) -> None:
-    print(cmd, flush=True)
+    bridge_protocol.send(cmd)
 
 
 def handle_event(evt: dict) -> None:
@@ -26,19 +34,28 @@ def handle_event(evt: dict) -> None:
     event = evt.get("event")
 
 
-    if event == "scanned":
-        send("fire 1")
+    if event == "connected":
+        # the process is reused across rounds, so start each one afresh
+        bot_direction = 0.0
+        move_remaining = 0.0
+    elif event in ("scanned", "enemy"):
+        if not REFLEXES:
+            send("fire 1")
+        return  # a scan carries the enemy's direction and speed, not ours
     elif event == "hitByBullet":
         bullet_dir = evt.get("direction", 0.0)
         bearing = normalize(bullet_dir - bot_direction)
         send(f"turnRight {90 - bearing}")
+    elif event == "budget":
+        return  # bridge.budget: read through bridge_protocol.level()
     elif event == "hitWall":
         move_remaining = 0.0
         send(f"turnRight 180")
     else:
         bot_direction = evt.get("direction", bot_direction)
         speed = abs(evt.get("speed", 0.0))
-        if move_remaining <= 0:
+        # when Java is short of time (bridge.budget) keep to what is under way
+        if move_remaining <= 0 and bridge_protocol.level() < bridge_protocol.MINIMAL:
             distance = 150
             move_remaining = distance
             send(f"forward {distance}")
@@ -53,15 +70,7 @@ def handle_event(evt: dict) -> None:
 
 
 def main() -> None:
-    for line in sys.stdin:
-        line = line.strip()
-        if not line:
-            continue
-        try:
-            evt = json.loads(line)
-            handle_event(evt)
-        except json.JSONDecodeError:
-            continue
+    bridge_protocol.serve(handle_event)
 
 
 if __name__ == "__main__":
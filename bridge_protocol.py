@@ -0,0 +1,794 @@
+"""Python side of the PythonBridgeBot wire protocol.
+
+Two transports are spoken over stdin/stdout:
+
+* line-JSON (default): one JSON event per line in, one text command per line out
+* binary: length-prefixed frames with fixed little-endian layouts, enabled
+  when Java sends a ``hello`` line offering it and we acknowledge it
+* shm: the same frames through two rings in a memory-mapped file that Java
+  names in its ``hello``; stdin/stdout then only carry the handshake and
+  whatever the script prints
+
+Either transport can also be batched: Java then sends all events of a turn
+at once and we answer with that turn's commands followed by an end marker
+(``end <turn>`` or an END_TURN frame), written with a single flush.
+
+If Java offers ``"delta":true`` in its hello and we accept, ticks arrive as
+``tickDelta`` events holding only the fields that changed since the last
+tick (binary: a field bitmask byte after the turn), with a full ``tick`` at
+round start and every few turns. The bridge keeps the mirrored state in
+``Bridge.state`` and still hands the handler a complete ``tick`` event.
+
+Before reading anything we announce ``{"ready":true,"version":1}`` so Java
+knows the script has finished loading. The process then stays up for the
+whole battle; each round starts with a ``connected`` event.
+
+Strategy scripts call :func:`serve` with an event handler and :func:`send`
+for every command; both work the same whichever transport Java picked.
+
+Reactions too urgent for a round trip can be handed to Java as rules with
+:func:`rule`, e.g. ``rule("gun", "scanned if distance < 300 => fire 2")``;
+Java then runs them in its event handlers (see ReflexRules.java for the
+format). Rules set at import time follow the ready line, so Java has them
+before the first turn; they can also be set or replaced at any later point,
+and :func:`remove_rule` drops them again. Text transports (and the time
+before the handshake) carry ``rule <name> <spec>`` as a line, binary ones as
+a CONTROL frame.
+
+:func:`track` asks Java to keep per-enemy history (EnemyTracker.java) and
+send ``enemy`` events in place of ``scanned``: the scan plus ``bearing``,
+``distance``, ``acceleration``, ``turnRate`` and ``energyDrop`` (energy lost
+that our hits do not explain, i.e. most likely a shot). It travels like a
+rule, as a ``track on`` / ``track off`` control line.
+
+Behaviours that take many turns can be left to Java as well (see
+Controllers.java): :func:`go_to` drives to a point, :func:`lock_radar` keeps
+the radar on a bot and :func:`aim` keeps the gun on where a bullet meets it
+and fires. Java issues their commands every turn until they are done or
+:func:`cancel` stops them; commands sent in the meantime still win for
+their turn. They travel as control lines too.
+
+With ``bridge.pipeline`` on, Java applies the reply to turn N after the
+server's next turn, so commands take effect a turn later than the events
+suggest. :func:`predict` extrapolates a ``tick``, ``scanned`` or ``enemy``
+event by that turn (or any number of turns) to decide on.
+
+With ``bridge.budget`` on, each turn's events end with a ``budget`` event:
+the microseconds left until Java stops waiting for the reply and a load
+level that drops from ``FULL`` to ``REDUCED`` and ``MINIMAL`` as round trips
+come close to that budget or turns are missed or skipped, and recovers once
+they are fast again. :func:`level` and :func:`time_left` report them, so a
+strategy can do less when the host is busy. Turns it misses anyway get
+Java's fallback command instead.
+
+In host mode (``python -u bridge_protocol.py --host bot_logic.py``) one
+process serves many bots at once: stdin/stdout carry ``[length:u32]
+[botId:u16][bytes]`` frames, each bot gets its own session thread speaking
+the ordinary protocol above, and its own copy of the script, whose
+``handle_event`` is then called for that bot's events.
+Once the binary transport is active stdout carries frames only, so log to
+stderr instead of printing (with shm, printing to stdout is fine again).
+
+In server mode (``python -u bridge_protocol.py --serve [host:]7700
+bot_logic.py``) the process outlives the bots: Java connects over TCP when
+``bridge.server`` is set, introduces the bot with a ``session <name>`` line
+and then speaks the ordinary protocol on the socket. Each bot gets a copy of
+the script as in host mode, which is kept when the bot disconnects; a bot of
+the same name that connects again gets that copy back, with its globals, and
+the rules, tracking and controllers it had set are sent again after the
+ready line. Copies are forgotten an hour after their bot left (``--keep
+<seconds>``), and the longest idle first once more than 256 are kept
+(``--max-sessions <n>``).
+"""
+
+import importlib.util
+import json
+import math
+import mmap
+import os
+import socket
+import struct
+import sys
+import threading
+import time
+import traceback
+
+VERSION = 1
+
+# load levels of the budget event, see TurnBudget.java
+FULL = 0
+REDUCED = 1
+MINIMAL = 2
+
+# tag -> (event name, int fields, double fields); must match EventType.java
+EVENT_LAYOUTS = {
+    1: ("connected", ("round",), ()),
+    2: ("tick", ("turn",),
+        ("energy", "x", "y", "direction", "gunDirection", "radarDirection", "gunHeat", "speed")),
+    3: ("scanned", ("botId",), ("energy", "x", "y", "direction", "speed")),
+    4: ("hitByBullet", (), ("damage", "direction")),
+    5: ("bulletHitBot", ("botId",), ("damage",)),
+    6: ("bulletHitWall", (), ()),
+    7: ("wonRound", ("turn",), ()),
+    8: ("skippedTurn", ("turn",), ()),
+    9: ("custom", (), ()),
+    10: ("hitWall", (), ()),
+    11: ("opponentDeath", ("botId",), ()),
+    12: ("roundEnded", (), ()),
+    13: ("death", (), ()),
+    14: ("tickDelta", ("turn",),
+         ("energy", "x", "y", "direction", "gunDirection", "radarDirection", "gunHeat", "speed")),
+    15: ("enemy", ("botId",), ("energy", "x", "y", "direction", "speed",
+                               "bearing", "distance", "acceleration", "turnRate", "energyDrop")),
+    16: ("budget", ("turn", "level"), ("budgetUs", "latencyUs")),
+}
+
+# tags whose doubles are preceded by a u8 mask and only present where it has a bit set
+SPARSE_TAGS = {14}
+
+BATCH_TAG = 64
+END_TURN = 255
+CONTROL = 11
+
+MAX_SPEED = 8.0
+
+# command name -> opcode; must match BinaryProtocol.java
+COMMAND_OPCODES = {
+    "fire": 1,
+    "forward": 2,
+    "back": 3,
+    "turnLeft": 4,
+    "turnRight": 5,
+    "turnGunLeft": 6,
+    "turnGunRight": 7,
+    "turnRadarLeft": 8,
+    "turnRadarRight": 9,
+    "rescan": 10,
+}
+
+_HEADER = struct.Struct("<I")
+_COMMAND = struct.Struct("<IBd")
+_END_TURN = struct.Struct("<IBi")
+_BATCH = struct.Struct("<iH")
+_MUX = struct.Struct("<IH")
+_ARG_KEYS = ("power", "distance", "angle")
+_DECODERS = {
+    tag: (name, ints + doubles, struct.Struct("<" + "i" * len(ints) + "d" * len(doubles)))
+    for tag, (name, ints, doubles) in EVENT_LAYOUTS.items()
+    if tag not in SPARSE_TAGS
+}
+# sparse tag -> (event name, int fields, int layout, double fields); one double layout per count
+_SPARSE_DECODERS = {
+    tag: (name, ints, struct.Struct("<" + "i" * len(ints) + "B"), doubles)
+    for tag, (name, ints, doubles) in EVENT_LAYOUTS.items()
+    if tag in SPARSE_TAGS
+}
+_DOUBLES = [struct.Struct("<" + "d" * n) for n in range(9)]
+
+
+class SharedRing:
+    """Both byte rings of the shared-memory file; must match SharedMemoryChannel.java.
+
+    Positions are ever-increasing byte counts stored as aligned int64 words;
+    each side publishes its position only after copying the bytes. Waiting
+    spins first, then yields, then sleeps in short intervals.
+    """
+
+    MAGIC = 0x52424352
+    HEADER = 320
+    SPIN_TRIES = 2000 if (os.cpu_count() or 1) > 1 else 0
+    PARK_SECONDS = 50e-6
+
+    def __init__(self, path: str):
+        with open(path, "r+b") as f:
+            self._mm = mmap.mmap(f.fileno(), 0)
+        magic, version, size = struct.unpack_from("<iii", self._mm, 0)
+        if magic != self.MAGIC or version != VERSION:
+            self._mm.close()
+            raise ValueError(f"not a bridge shared-memory file: {path}")
+        self._words = memoryview(self._mm).cast("q")
+        self._size = size
+        self._ppid = os.getppid()
+        # to-Python ring: head at 64, tail at 128; from-Python: head at 192, tail at 256
+        self._in_off, self._in_head, self._in_tail = self.HEADER, 0, 0
+        self._out_off, self._out_tail = self.HEADER + size, 0
+
+    def read(self, n: int) -> bytes:
+        """Return up to ``n`` bytes, waiting for at least one (b"" once Java is gone)."""
+        words, head = self._words, self._in_head
+        tail = words[16]
+        attempt = 0
+        while tail == head:
+            if not self._idle(attempt):
+                return b""
+            attempt += 1
+            tail = words[16]
+        at = head & (self._size - 1)
+        k = min(n, tail - head, self._size - at)
+        start = self._in_off + at
+        data = self._mm[start:start + k]
+        self._in_head = head + k
+        words[8] = self._in_head
+        return data
+
+    def write(self, data: bytes) -> None:
+        view = memoryview(data)
+        while view:
+            free = self._size - (self._out_tail - self._words[24])
+            if free == 0:
+                self.flush()
+                attempt = 0
+                while self._size - (self._out_tail - self._words[24]) == 0:
+                    if not self._idle(attempt):
+                        raise BrokenPipeError("Java has gone away")
+                    attempt += 1
+                continue
+            at = self._out_tail & (self._size - 1)
+            k = min(len(view), free, self._size - at)
+            start = self._out_off + at
+            self._mm[start:start + k] = view[:k]
+            self._out_tail += k
+            view = view[k:]
+
+    def flush(self) -> None:
+        """Publish everything written so far."""
+        self._words[32] = self._out_tail
+
+    def _idle(self, attempt: int) -> bool:
+        if attempt < self.SPIN_TRIES:
+            return True
+        if attempt < self.SPIN_TRIES + 64:
+            time.sleep(0)
+            return True
+        if attempt % 1000 == 0 and os.getppid() != self._ppid:
+            return False
+        time.sleep(self.PARK_SECONDS)
+        return True
+
+
+def decode_event(payload: bytes) -> dict:
+    """Decode one binary event payload (tag byte included) into a dict."""
+    if payload[0] in SPARSE_TAGS:
+        return _decode_sparse(payload)
+    name, fields, layout = _DECODERS[payload[0]]
+    evt = dict(zip(fields, layout.unpack_from(payload, 1)))
+    evt["event"] = name
+    return evt
+
+
+def _decode_sparse(payload: bytes) -> dict:
+    name, ints, head, doubles = _SPARSE_DECODERS[payload[0]]
+    values = head.unpack_from(payload, 1)
+    mask = values[-1]
+    evt = dict(zip(ints, values))
+    present = [f for i, f in enumerate(doubles) if mask >> i & 1]
+    evt.update(zip(present, _DOUBLES[len(present)].unpack_from(payload, 1 + head.size)))
+    evt["event"] = name
+    return evt
+
+
+def decode_batch(payload: bytes):
+    """Decode a batch payload (tag byte included) into (turn, [events])."""
+    turn, count = _BATCH.unpack_from(payload, 1)
+    pos = 1 + _BATCH.size
+    events = []
+    for _ in range(count):
+        (length,) = _HEADER.unpack_from(payload, pos)
+        pos += _HEADER.size
+        events.append(decode_event(payload[pos:pos + length]))
+        pos += length
+    return turn, events
+
+
+def encode_command(cmd: str) -> bytes:
+    """Encode a "forward 150" or {"cmd": ...} command as a binary frame."""
+    cmd = cmd.strip()
+    if cmd.startswith("{"):
+        obj = json.loads(cmd)
+        name = obj.get("cmd", "")
+        arg = next((float(obj[k]) for k in _ARG_KEYS if k in obj), 0.0)
+    else:
+        parts = cmd.split()
+        name = parts[0] if parts else ""
+        arg = float(parts[1]) if len(parts) > 1 else 0.0
+    opcode = COMMAND_OPCODES.get(name)
+    if opcode is None:
+        raise ValueError(f"unknown command: {cmd}")
+    return _COMMAND.pack(_COMMAND.size - _HEADER.size, opcode, arg)
+
+
+class Bridge:
+    """Reads events from Java and writes commands back."""
+
+    def __init__(self, stdin=None, stdout=None):
+        self.inp = stdin if stdin is not None else sys.stdin.buffer
+        self.out = stdout if stdout is not None else sys.stdout.buffer
+        self.binary = False
+        self.batch = False
+        self.delta = False
+        # last full tick, kept up to date from tickDelta events
+        self.state = {}
+        self._pending = []
+        self._ready_sent = False
+        # control lines sent while the script loads go out right after the ready line
+        self._early_controls = []
+        # the control lines in force, e.g. {"rule gun": "rule gun scanned => fire 1"}
+        self.controls = {}
+        # from the latest budget event: load level and when the reply is due (perf_counter)
+        self.level = FULL
+        self.reply_due = None
+
+    def send(self, cmd: str) -> None:
+        if self.binary:
+            try:
+                data = encode_command(cmd)
+            except ValueError as ex:
+                print(f"bridge: {ex}", file=sys.stderr)
+                return
+        else:
+            data = cmd.encode("utf-8") + b"\n"
+        if self.batch:
+            self._pending.append(data)
+        else:
+            self.out.write(data)
+            self.out.flush()
+
+    def control(self, text: str) -> None:
+        """Send a control line (``rule ...``, ``track ...``, ``goTo ...``) to Java at once, outside any batch."""
+        self._remember(text)
+        if not self._ready_sent:
+            self._early_controls.append(text)
+            return
+        data = text.encode("utf-8")
+        if self.binary:
+            data = _HEADER.pack(len(data) + 1) + bytes((CONTROL,)) + data
+        else:
+            data += b"\n"
+        self.out.write(data)
+        self.out.flush()
+
+    def _remember(self, text: str) -> None:
+        words = text.split()
+        if not words:
+            return
+        key = " ".join(words[:2]) if words[0] == "rule" else words[0]
+        if words[-1] == "off" and len(words) == len(key.split()) + 1:
+            if key == "rule *":
+                for k in [k for k in self.controls if k.startswith("rule ")]:
+                    del self.controls[k]
+            else:
+                self.controls.pop(key, None)
+        else:
+            self.controls[key] = text
+
+    def end_turn(self, turn: int) -> None:
+        """Close the reply for ``turn`` and write it with one flush."""
+        if self.binary:
+            self._pending.append(_END_TURN.pack(_END_TURN.size - _HEADER.size, END_TURN, turn))
+        else:
+            self._pending.append(f"end {turn}\n".encode("utf-8"))
+        self.out.write(b"".join(self._pending))
+        self.out.flush()
+        self._pending.clear()
+
+    def ready(self) -> None:
+        """Tell Java the script has loaded; :meth:`turns` does this by itself."""
+        if not self._ready_sent:
+            self._ready_sent = True
+            # control lines sent while loading go in the same write, so Java applies them at start-up
+            lines = [b'{"ready":true,"version":%d}\n' % VERSION]
+            lines += [text.encode("utf-8") + b"\n" for text in self._early_controls]
+            self._early_controls.clear()
+            self.out.write(b"".join(lines))
+            self.out.flush()
+
+    def turns(self):
+        """Yield (turn, [events]) until Java closes stdin.
+
+        ``turn`` is None when batching is off; otherwise the caller must
+        answer with :meth:`end_turn` once it has handled the events.
+        """
+        self.ready()
+        while True:
+            msg = self._read_frame() if self.binary else self._read_line()
+            if msg is None:
+                return
+            if isinstance(msg, tuple):
+                turn, evts = msg
+            elif msg.get("event") == "hello":
+                self._accept_hello(msg)
+                continue
+            elif msg.get("event") == "batch":
+                turn, evts = msg.get("turn"), msg.get("events", [])
+            else:
+                turn, evts = None, [msg]
+            if self.delta:
+                evts = [self._mirror(evt) for evt in evts]
+            if evts and evts[-1].get("event") == "budget":
+                budget = evts[-1]
+                self.level = budget["level"]
+                self.reply_due = time.perf_counter() + budget["budgetUs"] / 1e6
+            yield turn, evts
+
+    def events(self):
+        """Yield event dicts until Java closes stdin (unbatched use only)."""
+        for _, evts in self.turns():
+            yield from evts
+
+    def _mirror(self, evt: dict) -> dict:
+        """Track the tick state; turn a tickDelta back into a full tick."""
+        event = evt.get("event")
+        if event == "tick":
+            self.state = dict(evt)
+        elif event == "tickDelta":
+            self.state.update(evt)
+            self.state["event"] = "tick"
+            return dict(self.state)
+        return evt
+
+    def _accept_hello(self, hello: dict) -> None:
+        ack = {"ack": "json"}
+        ring = None
+        if hello.get("version") == VERSION:
+            protocol = hello.get("protocol")
+            if protocol == "shm":
+                try:
+                    ring = SharedRing(hello["path"])
+                    ack["ack"] = "shm"
+                except (KeyError, OSError, ValueError) as ex:
+                    print(f"bridge: shared memory unavailable ({ex}), using pipes",
+                          file=sys.stderr)
+                    ack["ack"] = "binary"
+            elif protocol == "binary":
+                ack["ack"] = "binary"
+            ack["batch"] = bool(hello.get("batch"))
+            if hello.get("delta"):
+                ack["delta"] = True
+        self.send(json.dumps(ack, separators=(",", ":")))
+        if ring is not None:
+            self.inp = self.out = ring
+        self.binary = ack["ack"] != "json"
+        self.batch = ack.get("batch", False)
+        self.delta = ack.get("delta", False)
+
+    def _read_line(self):
+        while True:
+            line = self.inp.readline()
+            if not line:
+                return None
+            line = line.strip()
+            if not line:
+                continue
+            try:
+                return json.loads(line)
+            except json.JSONDecodeError:
+                continue
+
+    def _read_frame(self):
+        header = self._read_exact(_HEADER.size)
+        if header is None:
+            return None
+        payload = self._read_exact(_HEADER.unpack(header)[0])
+        if payload is None:
+            return None
+        if payload[0] == BATCH_TAG:
+            return decode_batch(payload)
+        return decode_event(payload)
+
+    def _read_exact(self, n: int):
+        return _read_exact(self.inp, n)
+
+
+def _read_exact(stream, n: int):
+    data = stream.read(n)
+    while data is not None and 0 < len(data) < n:
+        more = stream.read(n - len(data))
+        if not more:
+            return None
+        data += more
+    return data if data and len(data) == n else None
+
+
+_default = None
+_local = threading.local()
+
+
+def _bridge() -> Bridge:
+    bridge = getattr(_local, "bridge", None)
+    if bridge is not None:
+        return bridge
+    global _default
+    if _default is None:
+        _default = Bridge()
+    return _default
+
+
+def send(cmd: str) -> None:
+    """Send one command using the current bot's bridge (stdin/stdout by default)."""
+    _bridge().send(cmd)
+
+
+def rule(name: str, spec: str) -> None:
+    """Have Java run ``<event> [if <conditions>] => <commands>`` itself, as rule ``name``."""
+    _bridge().control(f"rule {name} {spec}")
+
+
+def remove_rule(name: str = "*") -> None:
+    """Drop the rule ``name``, or every rule."""
+    _bridge().control(f"rule {name} off")
+
+
+def track(on: bool = True) -> None:
+    """Receive ``enemy`` summaries instead of raw ``scanned`` events (or go back to those)."""
+    _bridge().control("track on" if on else "track off")
+
+
+def go_to(x: float, y: float) -> None:
+    """Have Java drive to (``x``, ``y``) and stop there."""
+    _bridge().control(f"goTo {x} {y}")
+
+
+def lock_radar(bot_id: int) -> None:
+    """Have Java keep the radar on ``bot_id``, spinning it while the bot is lost."""
+    _bridge().control(f"lockRadar {bot_id}")
+
+
+def aim(bot_id: int, power: float = 1.0, mode: str = "linear") -> None:
+    """Have Java aim at ``bot_id`` and fire ``power`` whenever it is on target.
+
+    ``mode`` is ``head``, ``linear`` or ``circular``; power 0 only aims.
+    """
+    _bridge().control(f"aim {bot_id} {power} {mode}")
+
+
+def cancel(controller: str) -> None:
+    """Stop ``"goTo"``, ``"lockRadar"`` or ``"aim"``."""
+    _bridge().control(f"{controller} off")
+
+
+def level() -> int:
+    """The load level of the current turn: FULL, REDUCED or MINIMAL (always FULL without ``bridge.budget``)."""
+    return _bridge().level
+
+
+def time_left():
+    """Seconds left to answer the current turn, or None without ``bridge.budget``."""
+    due = _bridge().reply_due
+    return None if due is None else max(0.0, due - time.perf_counter())
+
+
+def predict(evt: dict, turns: int = 1) -> dict:
+    """A copy of ``evt`` with the bot moved ``turns`` turns ahead.
+
+    Speed and direction carry on as they are; for ``enemy`` events the
+    measured ``acceleration`` and ``turnRate`` carry on too. Walls and
+    collisions are ignored.
+    """
+    out = dict(evt)
+    x, y = evt["x"], evt["y"]
+    direction, speed = evt["direction"], evt["speed"]
+    acceleration = evt.get("acceleration", 0.0)
+    turn_rate = evt.get("turnRate", 0.0)
+    for _ in range(turns):
+        direction = (direction + turn_rate) % 360
+        speed = max(-MAX_SPEED, min(MAX_SPEED, speed + acceleration))
+        x += math.cos(math.radians(direction)) * speed
+        y += math.sin(math.radians(direction)) * speed
+    out.update(x=x, y=y, direction=direction, speed=speed)
+    return out
+
+
+def serve(handler, bridge=None) -> None:
+    """Call ``handler(evt)`` for every event until Java closes the pipe."""
+    bridge = bridge or _bridge()
+    for turn, evts in bridge.turns():
+        for evt in evts:
+            handler(evt)
+        if turn is not None:
+            bridge.end_turn(turn)
+
+
+# ── host mode: many bots over one pair of pipes ──────────────────────
+class _MuxStream:
+    """One bot's end of the multiplexed pipes, used as both inp and out of a Bridge."""
+
+    def __init__(self, bot_id: int, out, lock):
+        self.bot_id = bot_id
+        self._out = out
+        self._lock = lock
+        self._buf = bytearray()
+        self._pending = bytearray()
+        self._closed = False
+        self._cond = threading.Condition()
+
+    def feed(self, data: bytes) -> None:
+        """Append bytes from Java; empty data means Java closed this bot."""
+        with self._cond:
+            if data:
+                self._buf += data
+            else:
+                self._closed = True
+            self._cond.notify()
+
+    def read(self, n: int) -> bytes:
+        with self._cond:
+            while not self._buf and not self._closed:
+                self._cond.wait()
+            data = bytes(self._buf[:n])
+            del self._buf[:n]
+            return data
+
+    def readline(self) -> bytes:
+        with self._cond:
+            while True:
+                end = self._buf.find(b"\n")
+                if end >= 0 or self._closed:
+                    end = end + 1 if end >= 0 else len(self._buf)
+                    data = bytes(self._buf[:end])
+                    del self._buf[:end]
+                    return data
+                self._cond.wait()
+
+    def write(self, data: bytes) -> None:
+        self._pending += data
+
+    def flush(self) -> None:
+        if self._pending:
+            self._send(bytes(self._pending))
+            self._pending.clear()
+
+    def close(self) -> None:
+        self._send(b"")
+
+    def _send(self, payload: bytes) -> None:
+        with self._lock:
+            self._out.write(_MUX.pack(len(payload) + 2, self.bot_id) + payload)
+            self._out.flush()
+
+
+def _load_script(script_path: str, name: str):
+    """A private copy of the script, so module globals are per bot too."""
+    spec = importlib.util.spec_from_file_location(name, script_path)
+    module = importlib.util.module_from_spec(spec)
+    spec.loader.exec_module(module)
+    return module
+
+
+def _run_session(script_path: str, stream: _MuxStream) -> None:
+    bridge = Bridge(stream, stream)
+    _local.bridge = bridge
+    try:
+        module = _load_script(script_path, f"_bot_{stream.bot_id}")
+        serve(module.handle_event, bridge)
+    except Exception:
+        traceback.print_exc()
+    finally:
+        stream.close()
+
+
+def host(script_path: str) -> None:
+    """Serve every bot that Java opens on stdin/stdout until stdin closes.
+
+    Java opens a bot with an empty frame for a new id and closes it with an
+    empty frame for a known one; we answer an empty frame when a session ends.
+    An empty frame for id 0 tells Java the host itself is up.
+    """
+    inp, out = sys.stdin.buffer, sys.stdout.buffer
+    sys.stdout = sys.stderr  # stdout carries frames only from here on
+    out.write(_MUX.pack(2, 0))
+    out.flush()
+    lock = threading.Lock()
+    sessions = {}
+    while True:
+        header = _read_exact(inp, _MUX.size)
+        if header is None:
+            break
+        length, bot_id = _MUX.unpack(header)
+        payload = _read_exact(inp, length - 2) if length > 2 else b""
+        if payload is None:
+            break
+        stream = sessions.get(bot_id)
+        if stream is None:
+            stream = sessions[bot_id] = _MuxStream(bot_id, out, lock)
+            threading.Thread(target=_run_session, args=(script_path, stream),
+                             name=f"bot-{bot_id}", daemon=True).start()
+            if not payload:
+                continue
+        elif not payload:
+            del sessions[bot_id]
+        stream.feed(payload)
+    for stream in sessions.values():
+        stream.feed(b"")
+
+
+# ── server mode: bots connecting over TCP ────────────────────────────
+def _evict(saved: dict, keep: float, max_sessions: int) -> None:
+    """Forget sessions idle for more than ``keep`` seconds, then the longest idle beyond ``max_sessions``.
+
+    Sessions in use are never evicted. Call with the lock held.
+    """
+    now = time.monotonic()
+    idle = [(entry["idle_since"], name) for name, entry in saved.items() if not entry["busy"]]
+    idle.sort()
+    excess = len(saved) - max_sessions
+    for since, name in idle:
+        if now - since > keep or excess > 0:
+            del saved[name]
+            excess -= 1
+
+
+def _run_connection(script_path: str, conn, saved: dict, lock, keep: float, max_sessions: int) -> None:
+    inp = conn.makefile("rb")
+    out = conn.makefile("wb")
+    entry = None
+    try:
+        words = inp.readline().decode("utf-8", "replace").split()
+        if len(words) != 2 or words[0] != "session":
+            print(f"bridge: expected 'session <name>', got {' '.join(words)!r}", file=sys.stderr)
+            return
+        name = words[1]
+        bridge = Bridge(inp, out)
+        _local.bridge = bridge
+        with lock:
+            _evict(saved, keep, max_sessions)
+            entry = saved.get(name)
+            if entry is not None and entry["busy"]:
+                entry = None  # the name is in use: this bot gets a copy of its own
+            elif entry is not None:
+                entry["busy"] = True
+        if entry is None:
+            module = _load_script(script_path, f"_bot_{name}")
+            entry = {"module": module, "controls": bridge.controls, "busy": True, "idle_since": 0.0}
+            with lock:
+                saved.setdefault(name, entry)
+        else:
+            bridge.controls = entry["controls"]
+            bridge._early_controls = list(bridge.controls.values())
+        serve(entry["module"].handle_event, bridge)
+    except Exception:
+        traceback.print_exc()
+    finally:
+        if entry is not None:
+            with lock:
+                entry["busy"] = False
+                entry["idle_since"] = time.monotonic()
+                _evict(saved, keep, max_sessions)
+        conn.close()
+
+
+def serve_tcp(script_path: str, address: str, keep: float = 3600.0, max_sessions: int = 256) -> None:
+    """Serve every bot that connects to ``[host:]port`` (loopback by default), until killed.
+
+    A session's copy of the script is kept for ``keep`` seconds after its bot
+    disconnects, and at most ``max_sessions`` sessions are kept at all.
+    """
+    host_name, _, port = address.rpartition(":")
+    listener = socket.create_server((host_name or "127.0.0.1", int(port)))
+    print(f"bridge: serving {script_path} on {listener.getsockname()}", file=sys.stderr)
+    saved = {}
+    lock = threading.Lock()
+    while True:
+        conn, _ = listener.accept()
+        conn.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+        threading.Thread(target=_run_connection, args=(script_path, conn, saved, lock, keep, max_sessions),
+                         name=f"conn-{conn.fileno()}", daemon=True).start()
+
+
+if __name__ == "__main__":
+    if len(sys.argv) == 3 and sys.argv[1] == "--host":
+        # run through the importable module so scripts share its thread-local state
+        import bridge_protocol
+        bridge_protocol.host(sys.argv[2])
+    elif len(sys.argv) in (4, 6, 8) and sys.argv[1] == "--serve":
+        import bridge_protocol
+        options = dict(zip(sys.argv[4::2], sys.argv[5::2]))
+        keep = float(options.pop("--keep", 3600))
+        max_sessions = int(options.pop("--max-sessions", 256))
+        if options:
+            sys.exit(f"unknown options: {' '.join(options)}")
+        bridge_protocol.serve_tcp(sys.argv[3], sys.argv[2], keep, max_sessions)
+    else:
+        print("usage: bridge_protocol.py --host <strategy script>\n"
+              "       bridge_protocol.py --serve [host:]<port> <strategy script>"
+              " [--keep <seconds>] [--max-sessions <n>]", file=sys.stderr)
+        sys.exit(2)
@@ -0,0 +1,18 @@
+@echo off
+setlocal
+
+:: Build an AppCDS archive of the bridge and bot API classes for the jar that
+:: mvn package left in target\. Run again after the jar or the JDK changes.
+cd /d "%~dp0target"
+set JAR=robocode-python-relay-1.0.jar
+
+:: Training run: load every class of the jar and of lib\ and list them
+java -Xshare:off -XX:DumpLoadedClassList=relay.classlist -jar %JAR% --cds-train
+if errorlevel 1 exit /b 1
+
+:: Dump the listed classes into the archive
+java -Xshare:dump -XX:SharedClassListFile=relay.classlist -XX:SharedArchiveFile=relay.jsa -jar %JAR%
+if errorlevel 1 exit /b 1
+
+echo Start the bot with: java -XX:SharedArchiveFile=relay.jsa -jar %JAR% ^<server-url^> ^<secret^>
+endlocal
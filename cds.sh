@@ -0,0 +1,13 @@
+#!/bin/sh
+# Build an AppCDS archive of the bridge and bot API classes for the jar that
+# `mvn package` left in target/. The archive only matches that jar and the
+# JDK it was built with; run this again after either changes.
+
+set -e
+cd "$(dirname "$0")/target"
+JAR=robocode-python-relay-1.0.jar
+# Training run: load every class of the jar and of lib/ and list them
+java -Xshare:off -XX:DumpLoadedClassList=relay.classlist -jar "$JAR" --cds-train
+# Dump the listed classes into the archive
+java -Xshare:dump -XX:SharedClassListFile=relay.classlist -XX:SharedArchiveFile=relay.jsa -jar "$JAR"
+echo "Start the bot with: java -XX:SharedArchiveFile=relay.jsa -jar $JAR <server-url> <secret>"
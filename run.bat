@@ -1,7 +1,7 @@
 @echo off
 setlocal
 if not exist build mkdir build
-javac --release 11 -d build -cp "lib/*" PythonBridgeBot.java Launcher.java
+javac --release 11 -d build -cp "lib/*" -sourcepath . PythonBridgeBot.java Launcher.java
 if errorlevel 1 (
     echo Compilation failed.
     exit /b 1
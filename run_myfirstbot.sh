@@ -3,5 +3,5 @@
 # Requires the Robocode Tank Royale API jars under ./lib
 set -e
 mkdir -p build
-javac --release 11 -d build -cp "lib/*" MyFirstBot.java
+javac --release 11 -d build -cp "lib/*" -sourcepath . MyFirstBot.java
 java -cp "lib/*:build" MyFirstBot "$@"
@@ -0,0 +1,113 @@
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The per-turn hot path allocates nothing once warmed up: queueing a turn's
+ * events, encoding them as JSON and as binary frames, parsing Python's reply
+ * and dispatching its commands through the ring and the command slots.
+ * Measured with the allocation counter of the current thread, which counts
+ * every byte the thread takes from the heap.
+ */
+class AllocationTest {
+
+    private static final int WARM_UP_TURNS = 50_000;
+    private static final int TURNS = 10_000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private final EventQueue queue = new EventQueue();
+    private final EventJson json = new EventJson();
+    private final ByteBuffer frame = BinaryProtocol.newBuffer(256);
+    private final CommandParser parser = new CommandParser();
+    private final CommandRing ring = new CommandRing(64);
+    private final CommandSlots slots = new CommandSlots(CommandSlots.Merge.SUM);
+    private final byte[] reply = ascii("forward 150\n{\"cmd\":\"turnRight\",\"angle\":45}\n"
+            + "turnGunLeft 360\n{\"cmd\":\"fire\",\"power\":\"1.5\",\"note\":\"a, b\"}\nfire 1.5\n");
+
+    private double applied;
+    private final PythonLink.CommandHandler bot = (opcode, power, distance, angle) ->
+            applied += opcode + power + distance + angle;
+
+    @BeforeAll
+    static void counter() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(mx instanceof com.sun.management.ThreadMXBean,
+                "this JVM cannot count allocated bytes");
+        threads = (com.sun.management.ThreadMXBean) mx;
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    void turnAllocatesNothingAfterWarmUp() {
+        for (int turn = 1; turn <= WARM_UP_TURNS; turn++) {
+            turn(turn);
+        }
+        long before = allocated();
+        long overhead = allocated() - before;
+        before = allocated();
+        for (int turn = 1; turn <= TURNS; turn++) {
+            turn(turn);
+        }
+        long bytes = allocated() - before - overhead;
+        assertEquals(0, bytes / TURNS, bytes + " bytes allocated over " + TURNS + " turns");
+    }
+
+    /** One turn as the bot runs it; returns something so nothing is optimised away. */
+    private int turn(int turn) {
+        BridgeEvent e = queue.add(EventType.TICK);
+        e.ints[0] = turn;
+        for (int i = 0; i < EventType.TICK.doubleFields.length; i++) {
+            e.doubles[i] = turn * 0.5 + i;
+        }
+        e = queue.add(EventType.SCANNED);
+        e.ints[0] = 2;
+        for (int i = 0; i < EventType.SCANNED.doubleFields.length; i++) {
+            e.doubles[i] = 100.25 * i - turn;
+        }
+        queue.coalesce();
+
+        int written = 0;
+        json.reset().batchStart(turn);
+        frame.clear();
+        for (int i = 0; i < queue.size(); i++) {
+            if (i > 0) {
+                json.put(',');
+            }
+            json.event(queue.get(i));
+            BinaryProtocol.writeEvent(queue.get(i), frame);
+        }
+        written += json.batchEnd().newline().length() + frame.position();
+        queue.clear();
+
+        int start = 0;
+        for (int i = 0; i < reply.length; i++) {
+            if (reply[i] == '\n') {
+                if (parser.parse(reply, start, i - start)) {
+                    ring.offer(parser.opcode, parser.power, parser.distance, parser.angle);
+                }
+                start = i + 1;
+            }
+        }
+        while (ring.poll()) {
+            slots.onCommand(ring.opcode, ring.power, ring.distance, ring.angle);
+        }
+        slots.apply(bot);
+        return written;
+    }
+
+    private static long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,249 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Random and mutated lines against {@link CommandParser}: it never throws,
+ * a false result always comes with a reason, and every number it accepts is
+ * the double {@link Double#parseDouble} makes of the same literal, on the
+ * fast path (up to 15 digits, exponent within ±22) and off it, in the text
+ * form and the JSON form. The seed is fixed so that a failure repeats;
+ * -Dtest.seed picks another.
+ */
+class CommandParserPropertyTest {
+
+    private static final int RUNS = 200_000;
+    private static final long SEED = Long.getLong("test.seed", 20240611L);
+
+    private static final String[] COMMANDS = {
+            "forward", "back", "turnLeft", "turnRight", "turnGunLeft", "turnGunRight",
+            "turnRadarLeft", "turnRadarRight", "fire"
+    };
+    private static final String[] KEYS = {"power", "distance", "angle"};
+    private static final String[] SEEDS = {
+            "forward 150",
+            "fire 1.5",
+            "turnGunLeft -360",
+            "turnRadarRight 4.5e1",
+            "rescan",
+            "{\"cmd\":\"forward\",\"distance\":150}",
+            "{\"cmd\":\"fire\",\"power\":\"2.25\"}",
+            "{ \"cmd\" : \"turnRight\" , \"angle\" : -45.0e-1 , \"note\" : \"a, b}\" }",
+            "{\"note\":{\"nested\":[1,{\"angle\":9}]},\"cmd\":\"turnLeft\",\"angle\":1E+2}",
+    };
+    /** What mutations insert: the bytes that matter to the parser, and a few that should not appear. */
+    private static final byte[] ALPHABET = ascii("0123456789+-.eE \t\"{}[]:,\\xaz\u0000\u007f");
+
+    private final CommandParser parser = new CommandParser();
+    private final Random random = new Random(SEED);
+
+    @Test
+    void textNumbersAgreeWithParseDouble() {
+        for (int i = 0; i < RUNS; i++) {
+            String literal = literal();
+            String command = COMMANDS[random.nextInt(COMMANDS.length)];
+            String line = command + " " + space() + literal + space();
+            double expected = Double.parseDouble(literal);
+            assertParses(line);
+            assertEquals(expected, parser.power, line);
+            assertEquals(expected, parser.distance, line);
+            assertEquals(expected, parser.angle, line);
+        }
+    }
+
+    @Test
+    void jsonNumbersAgreeWithParseDouble() {
+        for (int i = 0; i < RUNS; i++) {
+            String literal = literal();
+            String key = KEYS[random.nextInt(KEYS.length)];
+            String value = random.nextBoolean() ? literal : "\"" + literal + "\"";
+            String line = "{\"cmd\":\"" + COMMANDS[random.nextInt(COMMANDS.length)] + "\","
+                    + space() + "\"" + key + "\"" + space() + ":" + space() + value + space() + "}";
+            double expected = Double.parseDouble(literal);
+            assertParses(line);
+            double actual = key.equals("power") ? parser.power
+                    : key.equals("distance") ? parser.distance : parser.angle;
+            assertEquals(expected, actual, line);
+        }
+    }
+
+    @Test
+    void mutatedLinesFailCleanlyOrAgree() {
+        for (int i = 0; i < RUNS; i++) {
+            byte[] line = mutate(ascii(SEEDS[random.nextInt(SEEDS.length)]));
+            String text = new String(line, StandardCharsets.ISO_8859_1);
+            if (!parse(line, text)) {
+                continue;
+            }
+            if (line.length > 0 && trimmed(text).charAt(0) != '{') {
+                // the text form: a command name and at most one number
+                String[] tokens = trimmed(text).split("[ \\t\\r\\n]+");
+                assertTrue(tokens.length <= 2, text);
+                if (tokens.length == 2) {
+                    assertEquals(Double.parseDouble(tokens[1]), parser.power, text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void randomBytesFailCleanly() {
+        byte[] buf = new byte[64];
+        for (int i = 0; i < RUNS; i++) {
+            random.nextBytes(buf);
+            int off = random.nextInt(buf.length);
+            int len = random.nextInt(buf.length - off + 1);
+            if (random.nextBoolean()) {
+                for (int j = off; j < off + len; j++) {
+                    buf[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+                }
+            }
+            String text = new String(buf, off, len, StandardCharsets.ISO_8859_1);
+            try {
+                if (parser.parse(buf, off, len)) {
+                    assertNull(parser.error, text);
+                } else {
+                    assertNotNull(parser.error, text);
+                }
+            } catch (RuntimeException e) {
+                fail("Threw on '" + text + "' (seed " + SEED + ")", e);
+            }
+        }
+    }
+
+    @Test
+    void garbageAfterTheCommandFails() {
+        String[] lines = {
+                "forward 150 abc", "fire 1 2", "rescan now", "forward 150abc",
+                "{\"cmd\":\"fire\",\"power\":1} x", "{\"cmd\":\"fire\"}{\"cmd\":\"fire\"}"
+        };
+        for (String line : lines) {
+            byte[] b = ascii(line);
+            assertFalse(parser.parse(b, 0, b.length), line);
+            assertNotNull(parser.error, line);
+        }
+    }
+
+    /** Parses {@code line}, failing the test if the parser throws or leaves error inconsistent. */
+    private boolean parse(byte[] line, String text) {
+        boolean ok;
+        try {
+            ok = parser.parse(line, 0, line.length);
+        } catch (RuntimeException e) {
+            throw new AssertionError("Threw on '" + text + "' (seed " + SEED + ")", e);
+        }
+        if (ok) {
+            assertNull(parser.error, text);
+            assertTrue(parser.opcode >= 0, text);
+        } else {
+            assertNotNull(parser.error, text);
+        }
+        return ok;
+    }
+
+    private void assertParses(String line) {
+        assertTrue(parse(ascii(line), line), () -> line + ": " + parser.error + " (seed " + SEED + ")");
+    }
+
+    /**
+     * A decimal literal of the shapes Python's str() and repr() write and
+     * beyond: leading zeros, no integer or fraction part, up to 25 digits,
+     * exponents near and far past the fast path's ±22 and the double range.
+     */
+    private String literal() {
+        StringBuilder sb = new StringBuilder();
+        switch (random.nextInt(3)) {
+            case 0:
+                sb.append('-');
+                break;
+            case 1:
+                if (random.nextInt(4) == 0) {
+                    sb.append('+');
+                }
+                break;
+            default:
+                break;
+        }
+        int intDigits = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(random.nextBoolean() ? 4 : 25);
+        int fracDigits = random.nextInt(3) == 0 ? -1 : random.nextInt(random.nextBoolean() ? 4 : 25);
+        if (intDigits == 0 && fracDigits <= 0) {
+            intDigits = 1;
+        }
+        digits(sb, intDigits);
+        if (fracDigits >= 0) {
+            sb.append('.');
+            digits(sb, fracDigits);
+        }
+        if (random.nextBoolean()) {
+            sb.append(random.nextBoolean() ? 'e' : 'E');
+            int r = random.nextInt(3);
+            if (r == 0) {
+                sb.append('-');
+            } else if (r == 1) {
+                sb.append('+');
+            }
+            sb.append(random.nextBoolean() ? random.nextInt(30) : random.nextInt(400));
+        }
+        return sb.toString();
+    }
+
+    private void digits(StringBuilder sb, int n) {
+        boolean zeros = random.nextInt(5) == 0;
+        for (int i = 0; i < n; i++) {
+            sb.append(zeros && random.nextBoolean() ? '0' : (char) ('0' + random.nextInt(10)));
+        }
+    }
+
+    private String space() {
+        int r = random.nextInt(6);
+        return r == 0 ? " " : r == 1 ? "\t " : "";
+    }
+
+    private byte[] mutate(byte[] line) {
+        StringBuilder sb = new StringBuilder(new String(line, StandardCharsets.ISO_8859_1));
+        int edits = 1 + random.nextInt(3);
+        for (int i = 0; i < edits; i++) {
+            int at = sb.length() == 0 ? 0 : random.nextInt(sb.length());
+            char c = (char) (ALPHABET[random.nextInt(ALPHABET.length)] & 0xff);
+            switch (random.nextInt(5)) {
+                case 0:
+                    sb.insert(at, c);
+                    break;
+                case 1:
+                    if (sb.length() > 0) {
+                        sb.setCharAt(at, c);
+                    }
+                    break;
+                case 2:
+                    if (sb.length() > 0) {
+                        sb.deleteCharAt(at);
+                    }
+                    break;
+                case 3:
+                    sb.setLength(at);
+                    break;
+                default:
+                    int to = at + random.nextInt(sb.length() - at + 1);
+                    sb.insert(at, sb.substring(at, to));
+                    break;
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String trimmed(String s) {
+        return s.replaceAll("^[ \\t\\r\\n]+|[ \\t\\r\\n]+$", "");
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
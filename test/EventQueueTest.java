@@ -0,0 +1,128 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A backlog that outgrows bridge.eventQueueLimit while Python is behind:
+ * coalesce and trim, run as TurnExchange runs them before a send, must keep
+ * every critical event in order, only the newest state, and the newest
+ * droppable events that still fit.
+ */
+class EventQueueTest {
+
+    private final int limit = BridgeConfig.eventQueueLimit();
+    private final EventQueue q = new EventQueue();
+    private final BridgeMetrics metrics = new BridgeMetrics("EventQueueTest");
+
+    @Test
+    void backlogPastTheLimitKeepsCriticalAndLatestState() {
+        int turns = limit;
+        List<Integer> hits = new ArrayList<>();
+        for (int turn = 1; turn <= turns; turn++) {
+            BridgeEvents.tick(q, turn, 100 - turn, turn, turn, 0, 0, 0, 0, 8);
+            BridgeEvents.scanned(q, 1, turn, 10 * turn, 0, 0, 8);
+            BridgeEvents.scanned(q, 2, turn, 20 * turn, 0, 0, 8);
+            BridgeEvents.hitWall(q);
+            if (turn % 4 == 0) {
+                BridgeEvents.hitByBullet(q, turn, 90);
+                hits.add(turn);
+            }
+        }
+        BridgeEvents.opponentDeath(q, 2);
+        int criticals = hits.size() + 1;
+        assertTrue(q.size() > limit);
+
+        metrics.eventsCoalesced(q.coalesce(), q.trim(limit));
+
+        // one tick and one scan per bot are left of the state; the droppable
+        // hitWalls make room for the rest, oldest first
+        int supersededState = 3 * (turns - 1);
+        int dropped = 3 + turns + criticals - limit;
+        assertEquals(supersededState, metrics.getCoalescedEvents());
+        assertEquals(dropped, metrics.getDroppedEvents());
+        assertEquals(limit, q.size());
+
+        List<Integer> hitsLeft = new ArrayList<>();
+        int ticks = 0;
+        int hitWalls = 0;
+        for (int i = 0; i < q.size(); i++) {
+            BridgeEvent e = q.get(i);
+            switch (e.type) {
+                case TICK:
+                    ticks++;
+                    assertEquals(turns, e.ints[0]);
+                    break;
+                case SCANNED:
+                    assertEquals(e.ints[0] * 10 * turns, e.doubles[1]);
+                    break;
+                case HIT_BY_BULLET:
+                    hitsLeft.add((int) e.doubles[0]);
+                    break;
+                case HIT_WALL:
+                    hitWalls++;
+                    break;
+                case OPPONENT_DEATH:
+                    assertEquals(q.size() - 1, i);
+                    break;
+                default:
+                    throw new AssertionError("unexpected " + e.type);
+            }
+        }
+        assertEquals(1, ticks);
+        assertEquals(2, count(EventType.SCANNED));
+        assertEquals(hits, hitsLeft);
+        assertEquals(turns - dropped, hitWalls);
+    }
+
+    @Test
+    void newestScanOfEachBotSurvives() {
+        BridgeEvents.scanned(q, 1, 50, 1, 0, 0, 0);
+        BridgeEvents.scanned(q, 2, 50, 2, 0, 0, 0);
+        BridgeEvents.scanned(q, 1, 40, 3, 0, 0, 0);
+        BridgeEvents.scanned(q, 3, 50, 4, 0, 0, 0);
+        BridgeEvents.scanned(q, 2, 30, 5, 0, 0, 0);
+
+        assertEquals(2, q.coalesce());
+        assertEquals(3, q.size());
+        // each keeps the place of its newest scan
+        assertEquals(1, q.get(0).ints[0]);
+        assertEquals(3.0, q.get(0).doubles[1]);
+        assertEquals(3, q.get(1).ints[0]);
+        assertEquals(2, q.get(2).ints[0]);
+        assertEquals(5.0, q.get(2).doubles[1]);
+    }
+
+    @Test
+    void criticalEventsAloneMayExceedTheLimit() {
+        for (int i = 0; i < limit + 10; i++) {
+            BridgeEvents.bulletHitBot(q, 2, i);
+        }
+        BridgeEvents.tick(q, 1, 100, 0, 0, 0, 0, 0, 0, 0);
+        BridgeEvents.custom(q);
+
+        metrics.eventsCoalesced(q.coalesce(), q.trim(limit));
+
+        // the droppable event goes first, then the state, but nothing critical
+        assertEquals(0, metrics.getCoalescedEvents());
+        assertEquals(2, metrics.getDroppedEvents());
+        assertEquals(limit + 10, q.size());
+        for (int i = 0; i < q.size(); i++) {
+            assertEquals(EventType.BULLET_HIT_BOT, q.get(i).type);
+            assertEquals(i, q.get(i).doubles[0]);
+        }
+    }
+
+    private int count(EventType type) {
+        int n = 0;
+        for (int i = 0; i < q.size(); i++) {
+            if (q.get(i).type == type) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
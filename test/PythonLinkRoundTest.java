@@ -0,0 +1,128 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batched, pipelined replies across a round boundary. In pipelined mode the
+ * reply to a round's final turn is still on its way when the next round
+ * starts; it must be taken out of the way by newRound rather than arrive
+ * later and pass for the reply to a turn of the new round.
+ *
+ * The Python side is played by a thread behind a pair of pipes. It answers
+ * every batch with "fire <round>" and the batch's end marker, and takes its
+ * time over the reply to the last turn of round 1.
+ */
+class PythonLinkRoundTest {
+
+    private static final Pattern TURN = Pattern.compile("\"turn\":(\\d+)");
+    private static final long SLOW_REPLY_MS = 50;
+
+    private final PipedInputStream fromJava = new PipedInputStream(1 << 16);
+    private final PipedInputStream fromPython = new PipedInputStream(1 << 16);
+    private Thread python;
+
+    private final List<Double> fired = new ArrayList<>();
+    private final PythonLink.CommandHandler bot = (opcode, power, distance, angle) -> {
+        if (opcode == BinaryProtocol.CMD_FIRE) {
+            fired.add(power);
+        }
+    };
+
+    @AfterEach
+    void stopPython() {
+        if (python != null) {
+            python.interrupt();
+        }
+    }
+
+    @Test
+    void lastReplyOfARoundIsNotAppliedInTheNext() throws Exception {
+        PythonLink link = connect(2);
+        EventQueue events = new EventQueue();
+
+        // pipelined: the reply to the round's last turn is still owed when it ends
+        for (int turn = 1; turn <= 2; turn++) {
+            if (turn > 1) {
+                link.collectCommands(bot);
+            }
+            send(link, events, turn);
+        }
+        link.newRound();
+        long discarded = link.discardedReplies();
+        assertTrue(discarded >= 1, "the reply to round 1's last turn is dropped");
+
+        fired.clear();
+        for (int turn = 1; turn <= 3; turn++) {
+            send(link, events, turn);
+            assertTrue(link.awaitCommands(bot, System.nanoTime() + 1_000_000_000L), "turn " + turn);
+        }
+        assertEquals(List.of(2.0, 2.0, 2.0), fired, "round 2 applied only its own replies");
+        assertEquals(discarded, link.discardedReplies(), "no reply discarded in round 2");
+    }
+
+    private static void send(PythonLink link, EventQueue events, int turn) throws IOException {
+        events.add(EventType.TICK).ints[0] = turn;
+        link.sendBatch(turn, events);
+    }
+
+    /** A link over pipes to a fake Python that is slow with the reply to turn {@code slowTurn} of round 1. */
+    private PythonLink connect(int slowTurn) throws IOException {
+        OutputStream toPython = new PipedOutputStream(fromJava);
+        PipedOutputStream toJava = new PipedOutputStream(fromPython);
+        python = new Thread(() -> answer(toJava, slowTurn), "fake-python");
+        python.setDaemon(true);
+        python.start();
+
+        PythonLink link = new PythonLink(fromPython, toPython, null, null, false);
+        link.setMaxReplyLag(1);
+        assertTrue(link.negotiate(BinaryProtocol.PROTOCOL_JSON, true, 1000));
+        link.startReader();
+        return link;
+    }
+
+    private void answer(OutputStream out, int slowTurn) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(fromJava, StandardCharsets.UTF_8))) {
+            in.readLine(); // the hello
+            write(out, "{\"ack\":\"json\",\"batch\":true}\n");
+            int round = 1;
+            int lastTurn = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                Matcher m = TURN.matcher(line);
+                if (!m.find()) {
+                    continue;
+                }
+                int turn = Integer.parseInt(m.group(1));
+                if (turn <= lastTurn) {
+                    round++;
+                }
+                lastTurn = turn;
+                if (round == 1 && turn == slowTurn) {
+                    Thread.sleep(SLOW_REPLY_MS);
+                }
+                write(out, "fire " + round + "\n" + BinaryProtocol.END_TURN_TEXT + turn + "\n");
+            }
+        } catch (IOException | InterruptedException e) {
+            // the test is over
+        }
+    }
+
+    private static void write(OutputStream out, String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
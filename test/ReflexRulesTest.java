@@ -0,0 +1,133 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** Rules as Python sends them, and what they do with the events the bot queues. */
+class ReflexRulesTest {
+
+    private static final String GUN = "rule gun scanned if distance < 300 and my.gunHeat == 0 => fire 2";
+
+    private final ReflexRules rules = new ReflexRules();
+    private final EventQueue q = new EventQueue();
+    private final List<String> issued = new ArrayList<>();
+    private final PythonLink.CommandHandler bot = (opcode, power, distance, angle) ->
+            issued.add(BinaryProtocol.commandName(opcode) + " " + power);
+
+    @Test
+    void ruleFiresForTheEventJustQueued() {
+        assertNull(rules.define(GUN));
+        tick(100, 100, 0);
+        scan(1, 200, 200);
+
+        assertEquals(1, rules.onQueued(q, bot));
+        assertEquals(List.of("fire 2.0"), issued);
+    }
+
+    @Test
+    void conditionsRejectEvents() {
+        assertNull(rules.define(GUN));
+        tick(100, 100, 0);
+        scan(1, 500, 100); // too far
+        assertEquals(0, rules.onQueued(q, bot));
+
+        tick(100, 100, 0.4); // gun still hot
+        scan(1, 150, 100);
+        assertEquals(0, rules.onQueued(q, bot));
+
+        tick(100, 100, 0);
+        BridgeEvents.hitWall(q); // not the rule's event
+        assertEquals(0, rules.onQueued(q, bot));
+        assertEquals(List.of(), issued);
+    }
+
+    @Test
+    void rulesAreReplacedAndClearedMidRound() {
+        assertNull(rules.define(GUN));
+        assertNull(rules.define("rule dodge hitByBullet => turnLeft 90 ; forward 100"));
+        tick(100, 100, 0);
+
+        assertNull(rules.define("rule gun scanned => fire 0.5"));
+        assertEquals(2, rules.size());
+        scan(1, 900, 900);
+        rules.onQueued(q, bot);
+        assertEquals(List.of("fire 0.5"), issued);
+
+        assertNull(rules.define("rule gun off"));
+        assertEquals(1, rules.size());
+        scan(1, 150, 100);
+        assertEquals(0, rules.onQueued(q, bot));
+        BridgeEvents.hitByBullet(q, 4, 180);
+        assertEquals(1, rules.onQueued(q, bot));
+        assertEquals(List.of("fire 0.5", "turnLeft 90.0", "forward 100.0"), issued);
+
+        assertNull(rules.define("rule * off"));
+        assertEquals(0, rules.size());
+        BridgeEvents.hitByBullet(q, 4, 180);
+        assertEquals(0, rules.onQueued(q, bot));
+
+        assertNull(rules.define(GUN));
+        rules.clear();
+        scan(1, 150, 100);
+        assertEquals(0, rules.onQueued(q, bot));
+    }
+
+    @Test
+    void malformedRulesAreRejectedAndLeaveTheOthersAlone() {
+        assertNull(rules.define(GUN));
+        for (String text : new String[] {
+                "",
+                "rule",
+                "rule gun",
+                "rule * scanned => fire 1",
+                "rule gun nosuchEvent => fire 1",
+                "rule gun tickDelta => fire 1",
+                "rule gun scanned fire 1",
+                "rule gun scanned =>",
+                "rule gun scanned => ;",
+                "rule gun scanned => fire ;",
+                "rule gun scanned => jump 1",
+                "rule gun scanned => fire two",
+                "rule gun scanned => fire 1 2",
+                "rule gun scanned if => fire 1",
+                "rule gun scanned if distance < => fire 1",
+                "rule gun scanned if distance ~ 300 => fire 1",
+                "rule gun scanned if distance < near => fire 1",
+                "rule gun scanned if altitude < 300 => fire 1",
+                "rule gun hitWall if distance < 300 => fire 1",
+                "rule gun scanned if my.mood < 3 => fire 1",
+                "rule gun scanned if energy < 5 or energy > 3 => fire 1",
+                "rule gun scanned if energy < 5 and => fire 1",
+                "rules gun scanned => fire 1",
+        }) {
+            assertNotNull(rules.define(text), text);
+        }
+        // every truncation of a valid rule is an error or a rule, never an exception
+        List<String> words = Arrays.asList("rule dodge hitByBullet if damage >= 4 => turnLeft 90 ; forward 100"
+                .split(" "));
+        for (int n = 0; n <= words.size(); n++) {
+            rules.define(String.join(" ", words.subList(0, n)));
+        }
+        rules.define("rule dodge off");
+
+        assertEquals(1, rules.size());
+        tick(100, 100, 0);
+        scan(1, 200, 200);
+        assertEquals(1, rules.onQueued(q, bot));
+        assertEquals(List.of("fire 2.0"), issued);
+    }
+
+    private void tick(double x, double y, double gunHeat) {
+        BridgeEvents.tick(q, 1, 100, x, y, 0, 0, 0, gunHeat, 0);
+        rules.onQueued(q, bot);
+    }
+
+    private void scan(int botId, double x, double y) {
+        BridgeEvents.scanned(q, botId, 100, x, y, 0, 0);
+    }
+}
@@ -0,0 +1,28 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** A reader blocked on the ring sees the end of stream once Python is known to be gone. */
+class SharedMemoryChannelTest {
+
+    @Test
+    void blockedReadEndsWhenThePeerCloses() throws Exception {
+        try (SharedMemoryChannel shm = SharedMemoryChannel.createTemp(4096, 10, 100)) {
+            InputStream in = shm.input();
+            CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return in.read(new byte[16], 0, 16);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(50);
+            shm.peerClosed();
+            assertEquals(-1, read.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
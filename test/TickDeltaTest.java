@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ticks sent as deltas over a binary link and decoded the way Python does:
+ * frames read back with BinaryProtocol.readEvent into a mirror that takes a
+ * TICK whole and a TICK_DELTA's present fields only. The mirror must stay
+ * within bridge.tickDeltaEpsilon of every tick sent, full ticks must go out
+ * every bridge.tickKeyframeTurns and on the first tick after newRound.
+ */
+class TickDeltaTest {
+
+    private final int keyframeTurns = BridgeConfig.tickKeyframeTurns();
+    private final double epsilon = BridgeConfig.tickDeltaEpsilon();
+    private final SplittableRandom random = new SplittableRandom(12);
+    private final EventQueue q = new EventQueue();
+    private final ByteArrayOutputStream toPython = new ByteArrayOutputStream();
+    /** What each tick sent held, before the link rewrote it into a delta. */
+    private final List<double[]> sent = new ArrayList<>();
+    private final double[] state = {100, 400, 300, 90, 90, 90, 3, 0};
+
+    @Test
+    void mirrorStaysWithinEpsilonWithKeyframesEveryRoundAndInterval() throws IOException {
+        PythonLink link = new PythonLink(new ByteArrayInputStream(
+                "{\"ack\":\"binary\",\"delta\":true}\n".getBytes(StandardCharsets.UTF_8)),
+                toPython, null, null, false);
+        assertTrue(link.negotiate(BinaryProtocol.PROTOCOL_BINARY, false, true, 1000));
+
+        int round1 = 2 * keyframeTurns + keyframeTurns / 2;
+        int round2 = keyframeTurns + 5;
+        for (int turn = 1; turn <= round1; turn++) {
+            sendTick(link, turn);
+        }
+        link.newRound();
+        for (int turn = 1; turn <= round2; turn++) {
+            sendTick(link, turn);
+        }
+
+        List<BridgeEvent> received = decode();
+        assertEquals(round1 + round2, received.size());
+        double[] mirror = new double[EventType.TICK.doubleFields.length];
+        int deltas = 0;
+        int fieldsLeftOut = 0;
+        for (int i = 0; i < received.size(); i++) {
+            BridgeEvent e = received.get(i);
+            int sinceRoundStart = i < round1 ? i : i - round1;
+            boolean keyframe = sinceRoundStart % keyframeTurns == 0;
+            assertEquals(keyframe ? EventType.TICK : EventType.TICK_DELTA, e.type, "tick " + i);
+            assertEquals(sinceRoundStart + 1, e.ints[0]);
+            for (int f = 0; f < mirror.length; f++) {
+                if (!keyframe && (e.mask & 1 << f) == 0) {
+                    fieldsLeftOut++;
+                } else {
+                    mirror[f] = e.doubles[f];
+                }
+            }
+            deltas += keyframe ? 0 : 1;
+            double[] expected = sent.get(i);
+            for (int f = 0; f < mirror.length; f++) {
+                assertEquals(expected[f], mirror[f], epsilon, "tick " + i + " field " + f);
+            }
+        }
+        int keyframes = (round1 + keyframeTurns - 1) / keyframeTurns + (round2 + keyframeTurns - 1) / keyframeTurns;
+        assertEquals(round1 + round2 - keyframes, deltas);
+        assertTrue(fieldsLeftOut > deltas, "idle fields are left out of the deltas");
+    }
+
+    /** Moves the bot on and sends its tick: some fields jump, some creep below epsilon, some idle. */
+    private void sendTick(PythonLink link, int turn) throws IOException {
+        if (random.nextInt(10) == 0) {
+            state[0] -= 1 + random.nextInt(16); // energy, now and then
+        }
+        state[7] = Math.min(8, state[7] + 1);
+        state[1] += state[7];
+        state[2] += random.nextDouble(-2, 2);
+        state[3] += epsilon / 3; // drift that only counts once it adds up
+        state[5] = (state[5] + 45) % 360;
+        state[6] = Math.max(0, state[6] - 0.1);
+        BridgeEvents.tick(q, turn, state[0], state[1], state[2], state[3], state[4], state[5], state[6], state[7]);
+        BridgeEvent e = q.poll();
+        sent.add(Arrays.copyOf(e.doubles, state.length));
+        link.send(e);
+    }
+
+    /** The frames sent after the hello line, read back as Python reads them. */
+    private List<BridgeEvent> decode() {
+        byte[] bytes = toPython.toByteArray();
+        int start = 0;
+        while (bytes[start++] != '\n') {
+            // the hello
+        }
+        ByteBuffer buf = BinaryProtocol.newBuffer(bytes.length);
+        buf.put(bytes, start, bytes.length - start).flip();
+        EventQueue decoded = new EventQueue();
+        List<BridgeEvent> events = new ArrayList<>();
+        while (buf.hasRemaining()) {
+            assertTrue(BinaryProtocol.readEvent(buf, decoded));
+            BridgeEvent e = decoded.poll();
+            BridgeEvent copy = new BridgeEvent().reset(e.type);
+            copy.mask = e.mask;
+            System.arraycopy(e.ints, 0, copy.ints, 0, e.ints.length);
+            System.arraycopy(e.doubles, 0, copy.doubles, 0, e.doubles.length);
+            events.add(copy);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** The fallback commands TurnBudget files when Python misses a deadline. */
+class TurnBudgetTest {
+
+    private final List<String> issued = new ArrayList<>();
+    private final PythonLink.CommandHandler bot = (opcode, power, distance, angle) ->
+            issued.add(BinaryProtocol.commandName(opcode) + " " + power + " " + distance + " " + angle);
+
+    @Test
+    void fallbackKeepsEachCommandsOwnArgument() {
+        TurnBudget budget = new TurnBudget(10, 0.8, 0.5,
+                "{\"cmd\":\"forward\",\"distance\":100}; {\"cmd\":\"fire\",\"power\":2}; turnGunLeft 30");
+        CommandSlots slots = new CommandSlots(CommandSlots.Merge.LAST);
+
+        assertEquals(3, budget.missed(1_000_000L, slots));
+        slots.apply(bot);
+        assertEquals(List.of("forward 0.0 100.0 0.0", "turnGunLeft 0.0 0.0 30.0", "fire 2.0 0.0 0.0"), issued);
+    }
+
+    @Test
+    void levelRecoversOnceAnswersFollowAMiss() {
+        int window = 10;
+        long budgetNanos = 10_000_000L;
+        TurnBudget budget = new TurnBudget(window, 0.8, 0.5, "");
+        EventQueue events = new EventQueue();
+        CommandSlots slots = new CommandSlots(CommandSlots.Merge.LAST);
+
+        // pipelined: each turn's write comes first, then the last turn's reply is collected
+        budget.write(events, 1, budgetNanos);
+        budget.missed(budgetNanos, slots);
+        budget.write(events, 2, budgetNanos);
+        assertEquals(TurnBudget.REDUCED, budget.level());
+        for (int turn = 3; turn < 3 + 3 * window; turn++) {
+            budget.answered(budgetNanos / 10);
+            budget.write(events, turn, budgetNanos);
+        }
+        assertEquals(TurnBudget.FULL, budget.level());
+    }
+
+    @Test
+    void fallbackLeavesActuatorsThatHaveACommand() {
+        TurnBudget budget = new TurnBudget(10, 0.8, 0.5, "forward 50; turnRadarRight 45");
+        CommandSlots slots = new CommandSlots(CommandSlots.Merge.LAST);
+        slots.onCommand(BinaryProtocol.CMD_BACK, 0, 20, 0);
+
+        assertEquals(1, budget.missed(1_000_000L, slots));
+        slots.apply(bot);
+        assertEquals(List.of("back 0.0 20.0 0.0", "turnRadarRight 0.0 0.0 45.0"), issued);
+    }
+}